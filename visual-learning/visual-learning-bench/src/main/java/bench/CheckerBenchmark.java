@@ -0,0 +1,55 @@
+package bench;
+
+import ast.AST;
+import exception.CompileException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each checker in isolation.  The phases before the measured one are
+ * run in the per-invocation setup, which JMH does not time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class CheckerBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int lines;
+
+    @Param({"LocalResolver", "TypeResolver", "DereferenceChecker", "TypeChecker"})
+    public String checker;
+
+    private String src;
+    private int phase;
+    private Pipeline pipeline;
+    private AST ast;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        src = Corpus.generate(lines);
+        switch (checker) {
+        case "LocalResolver":      phase = Pipeline.LOCAL_RESOLVER; break;
+        case "TypeResolver":       phase = Pipeline.TYPE_RESOLVER; break;
+        case "DereferenceChecker": phase = Pipeline.DEREFERENCE_CHECKER; break;
+        case "TypeChecker":        phase = Pipeline.TYPE_CHECKER; break;
+        default:
+            throw new IllegalArgumentException("unknown checker: " + checker);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() throws CompileException {
+        pipeline = new Pipeline();
+        ast = pipeline.analyzeBefore(src, phase);
+    }
+
+    @Benchmark
+    public AST check() throws CompileException {
+        pipeline.run(ast, phase);
+        return ast;
+    }
+}
@@ -0,0 +1,42 @@
+package bench;
+
+import corpus.ProgramGenerator;
+
+/**
+ * Synthetic sources for the benchmarks.  The text depends only on the
+ * requested size, so every run measures exactly the same input.
+ */
+public class Corpus {
+    static private final long SEED = 20231017L;
+
+    /** A program of about the given number of lines using the whole dialect. */
+    static public String generate(int lines) {
+        return ProgramGenerator.generate(SEED, new ProgramGenerator.Shape().lines(lines));
+    }
+
+    /** A program which LLVMIRGenerator can translate. */
+    static public String generateIRSafe(int lines) {
+        return ProgramGenerator.generate(SEED,
+                new ProgramGenerator.Shape().lines(lines).globals(0).irSafe(true));
+    }
+
+    /**
+     * A function of expression statements whose operands are nested
+     * depth parentheses deep, e.g. for depth 2: a = ((a + 1) * 2);
+     */
+    static public String nestedExpressions(int depth, int statements) {
+        String e = "a";
+        for (int i = 0; i < depth; i++) {
+            e = "(" + e + ((i % 2 == 0) ? " + " : " * ") + (i + 1) + ")";
+        }
+        StringBuilder buf = new StringBuilder();
+        buf.append("int main(void) {\n");
+        buf.append("    int a = 1;\n");
+        for (int i = 0; i < statements; i++) {
+            buf.append((i % 2 == 0) ? "    a = " : "    a += ").append(e).append(";\n");
+        }
+        buf.append("    return a;\n");
+        buf.append("}\n");
+        return buf.toString();
+    }
+}
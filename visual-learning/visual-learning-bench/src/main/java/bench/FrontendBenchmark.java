@@ -0,0 +1,48 @@
+package bench;
+
+import ast.AST;
+import exception.CompileException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import parser.ParserConstants;
+import parser.ParserTokenManager;
+import parser.StringCharStream;
+import parser.Token;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lexing and parsing of the synthetic corpus.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontendBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int lines;
+
+    private String src;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        src = Corpus.generate(lines);
+    }
+
+    @Benchmark
+    public void lex(Blackhole bh) {
+        ParserTokenManager tm = new ParserTokenManager(new StringCharStream(src));
+        Token t;
+        do {
+            t = tm.getNextToken();
+            bh.consume(t);
+        } while (t.kind != ParserConstants.EOF);
+    }
+
+    @Benchmark
+    public AST parse() throws CompileException {
+        return new Pipeline().parse(src);
+    }
+}
@@ -0,0 +1,59 @@
+package bench;
+
+import ast.AST;
+import compiler.LLVMIRGenerator;
+import exception.CompileException;
+import org.bytedeco.llvm.LLVM.LLVMContextRef;
+import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * LLVMIRGenerator.llvmGenerate on a fully checked AST.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class IRGeneratorBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int lines;
+
+    private String src;
+    private AST ast;
+    private LLVMContextRef context;
+    private LLVMModuleRef module;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        src = Corpus.generateIRSafe(lines);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() throws CompileException {
+        // the generator records allocas in the AST scopes, so it needs a fresh AST
+        Pipeline pipeline = new Pipeline();
+        ast = pipeline.analyzeBefore(src, Pipeline.TYPE_CHECKER + 1);
+        context = LLVMContextCreate();
+    }
+
+    @Benchmark
+    public LLVMModuleRef generate() throws CompileException {
+        module = new LLVMIRGenerator(context).llvmGenerate(ast);
+        return module;
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation() {
+        if (module != null) {
+            LLVMDisposeModule(module);
+            module = null;
+        }
+        LLVMContextDispose(context);
+    }
+}
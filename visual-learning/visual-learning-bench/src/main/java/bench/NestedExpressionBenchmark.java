@@ -0,0 +1,35 @@
+package bench;
+
+import ast.AST;
+import exception.CompileException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of deeply nested expression statements.  The time per
+ * statement should grow linearly with the depth; a parser which scans
+ * a term ahead before parsing it again grows much faster than that.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NestedExpressionBenchmark {
+    @Param({"4", "8", "12", "16"})
+    public int depth;
+
+    private String src;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        src = Corpus.nestedExpressions(depth, 100);
+    }
+
+    @Benchmark
+    public AST parse() throws CompileException {
+        return new Pipeline().parse(src);
+    }
+}
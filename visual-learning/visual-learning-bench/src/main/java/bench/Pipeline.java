@@ -0,0 +1,88 @@
+package bench;
+
+import ast.AST;
+import checker.DereferenceChecker;
+import checker.LocalResolver;
+import checker.SemanticAnalyzer;
+import checker.TypeChecker;
+import checker.TypeResolver;
+import exception.CompileException;
+import parser.Parser;
+import parser.StringCharStream;
+import type.TypeTable;
+import utils.ErrorHandler;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The compiler phases, callable one at a time so that a benchmark can
+ * prepare its input with the phases before the one it measures.
+ * Every phase mutates the AST, so each measured call needs a fresh one.
+ */
+class Pipeline {
+    static final int LOCAL_RESOLVER = 1;
+    static final int TYPE_RESOLVER = 2;
+    static final int DEREFERENCE_CHECKER = 3;
+    static final int TYPE_CHECKER = 4;
+
+    final ErrorHandler errorHandler = new ErrorHandler("bench");
+    final TypeTable types = TypeTable.ilp32();
+
+    AST parse(String src) throws CompileException {
+        return new Parser(new StringCharStream(src), "bench.c", errorHandler).parse();
+    }
+
+    /** Runs the semantic phases before the given one. */
+    AST analyzeBefore(String src, int phase) throws CompileException {
+        AST ast = parse(src);
+        for (int i = LOCAL_RESOLVER; i < phase; i++) {
+            run(ast, i);
+        }
+        return ast;
+    }
+
+    void run(AST ast, int phase) throws CompileException {
+        switch (phase) {
+        case LOCAL_RESOLVER:
+            new LocalResolver(errorHandler).resolve(ast);
+            break;
+        case TYPE_RESOLVER:
+            new TypeResolver(types, errorHandler).resolve(ast);
+            break;
+        case DEREFERENCE_CHECKER:
+            new DereferenceChecker(types, errorHandler).check(ast);
+            break;
+        case TYPE_CHECKER:
+            new TypeChecker(types, errorHandler).check(ast);
+            break;
+        default:
+            throw new Error("must not happen: phase " + phase);
+        }
+    }
+
+    /**
+     * All four semantic phases: "separate" runs them one after another,
+     * "parallel" checks the function bodies on the common ForkJoinPool
+     * and "fused" runs them over one traversal.
+     */
+    void analyze(AST ast, String mode) throws CompileException {
+        switch (mode) {
+        case "separate":
+            for (int i = LOCAL_RESOLVER; i <= TYPE_CHECKER; i++) {
+                run(ast, i);
+            }
+            break;
+        case "parallel":
+            run(ast, LOCAL_RESOLVER);
+            run(ast, TYPE_RESOLVER);
+            new DereferenceChecker(types, errorHandler).check(ast, ForkJoinPool.commonPool());
+            new TypeChecker(types, errorHandler).check(ast, ForkJoinPool.commonPool());
+            break;
+        case "fused":
+            new SemanticAnalyzer(types, errorHandler).analyze(ast);
+            break;
+        default:
+            throw new IllegalArgumentException("unknown mode: " + mode);
+        }
+    }
+}
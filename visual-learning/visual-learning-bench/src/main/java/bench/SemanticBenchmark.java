@@ -0,0 +1,48 @@
+package bench;
+
+import ast.AST;
+import exception.CompileException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole semantic analysis: four passes, four passes with the
+ * function bodies checked in parallel (-fparallel-checks), or one fused
+ * traversal (-ffused-semantics).  Parsing is done in the per-invocation
+ * setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class SemanticBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int lines;
+
+    @Param({"separate", "parallel", "fused"})
+    public String mode;
+
+    private String src;
+    private Pipeline pipeline;
+    private AST ast;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        src = Corpus.generate(lines);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() throws CompileException {
+        pipeline = new Pipeline();
+        ast = pipeline.parse(src);
+    }
+
+    @Benchmark
+    public AST analyze() throws CompileException {
+        pipeline.analyze(ast, mode);
+        return ast;
+    }
+}
@@ -1,7 +1,6 @@
 package ast;
 
 import entity.*;
-import java.util.ArrayList;
 import java.util.List;
 
 public class AST extends Node {
@@ -14,6 +13,7 @@ public class AST extends Node {
         super();
         this.source = source;
         this.declarations = declarations;
+        declarations.freeze();
     }
 
     public Location source;
@@ -25,11 +25,7 @@ public class AST extends Node {
 
 
     public List<Entity> definitions() {
-        List<Entity> result = new ArrayList<>();
-        result.addAll(declarations.defvars);
-        result.addAll(declarations.defuns);
-        result.addAll(declarations.constants);
-        return result;
+        return declarations.definitions();
     }
 
     public List<Constant> constants() {
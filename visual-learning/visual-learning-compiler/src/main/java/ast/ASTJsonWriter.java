@@ -0,0 +1,490 @@
+package ast;
+
+import entity.*;
+import type.TypeRef;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes an AST as JSON directly to a Writer while walking it.
+ * Nothing but the current nesting state is kept in memory, so the
+ * size of the output does not matter.  Member names follow Dumper.
+ */
+public class ASTJsonWriter implements ASTVisitor<Void, Void>, EntityVisitor<Void> {
+    protected Writer out;
+    // true while no member has been written into the current object/array
+    protected boolean first;
+
+    public ASTJsonWriter(Writer out) {
+        this.out = out;
+        this.first = true;
+    }
+
+    public void write(AST ast) throws IOException {
+        try {
+            beginObject(ast);
+            printEntityList("variables", ast.definedVariables());
+            printEntityList("functions", ast.definedFunctions());
+            printEntityList("constants", ast.constants());
+            endObject();
+            out.flush();
+        }
+        catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /** Writes a JSON array of strings, such as syntax error messages. */
+    public void writeStrings(List<String> strs) throws IOException {
+        try {
+            print("[");
+            for (int i = 0; i < strs.size(); i++) {
+                if (i > 0) print(",");
+                printString(strs.get(i));
+            }
+            print("]");
+        }
+        catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    //
+    // Entities
+    //
+
+    public Void visit(DefinedVariable var) {
+        beginObject(var.getClass(), var.location());
+        printMember("name", var.name());
+        printMember("isPrivate", var.isPrivate());
+        printMember("typeNode", var.typeNode());
+        printMember("initializer", var.initializer());
+        endObject();
+        return null;
+    }
+
+    public Void visit(DefinedFunction func) {
+        beginObject(func.getClass(), func.location());
+        printMember("name", func.name());
+        printMember("isPrivate", func.isPrivate());
+        printMember("typeNode", func.typeNode());
+        printEntityList("params", func.parameters());
+        printMember("body", func.body());
+        endObject();
+        return null;
+    }
+
+    public Void visit(Constant c) {
+        beginObject(c.getClass(), c.location());
+        printMember("name", c.name());
+        printMember("typeNode", c.typeNode());
+        printMember("value", c.value());
+        endObject();
+        return null;
+    }
+
+    //
+    // Statements
+    //
+
+    public Void visit(BlockNode node) {
+        beginObject(node);
+        printEntityList("variables", node.variables());
+        printNodeList("stmts", node.stmts());
+        endObject();
+        return null;
+    }
+
+    public Void visit(ExprStmtNode node) {
+        beginObject(node);
+        printMember("expr", node.expr());
+        endObject();
+        return null;
+    }
+
+    public Void visit(IfNode node) {
+        beginObject(node);
+        printMember("cond", node.cond());
+        printMember("thenBody", node.thenBody());
+        printMember("elseBody", node.elseBody());
+        endObject();
+        return null;
+    }
+
+    public Void visit(SwitchNode node) {
+        beginObject(node);
+        printMember("cond", node.cond());
+        printNodeList("cases", node.cases());
+        endObject();
+        return null;
+    }
+
+    public Void visit(CaseNode node) {
+        beginObject(node);
+        printNodeList("values", node.values());
+        printMember("body", node.body());
+        endObject();
+        return null;
+    }
+
+    public Void visit(WhileNode node) {
+        beginObject(node);
+        printMember("cond", node.cond());
+        printMember("body", node.body());
+        endObject();
+        return null;
+    }
+
+    public Void visit(DoWhileNode node) {
+        beginObject(node);
+        printMember("body", node.body());
+        printMember("cond", node.cond());
+        endObject();
+        return null;
+    }
+
+    public Void visit(ForNode node) {
+        beginObject(node);
+        printMember("init", node.init());
+        printMember("cond", node.cond());
+        printMember("incr", node.incr());
+        printMember("body", node.body());
+        endObject();
+        return null;
+    }
+
+    public Void visit(BreakNode node) {
+        beginObject(node);
+        endObject();
+        return null;
+    }
+
+    public Void visit(ContinueNode node) {
+        beginObject(node);
+        endObject();
+        return null;
+    }
+
+    public Void visit(GotoNode node) {
+        beginObject(node);
+        printMember("target", node.target());
+        endObject();
+        return null;
+    }
+
+    public Void visit(LabelNode node) {
+        beginObject(node);
+        printMember("name", node.name());
+        printMember("stmt", node.stmt());
+        endObject();
+        return null;
+    }
+
+    public Void visit(ReturnNode node) {
+        beginObject(node);
+        printMember("expr", node.expr());
+        endObject();
+        return null;
+    }
+
+    public Void visit(ErrorStmtNode node) {
+        beginObject(node);
+        printMember("message", node.message());
+        endObject();
+        return null;
+    }
+
+    //
+    // Expressions
+    //
+
+    public Void visit(AssignNode node) {
+        beginObject(node);
+        printMember("lhs", node.lhs());
+        printMember("rhs", node.rhs());
+        endObject();
+        return null;
+    }
+
+    public Void visit(OpAssignNode node) {
+        beginObject(node);
+        printMember("operator", node.operator());
+        printMember("lhs", node.lhs());
+        printMember("rhs", node.rhs());
+        endObject();
+        return null;
+    }
+
+    public Void visit(CondExprNode node) {
+        beginObject(node);
+        printMember("cond", node.cond());
+        printMember("thenExpr", node.thenExpr());
+        printMember("elseExpr", node.elseExpr());
+        endObject();
+        return null;
+    }
+
+    public Void visit(LogicalOrNode node) {
+        return visitBinary(node);
+    }
+
+    public Void visit(LogicalAndNode node) {
+        return visitBinary(node);
+    }
+
+    public Void visit(BinaryOpNode node) {
+        return visitBinary(node);
+    }
+
+    protected Void visitBinary(BinaryOpNode node) {
+        beginObject(node);
+        printMember("operator", node.operator());
+        printMember("left", node.left());
+        printMember("right", node.right());
+        endObject();
+        return null;
+    }
+
+    public Void visit(UnaryOpNode node) {
+        return visitUnary(node);
+    }
+
+    public Void visit(PrefixOpNode node) {
+        return visitUnary(node);
+    }
+
+    public Void visit(SuffixOpNode node) {
+        return visitUnary(node);
+    }
+
+    protected Void visitUnary(UnaryOpNode node) {
+        beginObject(node);
+        printMember("operator", node.operator());
+        printMember("expr", node.expr());
+        endObject();
+        return null;
+    }
+
+    public Void visit(ArefNode node) {
+        beginObject(node);
+        printMember("expr", node.expr());
+        printMember("index", node.index());
+        endObject();
+        return null;
+    }
+
+    public Void visit(FuncallNode node) {
+        beginObject(node);
+        printMember("expr", node.expr());
+        printNodeList("args", node.args());
+        endObject();
+        return null;
+    }
+
+    public Void visit(DereferenceNode node) {
+        beginObject(node);
+        printMember("expr", node.expr());
+        endObject();
+        return null;
+    }
+
+    public Void visit(AddressNode node) {
+        beginObject(node);
+        printMember("expr", node.expr());
+        endObject();
+        return null;
+    }
+
+    public Void visit(CastNode node) {
+        beginObject(node);
+        printMember("typeNode", node.typeNode());
+        printMember("expr", node.expr());
+        endObject();
+        return null;
+    }
+
+    public Void visit(SizeofExprNode node) {
+        beginObject(node);
+        printMember("expr", node.expr());
+        endObject();
+        return null;
+    }
+
+    public Void visit(SizeofTypeNode node) {
+        beginObject(node);
+        printMember("operand", node.operandTypeNode());
+        endObject();
+        return null;
+    }
+
+    public Void visit(VariableNode node) {
+        beginObject(node);
+        printMember("name", node.name());
+        endObject();
+        return null;
+    }
+
+    public Void visit(IntegerLiteralNode node) {
+        beginObject(node);
+        printMember("typeNode", node.typeNode());
+        printMember("value", node.value());
+        endObject();
+        return null;
+    }
+
+    public Void visit(StringLiteralNode node) {
+        beginObject(node);
+        printMember("value", node.value());
+        endObject();
+        return null;
+    }
+
+    //
+    // JSON output
+    //
+
+    protected void printMember(String name, Node n) {
+        printKey(name);
+        if (n == null) {
+            print("null");
+        }
+        else if (n instanceof StmtNode) {
+            ((StmtNode)n).accept(this);
+        }
+        else if (n instanceof ExprNode) {
+            ((ExprNode)n).accept(this);
+        }
+        else {
+            throw new Error("must not happen: unexpected node " + n.getClass());
+        }
+    }
+
+    protected void printMember(String name, TypeNode n) {
+        printKey(name);
+        TypeRef ref = (n == null) ? null : n.typeRef();
+        if (ref == null) {
+            print("null");
+        }
+        else {
+            printString(ref.toString());
+        }
+    }
+
+    protected void printMember(String name, String str) {
+        printKey(name);
+        if (str == null) {
+            print("null");
+        }
+        else {
+            printString(str);
+        }
+    }
+
+    protected void printMember(String name, long n) {
+        printKey(name);
+        print(Long.toString(n));
+    }
+
+    protected void printMember(String name, boolean b) {
+        printKey(name);
+        print(b ? "true" : "false");
+    }
+
+    protected void printNodeList(String name, List<? extends Node> nodes) {
+        printKey(name);
+        print("[");
+        first = true;
+        for (Node n : nodes) {
+            separate();
+            printMember(null, n);
+        }
+        print("]");
+        first = false;
+    }
+
+    protected void printEntityList(String name, List<? extends Entity> ents) {
+        printKey(name);
+        print("[");
+        first = true;
+        for (Entity ent : ents) {
+            separate();
+            ent.accept(this);
+        }
+        print("]");
+        first = false;
+    }
+
+    protected void beginObject(Node node) {
+        beginObject(node.getClass(), node.location());
+    }
+
+    protected void beginObject(Class<?> c, Location loc) {
+        print("{");
+        first = true;
+        printMember("class", c.getSimpleName());
+        if (loc != null) {
+            printMember("line", loc.lineno());
+            printMember("column", loc.column());
+        }
+    }
+
+    protected void endObject() {
+        print("}");
+        first = false;
+    }
+
+    // A null name means an array element.
+    protected void printKey(String name) {
+        if (name == null) return;
+        separate();
+        printString(name);
+        print(":");
+    }
+
+    protected void separate() {
+        if (!first) {
+            print(",");
+        }
+        first = false;
+    }
+
+    protected void printString(String str) {
+        print("\"");
+        int start = 0;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') continue;
+            write(str, start, i);
+            start = i + 1;
+            switch (c) {
+            case '"':  print("\\\""); break;
+            case '\\': print("\\\\"); break;
+            case '\n': print("\\n"); break;
+            case '\r': print("\\r"); break;
+            case '\t': print("\\t"); break;
+            default:
+                print(String.format("\\u%04x", (int)c));
+            }
+        }
+        write(str, start, str.length());
+        print("\"");
+    }
+
+    protected void print(String s) {
+        write(s, 0, s.length());
+    }
+
+    protected void write(String s, int start, int end) {
+        if (start >= end) return;
+        try {
+            out.write(s, start, end - start);
+        }
+        catch (IOException ex) {
+            // visit methods cannot throw checked exceptions; unwrapped in write(AST)
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
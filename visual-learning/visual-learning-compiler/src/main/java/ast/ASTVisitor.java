@@ -15,6 +15,7 @@ public interface ASTVisitor<S, E> {
     public S visit(GotoNode node);
     public S visit(LabelNode node);
     public S visit(ReturnNode node);
+    public S visit(ErrorStmtNode node);
 
     // Expressions
     public E visit(AssignNode node);
@@ -2,49 +2,91 @@ package ast;
 
 import entity.*;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
-
+import java.util.RandomAccess;
+
+/**
+ * The top-level definitions of a source, one list per kind in source
+ * order.  The parser fills them in; once an AST is made of them they
+ * are frozen, and the accessors hand out read-only views of the same
+ * lists, so that walking the top level allocates nothing.
+ */
 public class Declarations {
-    Set<DefinedVariable> defvars = new LinkedHashSet<>();
-    Set<DefinedFunction> defuns = new LinkedHashSet<>();
-    Set<Constant> constants = new LinkedHashSet<>();
+    final List<DefinedVariable> defvars = new ArrayList<>();
+    final List<DefinedFunction> defuns = new ArrayList<>();
+    final List<Constant> constants = new ArrayList<>();
 
+    private final List<DefinedVariable> defvarsView = Collections.unmodifiableList(defvars);
+    private final List<DefinedFunction> defunsView = Collections.unmodifiableList(defuns);
+    private final List<Constant> constantsView = Collections.unmodifiableList(constants);
+    private final List<Entity> definitions = new Definitions();
+    private boolean frozen = false;
 
     public void add(Declarations decls) {
+        checkMutable();
         defvars.addAll(decls.defvars);
         defuns.addAll(decls.defuns);
         constants.addAll(decls.constants);
-
     }
 
-
     public void addDefvars(List<DefinedVariable> vars) {
+        checkMutable();
         defvars.addAll(vars);
     }
 
     public List<DefinedVariable> defvars() {
-        return new ArrayList<>(defvars);
+        return defvarsView;
     }
 
     public void addConstant(Constant c) {
+        checkMutable();
         constants.add(c);
     }
 
     public List<Constant> constants() {
-        return new ArrayList<>(constants);
+        return constantsView;
     }
 
     public void addDefun(DefinedFunction func) {
+        checkMutable();
         defuns.add(func);
     }
 
     public List<DefinedFunction> defuns() {
-        return new ArrayList<>(defuns);
+        return defunsView;
+    }
+
+    /** Variables, then functions, then constants. */
+    public List<Entity> definitions() {
+        return definitions;
     }
 
+    // called by AST
+    void freeze() {
+        frozen = true;
+    }
 
+    private void checkMutable() {
+        if (frozen) {
+            throw new IllegalStateException("declarations of an AST cannot be changed");
+        }
+    }
 
+    // the three lists one after another, without copying them
+    private final class Definitions extends AbstractList<Entity> implements RandomAccess {
+        public Entity get(int i) {
+            if (i < defvars.size()) return defvars.get(i);
+            i -= defvars.size();
+            if (i < defuns.size()) return defuns.get(i);
+            i -= defuns.size();
+            return constants.get(i);
+        }
+
+        public int size() {
+            return defvars.size() + defuns.size() + constants.size();
+        }
+    }
 }
@@ -0,0 +1,27 @@
+package ast;
+
+/**
+ * Stands for a statement which could not be parsed.  Only appears in
+ * the partial AST of a SyntaxException; such an AST is never checked
+ * nor compiled.
+ */
+public class ErrorStmtNode extends StmtNode {
+    protected String message;
+
+    public ErrorStmtNode(Location loc, String message) {
+        super(loc);
+        this.message = message;
+    }
+
+    public String message() {
+        return message;
+    }
+
+    protected void _dump(Dumper d) {
+        d.printMember("message", message);
+    }
+
+    public <S,E> S accept(ASTVisitor<S,E> visitor) {
+        return visitor.visit(this);
+    }
+}
@@ -2,45 +2,66 @@ package ast;
 
 import parser.Token;
 
+/**
+ * A position in a source file.  Only the line, column and offset are
+ * kept; the text of the line is taken from the shared SourceText when
+ * it is asked for, so that an AST does not keep its tokens alive.
+ */
 public class Location {
-    protected String sourceName;
-    protected CflatToken token;
+    protected final SourceText source;
+    protected final int offset;
+    protected final int line;
+    protected final int column;
 
-    public Location(String sourceName, Token token) {
-        this(sourceName, new CflatToken(token));
+    public Location(SourceText source, Token token) {
+        this(source, source.offsetOf(token.beginLine, token.beginColumn),
+                token.beginLine, token.beginColumn);
     }
 
-    public Location(String sourceName, CflatToken token) {
-        this.sourceName = sourceName;
-        this.token = token;
+    public Location(SourceText source, int offset, int line, int column) {
+        this.source = source;
+        this.offset = offset;
+        this.line = line;
+        this.column = column;
     }
 
     public String sourceName() {
-        return sourceName;
+        return source().name();
     }
 
-    public CflatToken token() {
-        return token;
+    public SourceText source() {
+        return source;
+    }
+
+    /** offset in the source text, or -1 if the text is not known */
+    public int offset() {
+        return offset;
     }
 
     /** line number */
     public int lineno() {
-        return token.lineno();
+        return line;
     }
 
     public int column() {
-        return token.column();
+        return column;
     }
 
+    /** The source text from this location to the end of the line. */
     public String line() {
-        return token.includedLine();
+        return source().restOfLine(offset());
+    }
+
+    /** The whole source line containing this location. */
+    public String sourceLine() {
+        return source().line(lineno());
     }
 
     public String numberedLine() {
-        return "line " + token.lineno() + ": " + line();
+        return "line " + lineno() + ": " + line();
     }
 
     public String toString() {
-        return sourceName + ":" + token.lineno();
+        return source().name() + ":" + lineno();
     }
 }
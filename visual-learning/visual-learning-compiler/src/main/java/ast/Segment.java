@@ -0,0 +1,66 @@
+package ast;
+
+/**
+ * A part of a source which starts at the beginning of a line, such as
+ * a run of top-level definitions.  Locations made by a Segment are kept
+ * relative to its start, so when the text before it is edited the
+ * Segment is moved instead of every Location in it.
+ */
+public class Segment {
+    private SourceText source;
+    private int offset;
+    private int line;
+
+    public Segment(SourceText source, int offset, int line) {
+        this.source = source;
+        this.offset = offset;
+        this.line = line;
+    }
+
+    public void moveTo(SourceText source, int offset, int line) {
+        this.source = source;
+        this.offset = offset;
+        this.line = line;
+    }
+
+    public SourceText source() {
+        return source;
+    }
+
+    public int offset() {
+        return offset;
+    }
+
+    public int line() {
+        return line;
+    }
+
+    /** A Location for the given position in the source, which must be in this segment. */
+    public Location location(int offset, int line, int column) {
+        return new Relative(this, (offset < 0) ? -1 : offset - this.offset, line - this.line, column);
+    }
+
+    static private final class Relative extends Location {
+        private final Segment segment;
+
+        Relative(Segment segment, int offset, int line, int column) {
+            super(null, offset, line, column);
+            this.segment = segment;
+        }
+
+        @Override
+        public SourceText source() {
+            return segment.source;
+        }
+
+        @Override
+        public int offset() {
+            return (offset < 0) ? -1 : segment.offset + offset;
+        }
+
+        @Override
+        public int lineno() {
+            return segment.line + line;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ast;
+
+/**
+ * The text of one source file and the offsets at which its lines start.
+ * One instance is shared by every Location in the file, so a Location
+ * needs nothing but ints besides the reference to it.
+ */
+public class SourceText {
+    static private final int TAB_SIZE = 8;
+
+    private final String name;
+    private final String text;          // null if the text was not kept
+    // lineStarts[i] is the offset of the first character of line (i + 1)
+    private final int[] lineStarts;
+    private final int nLines;
+    private final boolean hasTab;
+
+    public SourceText(String name, String text, int[] lineStarts, int nLines) {
+        this.name = name;
+        this.text = text;
+        this.lineStarts = lineStarts;
+        this.nLines = nLines;
+        this.hasTab = text.indexOf('\t') >= 0;
+    }
+
+    // Only the name is known; locations in it have no offset.
+    public SourceText(String name) {
+        this.name = name;
+        this.text = null;
+        this.lineStarts = null;
+        this.nLines = 0;
+        this.hasTab = false;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public boolean hasText() {
+        return text != null;
+    }
+
+    public String text() {
+        return text;
+    }
+
+    /**
+     * Offset of the character at a 1-based line and column (tabs
+     * expanded as the lexer does), or -1 if it is not in the text.
+     */
+    public int offsetOf(int line, int column) {
+        if (text == null || line < 1 || line > nLines || column < 1) {
+            return -1;
+        }
+        int start = lineStarts[line - 1];
+        if (!hasTab) {
+            int offset = start + column - 1;
+            return offset < text.length() ? offset : -1;
+        }
+        int col = 0;
+        for (int i = start; i < text.length(); i++) {
+            col++;
+            if (text.charAt(i) == '\t') {
+                col--;
+                col += (TAB_SIZE - (col % TAB_SIZE));
+            }
+            if (col >= column) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** The text of a 1-based line without its terminator, "" if unknown. */
+    public String line(int lineno) {
+        if (text == null || lineno < 1 || lineno > nLines) {
+            return "";
+        }
+        int end = (lineno < nLines) ? lineStarts[lineno] : text.length();
+        while (end > lineStarts[lineno - 1]
+                && (text.charAt(end - 1) == '\n' || text.charAt(end - 1) == '\r')) {
+            end--;
+        }
+        return text.substring(lineStarts[lineno - 1], end);
+    }
+
+    /** The text from offset to the end of its line. */
+    public String restOfLine(int offset) {
+        if (text == null || offset < 0) {
+            return "";
+        }
+        int end = offset;
+        while (end < text.length() && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+            end++;
+        }
+        return text.substring(offset, end);
+    }
+}
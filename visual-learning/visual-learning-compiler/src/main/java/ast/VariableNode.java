@@ -8,6 +8,8 @@ public class VariableNode extends LHSNode {
     private Location location;
     private String name;
     private Entity entity;
+    private int scopeDepth = -1;
+    private int slot = -1;
 
     public VariableNode(Location loc, String name) {
         this.location = loc;
@@ -38,6 +40,21 @@ public class VariableNode extends LHSNode {
         entity = ent;
     }
 
+    /** Records where the entity is defined: see entity.Scope. */
+    public void setSlot(int scopeDepth, int slot) {
+        this.scopeDepth = scopeDepth;
+        this.slot = slot;
+    }
+
+    /** Depth of the defining scope, or -1 if not resolved by a scope. */
+    public int scopeDepth() {
+        return scopeDepth;
+    }
+
+    public int slot() {
+        return slot;
+    }
+
     public boolean isLvalue() { 
         if (entity.isConstant()) {
             return false;
@@ -112,6 +112,10 @@ abstract public class Visitor implements ASTVisitor<Void, Void> {
         return null;
     }
 
+    public Void visit(ErrorStmtNode n) {
+        return null;
+    }
+
     //
     // Expressions
     //
@@ -1,19 +1,28 @@
 package checker;
 
 import ast.*;
-import ast.Visitor;
 import entity.*;
 import exception.*;
 import type.*;
 import utils.ErrorHandler;
+import utils.TimeReport;
 
-public class DereferenceChecker extends Visitor {
+import java.util.concurrent.ForkJoinPool;
+
+public class DereferenceChecker extends PassVisitor {
     private final TypeTable typeTable;
     private final ErrorHandler errorHandler;
+    private final TimeReport timeReport;
 
     public DereferenceChecker(TypeTable typeTable, ErrorHandler h) {
+        this(typeTable, h, TimeReport.disabled());
+    }
+
+    public DereferenceChecker(TypeTable typeTable, ErrorHandler h,
+                              TimeReport timeReport) {
         this.typeTable = typeTable;
         this.errorHandler = h;
+        this.timeReport = timeReport;
     }
 
     public void check(AST ast) throws SemanticException {
@@ -21,8 +30,27 @@ public class DereferenceChecker extends Visitor {
             checkToplevelVariable(var);
         }
         for (DefinedFunction f : ast.definedFunctions()) {
-            check(f.body());
+            try (TimeReport.Timer t = timeReport.start("DereferenceChecker", f.name())) {
+                check(f.body());
+            }
+        }
+        if (errorHandler.errorOccured()) {
+            throw new SemanticException("compile failed.");
+        }
+    }
+
+    /**
+     * Checks the function bodies in parallel on the pool; the messages
+     * are the same, and in the same order, as those of check(AST).
+     * Functions are not timed separately.
+     */
+    public void check(AST ast, ForkJoinPool pool) throws SemanticException {
+        for (DefinedVariable var : ast.definedVariables()) {
+            checkToplevelVariable(var);
         }
+        FunctionTasks.run(pool, ast.definedFunctions(),
+                (f, h) -> new DereferenceChecker(typeTable, h).check(f.body()),
+                errorHandler);
         if (errorHandler.errorOccured()) {
             throw new SemanticException("compile failed.");
         }
@@ -35,7 +63,7 @@ public class DereferenceChecker extends Visitor {
         }
     }
 
-    private void checkConstant(ExprNode expr) {
+    void checkConstant(ExprNode expr) {
         if (! expr.isConstant()) {
             errorHandler.error(expr.location(), "not a constant");
         }
@@ -0,0 +1,66 @@
+package checker;
+
+import ast.Location;
+import utils.ErrorHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An ErrorHandler which keeps the messages of one pass until they are
+ * reported to the real handler, so that passes run together can still
+ * report in pass order.
+ */
+class DiagnosticBuffer extends ErrorHandler {
+    private final List<String> messages = new ArrayList<>();
+    private final List<Location> locations = new ArrayList<>();     // null if none
+    private final List<Boolean> isError = new ArrayList<>();
+
+    DiagnosticBuffer() {
+        super(null);
+    }
+
+    // kept with the location, so that the real handler can print the source line
+    public void error(Location loc, String msg) {
+        add(loc, msg, true);
+        nError++;
+    }
+
+    public void error(String msg) {
+        add(null, msg, true);
+        nError++;
+    }
+
+    public void warn(Location loc, String msg) {
+        add(loc, msg, false);
+        nWarning++;
+    }
+
+    public void warn(String msg) {
+        add(null, msg, false);
+        nWarning++;
+    }
+
+    private void add(Location loc, String msg, boolean error) {
+        messages.add(msg);
+        locations.add(loc);
+        isError.add(error);
+    }
+
+    void reportTo(ErrorHandler h) {
+        for (int i = 0; i < messages.size(); i++) {
+            Location loc = locations.get(i);
+            if (isError.get(i)) {
+                if (loc == null) h.error(messages.get(i));
+                else h.error(loc, messages.get(i));
+            }
+            else {
+                if (loc == null) h.warn(messages.get(i));
+                else h.warn(loc, messages.get(i));
+            }
+        }
+        messages.clear();
+        locations.clear();
+        isError.clear();
+    }
+}
@@ -0,0 +1,77 @@
+package checker;
+
+import entity.DefinedFunction;
+import utils.ErrorHandler;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Checks the function bodies on a ForkJoinPool.  Each function gets its
+ * own DiagnosticBuffer, and the buffers are reported in source order
+ * after all functions are done, so the output does not depend on how
+ * the tasks were scheduled.
+ */
+final class FunctionTasks {
+    interface Check {
+        void check(DefinedFunction f, ErrorHandler h);
+    }
+
+    private FunctionTasks() {
+    }
+
+    static void run(ForkJoinPool pool, List<DefinedFunction> funcs,
+                    Check check, ErrorHandler h) {
+        DiagnosticBuffer[] logs = new DiagnosticBuffer[funcs.size()];
+        Throwable[] failures = new Throwable[funcs.size()];
+        pool.invoke(new Split(funcs, check, logs, failures, 0, funcs.size()));
+        for (int i = 0; i < logs.length; i++) {
+            logs[i].reportTo(h);
+            // as if the passes had stopped at the first broken function
+            if (failures[i] instanceof Error) {
+                throw (Error)failures[i];
+            }
+            if (failures[i] != null) {
+                throw (RuntimeException)failures[i];
+            }
+        }
+    }
+
+    static private final class Split extends RecursiveAction {
+        private final List<DefinedFunction> funcs;
+        private final Check check;
+        private final DiagnosticBuffer[] logs;
+        private final Throwable[] failures;
+        private final int begin;
+        private final int end;
+
+        Split(List<DefinedFunction> funcs, Check check,
+              DiagnosticBuffer[] logs, Throwable[] failures, int begin, int end) {
+            this.funcs = funcs;
+            this.check = check;
+            this.logs = logs;
+            this.failures = failures;
+            this.begin = begin;
+            this.end = end;
+        }
+
+        protected void compute() {
+            if (end - begin > 1) {
+                int mid = (begin + end) >>> 1;
+                invokeAll(new Split(funcs, check, logs, failures, begin, mid),
+                          new Split(funcs, check, logs, failures, mid, end));
+                return;
+            }
+            for (int i = begin; i < end; i++) {
+                logs[i] = new DiagnosticBuffer();
+                try {
+                    check.check(funcs.get(i), logs[i]);
+                }
+                catch (RuntimeException | Error ex) {
+                    failures[i] = ex;
+                }
+            }
+        }
+    }
+}
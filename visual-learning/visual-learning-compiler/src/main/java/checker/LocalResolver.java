@@ -1,7 +1,6 @@
 package checker;
 
 import ast.*;
-import ast.Visitor;
 import entity.*;
 import exception.*;
 import utils.ErrorHandler;
@@ -9,7 +8,7 @@ import utils.ErrorHandler;
 import java.util.LinkedList;
 import java.util.List;
 
-public class LocalResolver extends Visitor {
+public class LocalResolver extends PassVisitor {
     private final LinkedList<Scope> scopeStack;
     private final ConstantTable constantTable;
     private final ErrorHandler errorHandler;
@@ -29,6 +28,14 @@ public class LocalResolver extends Visitor {
     }
 
     public void resolve(AST ast) throws SemanticException {
+        defineToplevel(ast);
+        resolveGvarInitializers(ast.definedVariables());
+        resolveConstantValues(ast.constants());
+        resolveFunctions(ast.definedFunctions());
+        finish(ast);
+    }
+
+    void defineToplevel(AST ast) throws SemanticException {
         ToplevelScope toplevel = new ToplevelScope();
         scopeStack.add(toplevel);
 
@@ -36,11 +43,10 @@ public class LocalResolver extends Visitor {
         for (Entity ent : ast.definitions()) {
             toplevel.defineEntity(ent);
         }
+    }
 
-        resolveGvarInitializers(ast.definedVariables());
-        resolveConstantValues(ast.constants());
-        resolveFunctions(ast.definedFunctions());
-
+    void finish(AST ast) throws SemanticException {
+        ToplevelScope toplevel = (ToplevelScope)scopeStack.getFirst();
         toplevel.checkReferences(errorHandler);
         if (errorHandler.errorOccured()) {
             throw new SemanticException("compile failed.");
@@ -79,7 +85,7 @@ public class LocalResolver extends Visitor {
         return null;
     }
 
-    private void pushScope(List<? extends DefinedVariable> vars) {
+    void pushScope(List<? extends DefinedVariable> vars) {
         LocalScope scope = new LocalScope(currentScope());
         for (DefinedVariable var : vars) {
             if (scope.isDefinedLocally(var.name())) {
@@ -93,7 +99,7 @@ public class LocalResolver extends Visitor {
         scopeStack.addLast(scope);
     }
 
-    private LocalScope popScope() {
+    LocalScope popScope() {
         return (LocalScope)scopeStack.removeLast();
     }
 
@@ -108,7 +114,7 @@ public class LocalResolver extends Visitor {
 
     public Void visit(VariableNode node) {
         try {
-            Entity ent = currentScope().get(node.name());
+            Entity ent = currentScope().resolve(node);
             ent.refered();
             node.setEntity(ent);
         }
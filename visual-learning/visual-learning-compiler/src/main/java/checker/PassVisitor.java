@@ -0,0 +1,29 @@
+package checker;
+
+import ast.ExprNode;
+import ast.StmtNode;
+import ast.Visitor;
+
+/**
+ * Base of the semantic passes.  A pass normally walks the whole tree
+ * itself; SemanticAnalyzer switches it to shallow visiting, in which a
+ * visit() handles just the given node and leaves the children alone,
+ * and drives the traversal for all passes at once.
+ */
+abstract class PassVisitor extends Visitor {
+    private boolean shallow = false;
+
+    void setShallow(boolean shallow) {
+        this.shallow = shallow;
+    }
+
+    protected void visitStmt(StmtNode stmt) {
+        if (shallow) return;
+        super.visitStmt(stmt);
+    }
+
+    protected void visitExpr(ExprNode expr) {
+        if (shallow) return;
+        super.visitExpr(expr);
+    }
+}
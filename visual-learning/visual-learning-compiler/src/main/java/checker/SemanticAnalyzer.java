@@ -0,0 +1,280 @@
+package checker;
+
+import ast.*;
+import entity.*;
+import exception.*;
+import type.TypeTable;
+import utils.ErrorHandler;
+import utils.TimeReport;
+
+/**
+ * LocalResolver, TypeResolver, DereferenceChecker and TypeChecker run
+ * over one traversal of the AST (-ffused-semantics).  A node is resolved
+ * and has its types bound on the way down and is checked by the two
+ * checkers on the way up, while it is still in cache.
+ *
+ * The output is the same as that of the four passes run one after
+ * another.  Messages are kept per pass and reported in pass order; once
+ * a pass has found an error the passes after it stop checking, since
+ * the separate passes would not have run at all.
+ */
+public class SemanticAnalyzer extends Visitor {
+    private final ErrorHandler errorHandler;
+    private final TimeReport timeReport;
+
+    private final DiagnosticBuffer resolverLog = new DiagnosticBuffer();
+    private final DiagnosticBuffer dereferenceLog = new DiagnosticBuffer();
+    private final DiagnosticBuffer typeLog = new DiagnosticBuffer();
+
+    private final LocalResolver localResolver;
+    private final TypeResolver typeResolver;
+    private final DereferenceChecker dereferenceChecker;
+    private final TypeChecker typeChecker;
+
+    private boolean checking = true;        // false within constant values
+    private boolean dereferencing = true;
+    private boolean typeChecking = true;
+    // DereferenceChecker gives up the rest of a statement on an error
+    private boolean dereferenceAborted = false;
+    // TypeChecker skips the initializer of an invalid variable
+    private boolean typeSkipped = false;
+    // an internal error ends a checker only, like it would end its pass
+    private Throwable dereferenceFailure;
+    private Throwable typeFailure;
+
+    public SemanticAnalyzer(TypeTable typeTable, ErrorHandler h) {
+        this(typeTable, h, TimeReport.disabled());
+    }
+
+    public SemanticAnalyzer(TypeTable typeTable, ErrorHandler h,
+                            TimeReport timeReport) {
+        this.errorHandler = h;
+        this.timeReport = timeReport;
+        this.localResolver = new LocalResolver(resolverLog);
+        this.typeResolver = new TypeResolver(typeTable, resolverLog);
+        this.dereferenceChecker = new DereferenceChecker(typeTable, dereferenceLog);
+        this.typeChecker = new TypeChecker(typeTable, typeLog);
+        localResolver.setShallow(true);
+        typeResolver.setShallow(true);
+        dereferenceChecker.setShallow(true);
+        typeChecker.setShallow(true);
+    }
+
+    public void analyze(AST ast) throws SemanticException {
+        try {
+            traverse(ast);
+        }
+        catch (RuntimeException | Error ex) {
+            resolverLog.reportTo(errorHandler);
+            throw ex;
+        }
+        try {
+            localResolver.finish(ast);
+        }
+        finally {
+            resolverLog.reportTo(errorHandler);
+        }
+        report(dereferenceLog, dereferenceFailure);
+        report(typeLog, typeFailure);
+    }
+
+    private void traverse(AST ast) throws SemanticException {
+        localResolver.defineToplevel(ast);
+        bindDeclaredTypes(ast);
+
+        for (DefinedVariable var : ast.definedVariables()) {
+            checkToplevelVariable(var);
+        }
+        checking = false;
+        for (Constant c : ast.constants()) {
+            visitExpr(c.value());
+        }
+        checking = true;
+        for (DefinedFunction f : ast.definedFunctions()) {
+            try (TimeReport.Timer t = timeReport.start("SemanticAnalyzer", f.name())) {
+                analyzeFunction(f);
+            }
+        }
+    }
+
+    private void report(DiagnosticBuffer log, Throwable failure)
+                                        throws SemanticException {
+        log.reportTo(errorHandler);
+        if (failure instanceof Error) {
+            throw (Error)failure;
+        }
+        if (failure != null) {
+            throw (RuntimeException)failure;
+        }
+        if (log.errorOccured()) {
+            throw new SemanticException("compile failed.");
+        }
+    }
+
+    // Every entity is typed before any body is checked, as a reference
+    // may precede the definition.
+    private void bindDeclaredTypes(AST ast) {
+        for (DefinedVariable var : ast.definedVariables()) {
+            typeResolver.bindType(var.typeNode());
+        }
+        for (DefinedFunction f : ast.definedFunctions()) {
+            typeResolver.resolveFunctionHeader(f);
+        }
+        for (Constant c : ast.constants()) {
+            typeResolver.bindType(c.typeNode());
+        }
+    }
+
+    private void checkToplevelVariable(DefinedVariable var) {
+        boolean typeOk = checkVariable(var);
+        if (var.hasInitializer()) {
+            if (dereferencing) {
+                dereferenceChecker.checkConstant(var.initializer());
+                noteDereferenceErrors();
+            }
+            if (typeOk && typeChecking) {
+                castInitializer(var);
+            }
+        }
+    }
+
+    private void analyzeFunction(DefinedFunction f) {
+        localResolver.pushScope(f.parameters());
+        noteResolverErrors();
+        if (typeChecking) {
+            try {
+                typeChecker.checkFunctionHeader(f);
+            }
+            catch (RuntimeException | Error ex) {
+                typeFailed(ex);
+            }
+        }
+        visitStmt(f.body());
+        f.setScope(localResolver.popScope());
+    }
+
+    //
+    // Traversal
+    //
+
+    public Void visit(BlockNode node) {
+        localResolver.pushScope(node.variables());
+        noteResolverErrors();
+        for (DefinedVariable var : node.variables()) {
+            typeResolver.bindType(var.typeNode());
+        }
+        for (DefinedVariable var : node.variables()) {
+            if (checkVariable(var) && var.hasInitializer() && typeChecking) {
+                castInitializer(var);
+            }
+        }
+        for (StmtNode stmt : node.stmts()) {
+            boolean aborted = dereferenceAborted;
+            visitStmt(stmt);
+            dereferenceAborted = aborted;
+        }
+        node.setScope(localResolver.popScope());
+        return null;
+    }
+
+    // Visits the initializer; returns false if TypeChecker rejected the
+    // variable and the initializer is not to be cast.
+    private boolean checkVariable(DefinedVariable var) {
+        boolean typeOk = false;
+        if (typeChecking) {
+            try {
+                typeOk = typeChecker.checkVariableType(var);
+            }
+            catch (RuntimeException | Error ex) {
+                typeFailed(ex);
+            }
+        }
+        if (var.hasInitializer()) {
+            boolean aborted = dereferenceAborted;
+            boolean skipped = typeSkipped;
+            typeSkipped = skipped || ! typeOk;
+            visitExpr(var.initializer());
+            dereferenceAborted = aborted;
+            typeSkipped = skipped;
+        }
+        return typeOk;
+    }
+
+    private void castInitializer(DefinedVariable var) {
+        try {
+            typeChecker.castInitializer(var);
+        }
+        catch (RuntimeException | Error ex) {
+            typeFailed(ex);
+        }
+    }
+
+    protected void visitStmt(StmtNode stmt) {
+        stmt.accept(this);
+        // blocks are checked by visit(BlockNode) itself
+        if (typeChecking && ! (stmt instanceof BlockNode)) {
+            typeCheck(stmt);
+        }
+    }
+
+    protected void visitExpr(ExprNode expr) {
+        expr.accept(localResolver);
+        expr.accept(typeResolver);
+        noteResolverErrors();
+        expr.accept(this);
+        if (! checking) return;
+        if (dereferencing && ! dereferenceAborted) {
+            try {
+                expr.accept(dereferenceChecker);
+            }
+            catch (SemanticError err) {
+                dereferenceAborted = true;
+            }
+            catch (RuntimeException | Error ex) {
+                dereferenceFailure = ex;
+                dereferencing = false;
+                typeChecking = false;
+            }
+            noteDereferenceErrors();
+        }
+        if (typeChecking && ! typeSkipped) {
+            typeCheck(expr);
+        }
+    }
+
+    private void typeCheck(StmtNode stmt) {
+        try {
+            stmt.accept(typeChecker);
+        }
+        catch (RuntimeException | Error ex) {
+            typeFailed(ex);
+        }
+    }
+
+    private void typeCheck(ExprNode expr) {
+        try {
+            expr.accept(typeChecker);
+        }
+        catch (RuntimeException | Error ex) {
+            typeFailed(ex);
+        }
+    }
+
+    private void typeFailed(Throwable ex) {
+        typeFailure = ex;
+        typeChecking = false;
+    }
+
+    private void noteResolverErrors() {
+        if (resolverLog.errorOccured()) {
+            dereferencing = false;
+            typeChecking = false;
+        }
+    }
+
+    private void noteDereferenceErrors() {
+        if (dereferenceLog.errorOccured()) {
+            typeChecking = false;
+        }
+    }
+}
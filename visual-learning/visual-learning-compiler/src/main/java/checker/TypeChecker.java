@@ -1,23 +1,31 @@
 package checker;
 
 import ast.*;
-import ast.Visitor;
 import entity.*;
 import exception.*;
 import type.*;
 import utils.ErrorHandler;
+import utils.TimeReport;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
-public class TypeChecker extends Visitor {
+public class TypeChecker extends PassVisitor {
     private final TypeTable typeTable;
     private final ErrorHandler errorHandler;
+    private final TimeReport timeReport;
 
     public TypeChecker(TypeTable typeTable, ErrorHandler errorHandler) {
+        this(typeTable, errorHandler, TimeReport.disabled());
+    }
+
+    public TypeChecker(TypeTable typeTable, ErrorHandler errorHandler,
+                       TimeReport timeReport) {
         this.typeTable = typeTable;
         this.errorHandler = errorHandler;
+        this.timeReport = timeReport;
     }
 
     private void check(StmtNode node) {
@@ -35,16 +43,43 @@ public class TypeChecker extends Visitor {
             checkVariable(var);
         }
         for (DefinedFunction f : ast.definedFunctions()) {
-            currentFunction = f;
-            checkReturnType(f);
-            checkParamTypes(f);
-            check(f.body());
+            try (TimeReport.Timer t = timeReport.start("TypeChecker", f.name())) {
+                checkFunction(f);
+            }
+        }
+        if (errorHandler.errorOccured()) {
+            throw new SemanticException("compile failed.");
+        }
+    }
+
+    /**
+     * Checks the function bodies in parallel on the pool; the messages
+     * are the same, and in the same order, as those of check(AST).
+     * Functions are not timed separately.
+     */
+    public void check(AST ast, ForkJoinPool pool) throws SemanticException {
+        for (DefinedVariable var : ast.definedVariables()) {
+            checkVariable(var);
         }
+        FunctionTasks.run(pool, ast.definedFunctions(),
+                (f, h) -> new TypeChecker(typeTable, h).checkFunction(f),
+                errorHandler);
         if (errorHandler.errorOccured()) {
             throw new SemanticException("compile failed.");
         }
     }
 
+    private void checkFunction(DefinedFunction f) {
+        checkFunctionHeader(f);
+        check(f.body());
+    }
+
+    void checkFunctionHeader(DefinedFunction f) {
+        currentFunction = f;
+        checkReturnType(f);
+        checkParamTypes(f);
+    }
+
     private void checkReturnType(DefinedFunction f) {
         if (isInvalidReturnType(f.returnType())) {
             error(f.location(), "returns invalid type: " + f.returnType());
@@ -75,18 +110,28 @@ public class TypeChecker extends Visitor {
     }
 
     private void checkVariable(DefinedVariable var) {
+        if (! checkVariableType(var)) return;
+        if (var.hasInitializer()) {
+            check(var.initializer());
+            castInitializer(var);
+        }
+    }
+
+    // returns false when the initializer must not be checked
+    boolean checkVariableType(DefinedVariable var) {
         if (isInvalidVariableType(var.type())) {
             error(var.location(), "invalid variable type");
-            return;
+            return false;
         }
-        if (var.hasInitializer()) {
-            if (isInvalidLHSType(var.type())) {
-                error(var.location(), "invalid LHS type: " + var.type());
-                return;
-            }
-            check(var.initializer());
-            var.setInitializer(implicitCast(var.type(), var.initializer()));
+        if (var.hasInitializer() && isInvalidLHSType(var.type())) {
+            error(var.location(), "invalid LHS type: " + var.type());
+            return false;
         }
+        return true;
+    }
+
+    void castInitializer(DefinedVariable var) {
+        var.setInitializer(implicitCast(var.type(), var.initializer()));
     }
 
     public Void visit(ExprStmtNode node) {
@@ -1,12 +1,11 @@
 package checker;
 
 import ast.*;
-import ast.Visitor;
 import entity.*;
 import type.*;
 import utils.ErrorHandler;
 
-public class TypeResolver extends Visitor
+public class TypeResolver extends PassVisitor
         implements EntityVisitor<Void>, DeclarationVisitor<Void> {
     private final TypeTable typeTable;
     private final ErrorHandler errorHandler;
@@ -22,7 +21,7 @@ public class TypeResolver extends Visitor
         }
     }
 
-    private void bindType(TypeNode n) {
+    void bindType(TypeNode n) {
         if (n.isResolved()) return;
         n.setType(typeTable.get(n.typeRef()));
     }
@@ -61,7 +60,7 @@ public class TypeResolver extends Visitor
         return null;
     }
 
-    private void resolveFunctionHeader(Function func) {
+    void resolveFunctionHeader(Function func) {
         // 把DefinedFunction下的typeNode中的typeRef（FunctionTypeRef）和type绑定（FunctionType）
         bindType(func.typeNode());
         for (Parameter param : func.parameters()) {
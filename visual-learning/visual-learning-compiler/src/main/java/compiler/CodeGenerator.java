@@ -2,36 +2,40 @@ package compiler;
 
 
 import org.bytedeco.javacpp.BytePointer;
-import org.bytedeco.javacpp.Pointer;
-import org.bytedeco.javacpp.PointerPointer;
 import org.bytedeco.llvm.LLVM.LLVMModuleRef;
 import org.bytedeco.llvm.LLVM.LLVMTargetMachineRef;
-import org.bytedeco.llvm.LLVM.LLVMTargetRef;
 
 import static org.bytedeco.llvm.global.LLVM.*;
 
 public class CodeGenerator {
+    static final private String TRIPLE = "x86-64";
+    static final private String CPU = "";
+    static final private String FEATURES = "";
+
+    // LLVMCodeGenOptLevel, from the -O level
+    private final int level;
+
+    public CodeGenerator() {
+        this(LLVMCodeGenLevelDefault);
+    }
+
+    public CodeGenerator(int level) {
+        this.level = level;
+    }
+
     public void asmGenerate(LLVMModuleRef module, String name) {
-        LLVMInitializeAllTargetInfos();
-        LLVMInitializeAllTargets();
-        LLVMInitializeAllTargetMCs();
-        LLVMInitializeAllAsmPrinters();
-        LLVMInitializeAllAsmParsers();
-        LLVMInitializeAllDisassemblers();
-        LLVMTargetRef targetRef = LLVMGetTargetFromName("x86-64");
-        // 创建机器目标机器
-        PointerPointer error = new PointerPointer((Pointer) null);
-        LLVMTargetMachineRef targetMachine = LLVMCreateTargetMachine(
-                targetRef,
-                "x86-64",
-                "",
-                "",
-                LLVMCodeGenLevelDefault,
-                LLVMRelocDefault,
-                LLVMCodeModelDefault
-        );
-        if (LLVMTargetMachineEmitToFile(targetMachine, module, new BytePointer(name), LLVMAssemblyFile, error) != 0) {
-            System.err.println("Could not emit asm file: " + error.getString(0));
+        // 目标机器在多次编译之间复用
+        LLVMTargetMachineRef targetMachine =
+                TargetMachines.acquire(TRIPLE, CPU, FEATURES, level);
+        try {
+            BytePointer error = new BytePointer();
+            if (LLVMTargetMachineEmitToFile(targetMachine, module, new BytePointer(name), LLVMAssemblyFile, error) != 0) {
+                System.err.println("Could not emit asm file: " + error.getString());
+                LLVMDisposeMessage(error);
+            }
+        }
+        finally {
+            TargetMachines.release(targetMachine, TRIPLE, CPU, FEATURES, level);
         }
     }
 
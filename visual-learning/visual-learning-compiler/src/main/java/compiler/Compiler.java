@@ -3,17 +3,33 @@ package compiler;
 import ast.AST;
 import checker.DereferenceChecker;
 import checker.LocalResolver;
+import checker.SemanticAnalyzer;
 import checker.TypeChecker;
 import checker.TypeResolver;
 import exception.*;
+import org.bytedeco.llvm.LLVM.LLVMContextRef;
 import org.bytedeco.llvm.LLVM.LLVMModuleRef;
 import parser.Parser;
+import parser.TokenMgrError;
+import parser.TokenScanner;
+import parser.Tokens;
 import type.TypeTable;
 import utils.ErrorHandler;
+import utils.TextUtils;
+import utils.TimeReport;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
-import static org.bytedeco.llvm.global.LLVM.LLVMDisposeModule;
+import static org.bytedeco.llvm.global.LLVM.*;
 
 public class Compiler {
 
@@ -25,10 +41,20 @@ public class Compiler {
 //    }
 
 
+    private final String programName;
     private final ErrorHandler errorHandler;
+    // where -ftime-report output goes
+    private final PrintStream reportStream;
 
     public Compiler(String programName) {
-        this.errorHandler = new ErrorHandler(programName);
+        this(programName, new ErrorHandler(programName), System.err);
+    }
+
+    private Compiler(String programName, ErrorHandler errorHandler,
+                     PrintStream reportStream) {
+        this.programName = programName;
+        this.errorHandler = errorHandler;
+        this.reportStream = reportStream;
     }
 
     public void commandMain(String[] args) {
@@ -57,8 +83,18 @@ public class Compiler {
 
     public void build(List<SourceFile> srcs, Options opts)
                                         throws CompileException {
+        if (opts.jobs() > 1 && srcs.size() > 1
+                && (opts.mode() == CompilerMode.Compile
+                    || opts.mode() == CompilerMode.Assemble)) {
+            buildParallel(srcs, opts);
+            return;
+        }
         for (SourceFile src : srcs) {
             if (src.isC0Source()) {
+                if (opts.mode() == CompilerMode.DumpTokens) {
+                    dumpTokens(src.path(), System.out);
+                    continue;
+                }
                 // generate output filename
                 String destPath = opts.asmFileNameOf(src);
                 compile(src.path(), destPath, opts);
@@ -67,32 +103,192 @@ public class Compiler {
         }
     }
 
+    /**
+     * Compiles the files on opts.jobs() threads.  Each file gets its own
+     * Compiler whose diagnostics go to a buffer; the buffers are written
+     * to stderr in input order once all files are done, and the first
+     * failure (in input order) is rethrown.
+     */
+    private void buildParallel(List<SourceFile> srcs, Options opts)
+                                        throws CompileException {
+        List<SourceFile> c0srcs = new ArrayList<>();
+        for (SourceFile src : srcs) {
+            if (src.isC0Source()) {
+                c0srcs.add(src);
+            }
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(opts.jobs(), c0srcs.size())));
+        List<Future<CompileException>> results = new ArrayList<>();
+        List<ByteArrayOutputStream> outputs = new ArrayList<>();
+        try {
+            for (SourceFile src : c0srcs) {
+                ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                PrintStream out = new PrintStream(buf);
+                Compiler worker = new Compiler(programName,
+                        new ErrorHandler(programName, out), out);
+                String destPath = opts.asmFileNameOf(src);
+                outputs.add(buf);
+                results.add(pool.submit(() -> {
+                    try {
+                        worker.compile(src.path(), destPath, opts);
+                        return null;
+                    }
+                    catch (CompileException ex) {
+                        return ex;
+                    }
+                }));
+            }
+            CompileException failure = null;
+            for (int i = 0; i < c0srcs.size(); i++) {
+                CompileException ex = waitFor(results.get(i));
+                System.err.print(outputs.get(i).toString());
+                if (ex == null) {
+                    c0srcs.get(i).setCurrentName(opts.asmFileNameOf(c0srcs.get(i)));
+                }
+                else if (failure == null) {
+                    failure = ex;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private CompileException waitFor(Future<CompileException> result) {
+        try {
+            return result.get();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new Error("interrupted while compiling", ex);
+        }
+        catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            if (cause instanceof Error) throw (Error)cause;
+            throw new Error(cause);
+        }
+    }
+
     public void compile(String srcPath, String destPath,
                         Options opts) throws CompileException {
-        AST ast = parseFile(srcPath);
+        TimeReport report = (opts.timeReportFormat() == null)
+                ? TimeReport.disabled() : new TimeReport(srcPath);
+        try {
+            compile(srcPath, destPath, opts, report);
+        }
+        finally {
+            // also printed on failure: it shows which phase was reached
+            report.print(reportStream, opts.timeReportFormat());
+        }
+    }
+
+    private void compile(String srcPath, String destPath, Options opts,
+                         TimeReport report) throws CompileException {
+        AST ast;
+        try (TimeReport.Timer t = report.start("parse")) {
+            ast = parseFile(srcPath);
+        }
         TypeTable types = opts.typeTable();
-        AST sem = semanticAnalyze(ast, types, opts);
+        AST sem = semanticAnalyze(ast, types, opts, report);
 
-        LLVMModuleRef module = irGenerate(sem);
-        asmGenerate(module, destPath);
-        LLVMDisposeModule(module);
+        // one context per compilation so that files can be compiled in parallel
+        LLVMContextRef context = LLVMContextCreate();
+        try {
+            LLVMModuleRef module;
+            try (TimeReport.Timer t = report.start("LLVMIRGenerator")) {
+                module = new LLVMIRGenerator(context, report).llvmGenerate(sem);
+            }
+            try (TimeReport.Timer t = report.start("Optimizer")) {
+                new Optimizer(opts.optimizationPasses()).optimize(module);
+            }
+            try (TimeReport.Timer t = report.start("CodeGenerator")) {
+                new CodeGenerator(Optimizer.codeGenLevelOf(opts.optLevel()))
+                        .asmGenerate(module, destPath);
+            }
+            LLVMDisposeModule(module);
+        }
+        finally {
+            LLVMContextDispose(context);
+        }
     }
 
     public AST parseFile(String path) throws FileException, SyntaxException {
         return Parser.parseFile(new File(path), errorHandler);
     }
 
+    // Only lexes the file; the parser is not involved.
+    public void dumpTokens(String path, PrintStream s)
+            throws FileException, SyntaxException {
+        Tokens tokens;
+        try {
+            String text = new String(Files.readAllBytes(Paths.get(path)),
+                                     StandardCharsets.UTF_8);
+            tokens = TokenScanner.scan(text);
+        }
+        catch (IOException ex) {
+            throw new FileException(ex.getMessage());
+        }
+        catch (TokenMgrError err) {
+            throw new SyntaxException(err.getMessage());
+        }
+        for (int i = 0; i < tokens.size(); i++) {
+            printPair(tokens.kindName(i), TextUtils.dumpString(tokens.image(i)), s);
+        }
+    }
+
+    static final private void printPair(String key, String value, PrintStream s) {
+        s.print(key);
+        for (int n = 35 - key.length(); n > 0; n--) {
+            s.print(" ");
+        }
+        s.println(value);
+    }
+
     public AST semanticAnalyze(AST ast, TypeTable types,
                 Options opts) throws SemanticException {
-        new LocalResolver(errorHandler).resolve(ast);
-        new TypeResolver(types, errorHandler).resolve(ast);
+        return semanticAnalyze(ast, types, opts, TimeReport.disabled());
+    }
+
+    private AST semanticAnalyze(AST ast, TypeTable types, Options opts,
+                TimeReport report) throws SemanticException {
+        if (opts.fusedSemantics() && opts.mode() != CompilerMode.DumpReference) {
+            try (TimeReport.Timer t = report.start("SemanticAnalyzer")) {
+                new SemanticAnalyzer(types, errorHandler, report).analyze(ast);
+            }
+            return ast;
+        }
+        try (TimeReport.Timer t = report.start("LocalResolver")) {
+            new LocalResolver(errorHandler).resolve(ast);
+        }
+        try (TimeReport.Timer t = report.start("TypeResolver")) {
+            new TypeResolver(types, errorHandler).resolve(ast);
+        }
 
         if (opts.mode() == CompilerMode.DumpReference) {
             ast.dump();
             return ast;
         }
-        new DereferenceChecker(types, errorHandler).check(ast);
-        new TypeChecker(types, errorHandler).check(ast);
+        if (opts.parallelChecks()) {
+            try (TimeReport.Timer t = report.start("DereferenceChecker")) {
+                new DereferenceChecker(types, errorHandler).check(ast, ForkJoinPool.commonPool());
+            }
+            try (TimeReport.Timer t = report.start("TypeChecker")) {
+                new TypeChecker(types, errorHandler).check(ast, ForkJoinPool.commonPool());
+            }
+            return ast;
+        }
+        try (TimeReport.Timer t = report.start("DereferenceChecker")) {
+            new DereferenceChecker(types, errorHandler, report).check(ast);
+        }
+        try (TimeReport.Timer t = report.start("TypeChecker")) {
+            new TypeChecker(types, errorHandler, report).check(ast);
+        }
         return ast;
     }
 
@@ -100,6 +296,11 @@ public class Compiler {
         return  new LLVMIRGenerator().llvmGenerate(ast);
     }
 
+    public LLVMModuleRef irGenerate(AST ast, LLVMContextRef context)
+                                        throws SemanticException {
+        return new LLVMIRGenerator(context).llvmGenerate(ast);
+    }
+
     public void asmGenerate(LLVMModuleRef  module, String destPath){
         new CodeGenerator().asmGenerate(module, destPath);
     }
@@ -0,0 +1,401 @@
+package compiler;
+
+import ast.AST;
+import checker.SemanticAnalyzer;
+import exception.CompileException;
+import exception.SemanticException;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMContextRef;
+import org.bytedeco.llvm.LLVM.LLVMExecutionEngineRef;
+import org.bytedeco.llvm.LLVM.LLVMGenericValueRef;
+import org.bytedeco.llvm.LLVM.LLVMMCJITCompilerOptions;
+import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.bytedeco.llvm.LLVM.LLVMTargetDataRef;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import parser.Parser;
+import type.TypeTable;
+import utils.ErrorHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Compiles programs with MCJIT and runs their main() in this process,
+ * instead of writing assembly and running gcc and the executable.
+ * The compiled programs are kept by source text, the most recently run
+ * maxPrograms of them, so that running a program again only resets its
+ * globals and calls main.
+ *
+ * Native code cannot be stopped from Java, so the programs limit
+ * themselves: they are generated with LLVMIRGenerator.setCountFuel(),
+ * and one run may execute about `fuel` IR instructions, which bounds
+ * its CPU time.  The generated code allocates no memory but its
+ * globals and stack frames: a program whose globals do not fit in
+ * memoryBytes is rejected, and a call whose frame would take the stack
+ * beyond the rest of memoryBytes, counted from the frame of main, does
+ * not run.  Programs run on a thread of the session whose stack is that
+ * large, plus a reserve for the frames below main.
+ * A program has no output but the exit status of main, as it can only
+ * call the functions it defines.
+ * Sessions may be shared between threads; runs are serialized.  A
+ * caller waits at most timeoutMillis for its run: if the run has not
+ * started by then, it is dropped and the status is BUSY; otherwise it
+ * goes on until its fuel is used up, and the status is TIMEOUT.
+ * Sources longer than maxSourceLength characters are not compiled.
+ */
+public class JitSession implements AutoCloseable {
+    static public enum Status {
+        EXITED,
+        OUT_OF_FUEL,
+        OUT_OF_MEMORY,
+        DIVIDED_BY_ZERO,
+        BUSY,
+        TIMEOUT
+    }
+
+    static public class Result {
+        private final Status status;
+        private final int exitCode;
+        private final long fuelUsed;
+        private final boolean cached;
+        private final long nanos;
+
+        Result(Status status, int exitCode, long fuelUsed, boolean cached, long nanos) {
+            this.status = status;
+            this.exitCode = exitCode;
+            this.fuelUsed = fuelUsed;
+            this.cached = cached;
+            this.nanos = nanos;
+        }
+
+        public Status status() { return status; }
+        /** The return value of main; 0 unless status() is EXITED. */
+        public int exitCode() { return exitCode; }
+        /** All of the fuel unless status() is EXITED; 0 for BUSY and TIMEOUT. */
+        public long fuelUsed() { return fuelUsed; }
+        /** True if the program was compiled by an earlier run; false for BUSY and TIMEOUT. */
+        public boolean cached() { return cached; }
+        /** Wall time of the run, compilation included. */
+        public long nanos() { return nanos; }
+    }
+
+    static private final String RESET = "__reset";
+    static private final String FUEL_LEFT = "__fuel_left";
+    static private final String LIMIT_STATUS = "__limit_status";
+    // the frames of the JIT and the JVM below main, and what a frame
+    // stores at its top before the stack is checked
+    static private final long STACK_RESERVE = 1L << 20;
+    static private final int DEFAULT_MAX_SOURCE_LENGTH = 1 << 16;
+    static private final long DEFAULT_TIMEOUT_MILLIS = 10000;
+
+    static private boolean initialized = false;
+
+    static private synchronized void initialize() {
+        if (initialized) return;
+        LLVMLinkInMCJIT();
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+        initialized = true;
+    }
+
+    static private final class Program {
+        final LLVMExecutionEngineRef engine;
+        final LLVMValueRef main, reset, fuelLeft, limitStatus;
+
+        Program(LLVMExecutionEngineRef engine, LLVMModuleRef module) {
+            this.engine = engine;
+            this.main = LLVMGetNamedFunction(module, "main");
+            this.reset = LLVMGetNamedFunction(module, RESET);
+            this.fuelLeft = LLVMGetNamedFunction(module, FUEL_LEFT);
+            this.limitStatus = LLVMGetNamedFunction(module, LIMIT_STATUS);
+        }
+
+        void dispose() {
+            // also disposes the module
+            LLVMDisposeExecutionEngine(engine);
+        }
+    }
+
+    private final long fuel;
+    private final long memoryBytes;
+    private final int optLevel;
+    private final int maxSourceLength;
+    private final long timeoutMillis;
+    private final LLVMContextRef context;
+    private final Map<String, Program> programs;
+    private final ExecutorService runner;
+
+    public JitSession(long fuel, long memoryBytes, int optLevel, int maxPrograms) {
+        this(fuel, memoryBytes, optLevel, maxPrograms, DEFAULT_MAX_SOURCE_LENGTH, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public JitSession(long fuel, long memoryBytes, int optLevel, int maxPrograms,
+                      int maxSourceLength, long timeoutMillis) {
+        if (fuel <= 0 || memoryBytes <= 0 || maxPrograms <= 0 || maxSourceLength <= 0 || timeoutMillis <= 0) {
+            throw new IllegalArgumentException("limits must be positive");
+        }
+        initialize();
+        this.fuel = fuel;
+        this.memoryBytes = memoryBytes;
+        this.optLevel = optLevel;
+        this.maxSourceLength = maxSourceLength;
+        this.timeoutMillis = timeoutMillis;
+        // one context for all programs: runs are serialized
+        this.context = LLVMContextCreate();
+        this.programs = new LinkedHashMap<String, Program>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Program> eldest) {
+                if (size() <= maxPrograms) return false;
+                eldest.getValue().dispose();
+                return true;
+            }
+        };
+        this.runner = Executors.newSingleThreadExecutor(
+                r -> new Thread(null, r, "jit-session", memoryBytes + STACK_RESERVE));
+    }
+
+    /**
+     * Compiles source unless it was run before, and runs main.
+     * Compile errors are thrown; their message holds the diagnostics.
+     */
+    public Result run(String source) throws CompileException {
+        if (source.length() > maxSourceLength) {
+            throw new CompileException("the source has " + source.length()
+                    + " characters; the limit is " + maxSourceLength);
+        }
+        long start = System.nanoTime();
+        AtomicBoolean started = new AtomicBoolean();
+        Future<Result> result;
+        synchronized (this) {
+            if (runner.isShutdown()) {
+                throw new IllegalStateException("session closed");
+            }
+            result = runner.submit(() -> started.compareAndSet(false, true) ? runOnRunner(source) : null);
+        }
+        try {
+            try {
+                return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            catch (TimeoutException ex) {
+                if (started.compareAndSet(false, true)) {
+                    // still waiting for an earlier run; it will not start now
+                    result.cancel(false);
+                    return new Result(Status.BUSY, 0, 0, false, System.nanoTime() - start);
+                }
+                if (!result.isDone()) {
+                    // running; it cannot be stopped, it stops when its fuel is used up
+                    return new Result(Status.TIMEOUT, 0, 0, false, System.nanoTime() - start);
+                }
+                return result.get();
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new Error("interrupted while running", ex);
+        }
+        catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof CompileException) throw (CompileException)cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            if (cause instanceof Error) throw (Error)cause;
+            throw new Error(cause);
+        }
+    }
+
+    private Result runOnRunner(String source) throws CompileException {
+        long start = System.nanoTime();
+        Program program = programs.get(source);
+        boolean cached = (program != null);
+        if (program == null) {
+            program = compile(source);
+            programs.put(source, program);
+        }
+        runFunction(program, program.reset);
+        int exitCode = (int)runFunction(program, program.main);
+        long left = runFunction(program, program.fuelLeft);
+        long limitStatus = runFunction(program, program.limitStatus);
+        long nanos = System.nanoTime() - start;
+        // the errors also use up the fuel, to stop the program
+        if (limitStatus == LLVMIRGenerator.LIMIT_DEPTH) {
+            return new Result(Status.OUT_OF_MEMORY, 0, fuel, cached, nanos);
+        }
+        if (limitStatus == LLVMIRGenerator.LIMIT_DIVIDE) {
+            return new Result(Status.DIVIDED_BY_ZERO, 0, fuel, cached, nanos);
+        }
+        if (left < 0) {
+            return new Result(Status.OUT_OF_FUEL, 0, fuel, cached, nanos);
+        }
+        return new Result(Status.EXITED, exitCode, fuel - left, cached, nanos);
+    }
+
+    static private long runFunction(Program program, LLVMValueRef function) {
+        LLVMGenericValueRef value = LLVMRunFunction(program.engine, function, 0, new PointerPointer<>(0));
+        try {
+            return LLVMGenericValueToInt(value, 1);
+        }
+        finally {
+            LLVMDisposeGenericValue(value);
+        }
+    }
+
+    private Program compile(String source) throws CompileException {
+        ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+        ErrorHandler h = new ErrorHandler("jit", diagnostics);
+        LLVMModuleRef module;
+        try {
+            AST ast = Parser.parseOnlineCode(source, h);
+            new SemanticAnalyzer(TypeTable.ilp32(), h).analyze(ast);
+            LLVMIRGenerator generator = new LLVMIRGenerator(context);
+            generator.setCountFuel(true);
+            // disposes the module when it fails
+            module = generator.llvmGenerate(ast);
+        }
+        catch (CompileException ex) {
+            throw new CompileException(diagnostics.size() > 0 ? diagnostics.toString().trim() : ex.getMessage());
+        }
+        catch (RuntimeException ex) {
+            // a construct the generator does not expect; the source is
+            // untrusted, so this is the program's error, not ours
+            throw new SemanticException("not supported by the IR generator: " + ex);
+        }
+        LLVMValueRef main = LLVMGetNamedFunction(module, "main");
+        if (main == null || main.isNull()
+                || LLVMCountParams(main) != 0
+                || !LLVMGetReturnType(LLVMGetElementType(LLVMTypeOf(main)))
+                        .equals(LLVMInt32TypeInContext(context))) {
+            LLVMDisposeModule(module);
+            throw new SemanticException("no function int main(void)");
+        }
+        // invalid IR must not reach the JIT, which may crash on it
+        BytePointer invalid = new BytePointer();
+        if (LLVMVerifyModule(module, LLVMReturnStatusAction, invalid) != 0) {
+            String msg = invalid.getString();
+            LLVMDisposeMessage(invalid);
+            LLVMDisposeModule(module);
+            throw new SemanticException("not supported by the IR generator: " + msg);
+        }
+        LLVMDisposeMessage(invalid);
+        new Optimizer(Optimizer.passesOf(optLevel)).optimize(module);
+
+        LLVMExecutionEngineRef engine = new LLVMExecutionEngineRef();
+        LLVMMCJITCompilerOptions options = new LLVMMCJITCompilerOptions();
+        LLVMInitializeMCJITCompilerOptions(options, options.sizeof());
+        options.OptLevel(Optimizer.codeGenLevelOf(optLevel));
+        addRuntime(module);
+        BytePointer error = new BytePointer();
+        // the engine owns the module from here on
+        if (LLVMCreateMCJITCompilerForModule(engine, module, options, options.sizeof(), error) != 0) {
+            String msg = error.getString();
+            LLVMDisposeMessage(error);
+            LLVMDisposeModule(module);
+            throw new CompileException("cannot create JIT: " + msg);
+        }
+        Program program = new Program(engine, module);
+        try {
+            setStackBudget(module, LLVMGetExecutionEngineTargetData(engine));
+        }
+        catch (CompileException ex) {
+            program.dispose();
+            throw ex;
+        }
+        return program;
+    }
+
+    /*
+     * Adds the functions which the session calls around main:
+     * __reset() gives the globals their initial values and sets the
+     * counters of LLVMIRGenerator; __fuel_left() and __limit_status()
+     * read the counters.  The stack budget never changes; it is the
+     * initial value of its counter, filled in once the size of the
+     * globals is known.
+     */
+    private void addRuntime(LLVMModuleRef module) {
+        LLVMTypeRef i32 = LLVMInt32TypeInContext(context);
+        LLVMTypeRef i64 = LLVMInt64TypeInContext(context);
+        LLVMBuilderRef builder = LLVMCreateBuilderInContext(context);
+        try {
+            LLVMValueRef reset = addFunction(module, builder, RESET, LLVMVoidTypeInContext(context));
+            for (LLVMValueRef g = LLVMGetFirstGlobal(module); g != null && !g.isNull(); g = LLVMGetNextGlobal(g)) {
+                if (LLVMGetValueName(g).getString().startsWith("__")) {
+                    // the counters
+                    continue;
+                }
+                LLVMValueRef init = LLVMGetInitializer(g);
+                if (init == null || init.isNull()) {
+                    // a tentative definition, as int x; in C
+                    init = LLVMConstNull(LLVMGlobalGetValueType(g));
+                    LLVMSetInitializer(g, init);
+                }
+                if (LLVMIsGlobalConstant(g) == 0) {
+                    LLVMBuildStore(builder, init, g);
+                }
+            }
+            LLVMBuildStore(builder, LLVMConstInt(i64, fuel, 0),
+                    LLVMGetNamedGlobal(module, LLVMIRGenerator.FUEL));
+            LLVMBuildStore(builder, LLVMConstInt(i32, 0, 0),
+                    LLVMGetNamedGlobal(module, LLVMIRGenerator.DEPTH));
+            LLVMBuildStore(builder, LLVMConstInt(i32, 0, 0),
+                    LLVMGetNamedGlobal(module, LLVMIRGenerator.LIMIT));
+            LLVMBuildRetVoid(builder);
+
+            addFunction(module, builder, FUEL_LEFT, i64);
+            LLVMBuildRet(builder, LLVMBuildLoad(builder,
+                    LLVMGetNamedGlobal(module, LLVMIRGenerator.FUEL), "fuel"));
+            addFunction(module, builder, LIMIT_STATUS, i32);
+            LLVMBuildRet(builder, LLVMBuildLoad(builder,
+                    LLVMGetNamedGlobal(module, LLVMIRGenerator.LIMIT), "limit"));
+        }
+        finally {
+            LLVMDisposeBuilder(builder);
+        }
+    }
+
+    private LLVMValueRef addFunction(LLVMModuleRef module, LLVMBuilderRef builder,
+                                     String name, LLVMTypeRef returnType) {
+        LLVMValueRef f = LLVMAddFunction(module, name,
+                LLVMFunctionType(returnType, new PointerPointer<>(0), 0, 0));
+        LLVMPositionBuilderAtEnd(builder, LLVMAppendBasicBlockInContext(context, f, "entry"));
+        return f;
+    }
+
+    // The stack may take what the globals leave of memoryBytes.
+    private void setStackBudget(LLVMModuleRef module, LLVMTargetDataRef target) throws CompileException {
+        long globals = 0;
+        for (LLVMValueRef g = LLVMGetFirstGlobal(module); g != null && !g.isNull(); g = LLVMGetNextGlobal(g)) {
+            globals += LLVMABISizeOfType(target, LLVMGlobalGetValueType(g));
+        }
+        if (globals >= memoryBytes) {
+            throw new CompileException("globals take " + globals + " bytes; the limit is " + memoryBytes);
+        }
+        // MCJIT compiles the module on the first call, so it can still be changed
+        LLVMSetInitializer(LLVMGetNamedGlobal(module, LLVMIRGenerator.STACK_BUDGET),
+                LLVMConstInt(LLVMInt64TypeInContext(context), memoryBytes - globals, 0));
+    }
+
+    /** Disposes the programs after the run in progress, if any. */
+    @Override
+    public synchronized void close() {
+        if (runner.isShutdown()) return;
+        runner.submit(() -> {
+            for (Program program : programs.values()) {
+                program.dispose();
+            }
+            programs.clear();
+            LLVMContextDispose(context);
+        });
+        runner.shutdown();
+    }
+}
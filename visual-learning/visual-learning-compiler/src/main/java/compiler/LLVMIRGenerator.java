@@ -4,27 +4,147 @@ import ast.*;
 import entity.*;
 import exception.*;
 import ast.Op;
+import org.bytedeco.javacpp.BytePointer;
 import org.bytedeco.javacpp.PointerPointer;
 import org.bytedeco.llvm.LLVM.*;
 import type.*;
+import utils.TimeReport;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.bytedeco.llvm.global.LLVM.*;
 
 
 public class LLVMIRGenerator {
     public LLVMIRGenerator() {
-        this.context = LLVMContextCreate();;
-        this.builder = LLVMCreateBuilderInContext(context);;
+        this(LLVMContextCreate());
     }
 
+    // All types, constants and the module live in the given context, so
+    // generators running on different threads must use different contexts.
+    public LLVMIRGenerator(LLVMContextRef context) {
+        this(context, TimeReport.disabled());
+    }
+
+    public LLVMIRGenerator(LLVMContextRef context, TimeReport timeReport) {
+        this.context = context;
+        this.builder = LLVMCreateBuilderInContext(context);
+        this.timeReport = timeReport;
+    }
+
+    final TimeReport timeReport;
+
+    /*
+     * Globals of a module compiled with setCountFuel(true).  Each block
+     * costs one unit of FUEL per instruction when it starts, and calls,
+     * loop headers and labels, which every cycle passes, stop the run
+     * once FUEL is below 0; a call whose frame would end below
+     * STACK_LIMIT does not run, and a division by zero (or MIN / -1) is
+     * not done, as it would kill the process.  In each case the
+     * function returns 0 at once; FUEL is then negative, so every loop
+     * and call after it does the same until main returns.  LIMIT tells the last two cases apart from
+     * running out of fuel.  The outermost call, at DEPTH 0, sets
+     * STACK_LIMIT to STACK_BUDGET bytes below its own frame.  The runner
+     * sets the counters before each run.
+     */
+    static final public String FUEL = "__fuel";
+    static final public String DEPTH = "__depth";
+    static final public String STACK_BUDGET = "__stack_budget";
+    static final public String STACK_LIMIT = "__stack_limit";
+    static final public String LIMIT = "__limit";
+    static final public int LIMIT_DEPTH = 2;
+    static final public int LIMIT_DIVIDE = 3;
+
+    private boolean countFuel = false;
+    private LLVMValueRef fuel, depth, stackBudget, stackLimit, limit;
+    private LLVMValueRef stackSave;     // llvm.stacksave
+    private LLVMValueRef entryDepth;    // the depth of the current call
+    private LLVMTypeRef returnType;     // null for void
     LLVMContextRef context;
     LLVMModuleRef module;
     LLVMBuilderRef builder;
     LLVMValueRef currFunc;
 
+    /*
+     * Parameters and scalar locals whose address is not taken are kept
+     * in SSA form: their values are tracked per basic block by an
+     * SsaBuilder, which inserts phis at the joins, so that reading them
+     * needs no load and writing no store.  Every block is therefore
+     * made by newBlock() and every branch goes through br(), condBr()
+     * or an edge added to the SsaBuilder.  Other variables live in an
+     * alloca in the entry block, or are globals.
+     */
+    private SsaBuilder ssa;
+    private SsaBuilder.Block currBlock;
+    private LLVMBasicBlockRef entryBlock;
+    private LLVMBuilderRef allocaBuilder;
+    private Set<Entity> addressTaken;
+
+    // innermost loop or switch first; a switch has no continue target
+    private final Deque<JumpTargets> jumpTargets = new ArrayDeque<>();
+    // labels of the current function; the block of a goto target is
+    // created by whichever of the goto and the label comes first
+    private final Map<String, SsaBuilder.Block> labelBlocks = new HashMap<>();
+    private final Map<String, LabelNode> definedLabels = new HashMap<>();
+
+    static private final class JumpTargets {
+        final SsaBuilder.Block breakTarget;
+        final SsaBuilder.Block continueTarget;
+
+        JumpTargets(SsaBuilder.Block breakTarget, SsaBuilder.Block continueTarget) {
+            this.breakTarget = breakTarget;
+            this.continueTarget = continueTarget;
+        }
+    }
+
+    public void setCountFuel(boolean countFuel) {
+        this.countFuel = countFuel;
+    }
+
+    /**
+     * Translates a checked AST.  A construct which the generator does not
+     * support is reported with a SemanticException; on any failure the
+     * half built module is disposed.
+     */
     public LLVMModuleRef llvmGenerate(AST ast) throws SemanticException {
-        this.module = LLVMModuleCreateWithName(ast.source.sourceName());
+        this.module = LLVMModuleCreateWithNameInContext(ast.source.sourceName(), context);
+        allocaBuilder = LLVMCreateBuilderInContext(context);
+        boolean done = false;
+        try {
+            generate(ast);
+            done = true;
+            return module;
+        }
+        finally {
+            if (ssa != null) {
+                ssa.dispose();
+            }
+            LLVMDisposeBuilder(allocaBuilder);
+            LLVMDisposeBuilder(builder);
+            if (!done) {
+                LLVMDisposeModule(module);
+            }
+        }
+    }
+
+    private void generate(AST ast) throws SemanticException {
+        if (countFuel) {
+            fuel = addCounter(FUEL, LLVMInt64TypeInContext(context));
+            depth = addCounter(DEPTH, LLVMInt32TypeInContext(context));
+            stackBudget = addCounter(STACK_BUDGET, LLVMInt64TypeInContext(context));
+            stackLimit = addCounter(STACK_LIMIT, LLVMInt64TypeInContext(context));
+            limit = addCounter(LIMIT, LLVMInt32TypeInContext(context));
+            stackSave = LLVMAddFunction(module, "llvm.stacksave",
+                    LLVMFunctionType(LLVMPointerType(LLVMInt8TypeInContext(context), 0), new PointerPointer<>(0), 0, 0));
+        }
 
         // Transform topLevelScope variables
         for (DefinedVariable var : ast.definedVariables()) {
@@ -37,11 +157,11 @@ public class LLVMIRGenerator {
             LLVMValueRef llvmConst = LLVMAddGlobal(module, constType, constant.name());
 
 //            LLVMSetLinkage(llvmConst, LLVMInternalLinkage);
-            LLVMValueRef llvmInitVal = constToLLVMValue(builder, constant.value());
+            LLVMValueRef llvmInitVal = constToLLVMValue(constant.value());
             LLVMSetInitializer(llvmConst, llvmInitVal);
         }
         for (DefinedFunction func : ast.definedFunctions()) {
-            LLVMTypeRef[] paramTypes = typesToLLVMTypes(func.parameters(), func.lvarScope());
+            LLVMTypeRef[] paramTypes = typesToLLVMTypes(func.parameters());
             LLVMTypeRef funcType = LLVMFunctionType(typeToLLVMType(func.returnType()), new PointerPointer<>(paramTypes),
                     paramTypes.length,
                     0
@@ -49,21 +169,45 @@ public class LLVMIRGenerator {
             LLVMAddFunction(module, func.name(), funcType);
         }
         for (DefinedFunction func : ast.definedFunctions()) {
-            LLVMValueRef llvmFunc = LLVMGetNamedFunction(module, func.name());
-            this.currFunc = llvmFunc;
-            compileParams(func, llvmFunc);
-
-            LLVMBasicBlockRef entry = LLVMAppendBasicBlock(llvmFunc, func.name() + ".entry");
-            LLVMPositionBuilderAtEnd(builder, entry);
-
-            // Generate function body
-            stmtToLLVM(module, builder, func.body(), func.body().scope());
-            LLVMPositionBuilderAtEnd(builder, LLVMGetEntryBasicBlock(currFunc));
+            try (TimeReport.Timer t = timeReport.start("LLVMIRGenerator", func.name())) {
+                LLVMValueRef llvmFunc = LLVMGetNamedFunction(module, func.name());
+                this.currFunc = llvmFunc;
+                this.returnType = func.isVoid() ? null : typeToLLVMType(func.returnType());
+                compileParams(func, llvmFunc);
+
+                ssa = new SsaBuilder(context, llvmFunc);
+                SsaBuilder.Block entry = ssa.newBlock(func.name() + ".entry");
+                ssa.seal(entry);
+                entryBlock = entry.ref;
+                startBlock(entry);
+                addressTaken = addressTakenVariables(func);
+                // before anything is stored into the frame
+                if (countFuel) {
+                    enterCall();
+                }
+                defineParams(func);
+
+                // Generate function body
+                labelBlocks.clear();
+                definedLabels.clear();
+                stmtToLLVM(module, builder, func.body(), func.body().scope());
+                checkLabels(func);
+                // the block after the last statement; only reachable
+                // when a function runs off its end, which returns 0
+                // when the program runs in process
+                if (func.isVoid() || countFuel) {
+                    buildReturn(null);
+                } else {
+                    LLVMBuildUnreachable(builder);
+                }
+                ssa.finish();
+                ssa = null;
+                if (countFuel) {
+                    chargeBlocks(llvmFunc);
+                }
+                LLVMPositionBuilderAtEnd(builder, LLVMGetEntryBasicBlock(currFunc));
+            }
         }
-
-        LLVMDumpModule(module);
-        LLVMDisposeBuilder(builder);
-        return module;
     }
 
     public void compileParams(DefinedFunction func, LLVMValueRef llvmFunc){
@@ -75,6 +219,202 @@ public class LLVMIRGenerator {
         }
     }
 
+    // the slot of a parameter is its index
+    private void defineParams(DefinedFunction func) {
+        Scope scope = func.body().scope().scopeAt(1);
+        List<Parameter> params = func.parameters();
+        for (int i = 0; i < params.size(); i++) {
+            Parameter param = params.get(i);
+            LLVMValueRef value = LLVMGetParam(currFunc, i);
+            if (addressTaken.contains(param)) {
+                LLVMValueRef alloca = buildEntryAlloca(LLVMTypeOf(value), param.name());
+                LLVMBuildStore(builder, value, alloca);
+                scope.putAlloca(i, alloca);
+            }
+            else {
+                int var = ssa.newVariable(param.name(), LLVMTypeOf(value));
+                scope.putSsaVariable(i, var);
+                ssa.write(var, currBlock, value);
+            }
+        }
+    }
+
+    static private Set<Entity> addressTakenVariables(DefinedFunction func) {
+        Set<Entity> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        new Visitor() {
+            public Void visit(AddressNode node) {
+                if (node.expr() instanceof VariableNode) {
+                    result.add(((VariableNode) node.expr()).entity());
+                }
+                return super.visit(node);
+            }
+        }.visit(func.body());
+        return result;
+    }
+
+    // Static locals and arrays stay in memory, as does anything whose
+    // address is taken.
+    private boolean isSsaVariable(DefinedVariable var) {
+        Type type = var.type();
+        return !var.isPrivate()
+                && (type instanceof IntegerType || type instanceof PointerType)
+                && !addressTaken.contains(var);
+    }
+
+    private SsaBuilder.Block newBlock(String name) {
+        return ssa.newBlock(name);
+    }
+
+    private void startBlock(SsaBuilder.Block block) {
+        LLVMPositionBuilderAtEnd(builder, block.ref);
+        currBlock = block;
+    }
+
+    private void br(SsaBuilder.Block target) {
+        LLVMBuildBr(builder, target.ref);
+        ssa.addEdge(currBlock, target);
+    }
+
+    private void condBr(LLVMValueRef cond, SsaBuilder.Block then, SsaBuilder.Block otherwise) {
+        LLVMBuildCondBr(builder, cond, then.ref, otherwise.ref);
+        ssa.addEdge(currBlock, then);
+        ssa.addEdge(currBlock, otherwise);
+    }
+
+    private LLVMValueRef addCounter(String name, LLVMTypeRef type) {
+        LLVMValueRef counter = LLVMAddGlobal(module, type, name);
+        LLVMSetInitializer(counter, LLVMConstInt(type, 0, 0));
+        return counter;
+    }
+
+    /*
+     * Entering a call costs fuel too, which bounds recursion that passes
+     * no loop.  The stack is checked against the real size of the
+     * frames, spills included: llvm.stacksave gives the stack pointer
+     * below the frame of this call, and the stack grows down.
+     */
+    private void enterCall() {
+        LLVMTypeRef i32 = LLVMInt32TypeInContext(context);
+        LLVMTypeRef i64 = LLVMInt64TypeInContext(context);
+        LLVMValueRef d = LLVMBuildLoad(builder, depth, "depth");
+        LLVMValueRef sp = LLVMBuildPtrToInt(builder,
+                LLVMBuildCall2(builder, LLVMGetElementType(LLVMTypeOf(stackSave)), stackSave,
+                        new PointerPointer<>(0), 0, "sp"),
+                i64, "sp.int");
+        LLVMValueRef outermost = LLVMBuildICmp(builder, LLVMIntEQ, d, LLVMConstInt(i32, 0, 0), "outermost");
+        LLVMValueRef bound = LLVMBuildSelect(builder, outermost,
+                LLVMBuildSub(builder, sp, LLVMBuildLoad(builder, stackBudget, "stack.budget"), "stack.bound"),
+                LLVMBuildLoad(builder, stackLimit, "stack.limit"), "stack.bound");
+        LLVMBuildStore(builder, bound, stackLimit);
+        LLVMValueRef tooDeep = LLVMBuildICmp(builder, LLVMIntULT, sp, bound, "too.deep");
+        SsaBuilder.Block exit = newBlock("stack.exceeded");
+        SsaBuilder.Block cont = newBlock("stack.ok");
+        condBr(tooDeep, exit, cont);
+        ssa.seal(exit);
+        startBlock(exit);
+        LLVMBuildStore(builder, LLVMConstInt(i32, LIMIT_DEPTH, 0), limit);
+        LLVMBuildStore(builder, LLVMConstInt(i64, -1, 1), fuel);
+        buildRawReturn();
+        ssa.seal(cont);
+        startBlock(cont);
+        LLVMBuildStore(builder, LLVMBuildAdd(builder, d, LLVMConstInt(i32, 1, 0), "depth.inc"), depth);
+        entryDepth = d;
+        checkFuel();
+    }
+
+    private void checkFuel() {
+        if (!countFuel) return;
+        LLVMTypeRef i64 = LLVMInt64TypeInContext(context);
+        LLVMValueRef out = LLVMBuildICmp(builder, LLVMIntSLT, LLVMBuildLoad(builder, fuel, "fuel"),
+                LLVMConstInt(i64, 0, 0), "out.of.fuel");
+        SsaBuilder.Block exit = newBlock("fuel.out");
+        SsaBuilder.Block cont = newBlock("fuel.ok");
+        condBr(out, exit, cont);
+        ssa.seal(exit);
+        startBlock(exit);
+        buildReturn(null);
+        ssa.seal(cont);
+        startBlock(cont);
+    }
+
+    // Run once the function is complete, so that the counts include
+    // the phis and the checks.  The charge goes after the phis and the
+    // allocas, which must stay at the start of their block.
+    private void chargeBlocks(LLVMValueRef function) {
+        LLVMTypeRef i64 = LLVMInt64TypeInContext(context);
+        for (LLVMBasicBlockRef b = LLVMGetFirstBasicBlock(function); b != null && !b.isNull(); b = LLVMGetNextBasicBlock(b)) {
+            int n = 0;
+            LLVMValueRef first = null;
+            for (LLVMValueRef inst = LLVMGetFirstInstruction(b); inst != null && !inst.isNull(); inst = LLVMGetNextInstruction(inst)) {
+                n++;
+                if (first == null && isNull(LLVMIsAPHINode(inst)) && isNull(LLVMIsAAllocaInst(inst))) {
+                    first = inst;
+                }
+            }
+            if (first == null) {
+                // no terminator; LLVMVerifyModule rejects the function
+                continue;
+            }
+            LLVMPositionBuilderBefore(builder, first);
+            LLVMValueRef left = LLVMBuildSub(builder, LLVMBuildLoad(builder, fuel, "fuel"),
+                    LLVMConstInt(i64, n, 0), "fuel.charged");
+            LLVMBuildStore(builder, left, fuel);
+        }
+    }
+
+    static private boolean isNull(LLVMValueRef value) {
+        return value == null || value.isNull();
+    }
+
+    private void guardDivision(LLVMValueRef left, LLVMValueRef right, boolean signed) {
+        if (!countFuel) return;
+        LLVMTypeRef t = LLVMTypeOf(right);
+        LLVMValueRef bad = LLVMBuildICmp(builder, LLVMIntEQ, right, LLVMConstNull(t), "div.zero");
+        if (signed) {
+            long min = -1L << (LLVMGetIntTypeWidth(t) - 1);
+            LLVMValueRef overflow = LLVMBuildAnd(builder,
+                    LLVMBuildICmp(builder, LLVMIntEQ, left, LLVMConstInt(t, min, 1), "div.min"),
+                    LLVMBuildICmp(builder, LLVMIntEQ, right, LLVMConstInt(t, -1, 1), "div.minus.one"),
+                    "div.overflow");
+            bad = LLVMBuildOr(builder, bad, overflow, "div.bad");
+        }
+        SsaBuilder.Block exit = newBlock("div.error");
+        SsaBuilder.Block cont = newBlock("div.ok");
+        condBr(bad, exit, cont);
+        ssa.seal(exit);
+        startBlock(exit);
+        LLVMBuildStore(builder, LLVMConstInt(LLVMInt32TypeInContext(context), LIMIT_DIVIDE, 0), limit);
+        LLVMBuildStore(builder, LLVMConstInt(LLVMInt64TypeInContext(context), -1, 1), fuel);
+        buildReturn(null);
+        ssa.seal(cont);
+        startBlock(cont);
+    }
+
+    // value is null for a void function, and for the return after the
+    // fuel ran out, which returns 0
+    private LLVMValueRef buildReturn(LLVMValueRef value) {
+        if (countFuel) {
+            LLVMBuildStore(builder, entryDepth, depth);
+        }
+        if (value == null) {
+            return buildRawReturn();
+        }
+        return LLVMBuildRet(builder, value);
+    }
+
+    private LLVMValueRef buildRawReturn() {
+        return (returnType == null)
+                ? LLVMBuildRetVoid(builder)
+                : LLVMBuildRet(builder, LLVMConstNull(returnType));
+    }
+
+    // Statements after a jump are unreachable; they go into a fresh
+    // block which has no predecessor.
+    private void startUnreachableBlock(String name) {
+        SsaBuilder.Block block = newBlock(name);
+        ssa.seal(block);
+        startBlock(block);
+    }
 
     private LLVMValueRef stmtToLLVM(LLVMModuleRef module, LLVMBuilderRef builder, StmtNode node, Scope scope) throws SemanticException {
         if (node instanceof ExprStmtNode) {
@@ -82,8 +422,9 @@ public class LLVMIRGenerator {
         }
         else if (node instanceof ReturnNode) {
             ExprNode expr = ((ReturnNode) node).expr();
-            LLVMValueRef ret = exprToLLVM(module, builder, expr, scope);
-            return LLVMBuildRet(builder, ret);
+            LLVMValueRef ret = buildReturn((expr == null) ? null : exprToLLVM(module, builder, expr, scope));
+            startUnreachableBlock("return.after");
+            return ret;
         }
         else if (node instanceof BlockNode) {
             BlockNode body = ((BlockNode) node);
@@ -98,101 +439,248 @@ public class LLVMIRGenerator {
             }
         }
         else if (node instanceof IfNode) {
-            LLVMBasicBlockRef thenBlock = LLVMAppendBasicBlockInContext(context, currFunc, "if.then");
-            LLVMBasicBlockRef elseBlock = LLVMAppendBasicBlockInContext(context, currFunc, "if.else");
-            LLVMBasicBlockRef endBlock = LLVMAppendBasicBlockInContext(context, currFunc, "if.end");
             ExprNode cond = ((IfNode) node).cond();
             BlockNode thenBody = (BlockNode) ((IfNode) node).thenBody();
             BlockNode elseBody = (BlockNode) ((IfNode) node).elseBody();
+            SsaBuilder.Block thenBlock = newBlock("if.then");
+            SsaBuilder.Block elseBlock = (elseBody != null) ? newBlock("if.else") : null;
+            SsaBuilder.Block endBlock = newBlock("if.end");
             // Conditional branch
             LLVMValueRef condRes = buildICmp(module, builder, cond, scope);
-            if (elseBody != null) {
-                LLVMBuildCondBr(builder, condRes, thenBlock, elseBlock);
-            } else {
-                LLVMBuildCondBr(builder, condRes, thenBlock, endBlock);
-            }
-            LLVMPositionBuilderAtEnd(builder, thenBlock);
+            condBr(condRes, thenBlock, (elseBody != null) ? elseBlock : endBlock);
+
+            ssa.seal(thenBlock);
+            startBlock(thenBlock);
             stmtToLLVM(module, builder, thenBody, thenBody.scope());
-            LLVMBuildBr(builder, endBlock);
+            br(endBlock);
 
             if (elseBody != null) {
-                LLVMPositionBuilderAtEnd(builder, elseBlock);
+                ssa.seal(elseBlock);
+                startBlock(elseBlock);
                 stmtToLLVM(module, builder, elseBody, elseBody.scope());
-                LLVMBuildBr(builder, endBlock);
+                br(endBlock);
             }
-            LLVMPositionBuilderAtEnd(builder, endBlock);
+            ssa.seal(endBlock);
+            startBlock(endBlock);
 
         }
         else if (node instanceof ForNode) {
-            LLVMBasicBlockRef loop = LLVMAppendBasicBlockInContext(context, currFunc, "loop");
-            LLVMBasicBlockRef loopBody = LLVMAppendBasicBlockInContext(context, currFunc, "loop.body");
-            LLVMBasicBlockRef loopEnd = LLVMAppendBasicBlockInContext(context, currFunc, "loop.end");
+            SsaBuilder.Block loop = newBlock("loop");
+            SsaBuilder.Block loopBody = newBlock("loop.body");
+            SsaBuilder.Block loopIncr = newBlock("loop.incr");
+            SsaBuilder.Block loopEnd = newBlock("loop.end");
             ExprNode init = ((ExprStmtNode) ((ForNode) node).init()).expr();
             ExprNode cond = ((ForNode) node).cond();
             // Set init
-            setAlloca(module, builder, init, scope);
-            LLVMBuildBr(builder, loop);
-            LLVMPositionBuilderAtEnd(builder, loop);
+            exprToLLVM(module, builder, init, scope);
+            br(loop);
+            // sealed after the back edge
+            startBlock(loop);
+            checkFuel();
             LLVMValueRef cmp = buildICmp(module, builder, cond, scope);
-            LLVMBuildCondBr(builder, cmp, loopBody, loopEnd);
-            LLVMPositionBuilderAtEnd(builder, loopBody);
+            condBr(cmp, loopBody, loopEnd);
+            ssa.seal(loopBody);
+            startBlock(loopBody);
+            jumpTargets.push(new JumpTargets(loopEnd, loopIncr));
             stmtToLLVM(module, builder, ((ForNode) node).body(), ((BlockNode) ((ForNode) node).body()).scope());
-            // incr
-            stmtToLLVM(module, builder, ((ForNode) node).incr(), ((BlockNode) ((ForNode) node).body()).scope());
-            LLVMBuildBr(builder, loop);
-            LLVMPositionBuilderAtEnd(builder, loopEnd);
+            jumpTargets.pop();
+            br(loopIncr);
+            ssa.seal(loopIncr);
+            startBlock(loopIncr);
+            // incr is resolved in the scope of the for statement, not of its body
+            stmtToLLVM(module, builder, ((ForNode) node).incr(), scope);
+            br(loop);
+            ssa.seal(loop);
+            ssa.seal(loopEnd);
+            startBlock(loopEnd);
         }
         else if (node instanceof WhileNode) {
-            LLVMBasicBlockRef whileCondBlock = LLVMAppendBasicBlockInContext(context, currFunc, "while.cond");
-            LLVMBasicBlockRef whileLoopBlock = LLVMAppendBasicBlockInContext(context, currFunc, "while.loop");
-            LLVMBasicBlockRef endBlock = LLVMAppendBasicBlockInContext(context, currFunc, "while.end");
+            SsaBuilder.Block whileCondBlock = newBlock("while.cond");
+            SsaBuilder.Block whileLoopBlock = newBlock("while.loop");
+            SsaBuilder.Block endBlock = newBlock("while.end");
             ExprNode cond = ((WhileNode) node).cond();
             BlockNode body = (BlockNode) ((WhileNode) node).body();
-            LLVMBuildBr(builder, whileCondBlock);
+            br(whileCondBlock);
 
-            LLVMPositionBuilderAtEnd(builder, whileCondBlock);
+            // sealed after the back edge
+            startBlock(whileCondBlock);
+            checkFuel();
             LLVMValueRef cmp = buildICmp(module, builder, cond, scope);
-            LLVMBuildCondBr(builder, cmp, whileLoopBlock, endBlock);
+            condBr(cmp, whileLoopBlock, endBlock);
 
-            LLVMPositionBuilderAtEnd(builder, whileLoopBlock);
+            ssa.seal(whileLoopBlock);
+            startBlock(whileLoopBlock);
+            jumpTargets.push(new JumpTargets(endBlock, whileCondBlock));
             stmtToLLVM(module, builder, body, body.scope());
-            LLVMBuildBr(builder, whileCondBlock);
+            jumpTargets.pop();
+            br(whileCondBlock);
+            ssa.seal(whileCondBlock);
 
-            LLVMPositionBuilderAtEnd(builder, endBlock);
+            ssa.seal(endBlock);
+            startBlock(endBlock);
         }
         else if (node instanceof DoWhileNode){
             BlockNode body = (BlockNode)((DoWhileNode) node).body();
             ExprNode cond = ((DoWhileNode) node).cond();
-            LLVMBasicBlockRef doWhileCond = LLVMAppendBasicBlockInContext(context, currFunc, "doWhile.cond");
-            LLVMBasicBlockRef doWhileBody = LLVMAppendBasicBlockInContext(context, currFunc, "doWhile.body");
-            LLVMBasicBlockRef doWhileEnd = LLVMAppendBasicBlockInContext(context, currFunc, "doWhile.end");
+            SsaBuilder.Block doWhileCond = newBlock("doWhile.cond");
+            SsaBuilder.Block doWhileBody = newBlock("doWhile.body");
+            SsaBuilder.Block doWhileEnd = newBlock("doWhile.end");
 
-            LLVMBuildBr(builder,doWhileBody);
-            LLVMPositionBuilderAtEnd(builder, doWhileBody);
+            br(doWhileBody);
+            // sealed after the back edge
+            startBlock(doWhileBody);
+            checkFuel();
 
+            jumpTargets.push(new JumpTargets(doWhileEnd, doWhileCond));
             stmtToLLVM(module, builder, body, body.scope());
+            jumpTargets.pop();
 
-            LLVMBuildBr(builder, doWhileCond);
-            LLVMPositionBuilderAtEnd(builder, doWhileCond);
+            br(doWhileCond);
+            ssa.seal(doWhileCond);
+            startBlock(doWhileCond);
             LLVMValueRef cmp = buildICmp(module, builder, cond, scope);
-            LLVMBuildCondBr(builder,cmp, doWhileBody,doWhileEnd);
+            condBr(cmp, doWhileBody, doWhileEnd);
+            ssa.seal(doWhileBody);
 
-            LLVMPositionBuilderAtEnd(builder, doWhileEnd);
+            ssa.seal(doWhileEnd);
+            startBlock(doWhileEnd);
 
         }
-        else if (node instanceof BreakNode) { }
-        else if (node instanceof CaseNode) { }
-        else if (node instanceof ContinueNode) { }
+        else if (node instanceof SwitchNode) {
+            compileSwitch(module, builder, (SwitchNode) node, scope);
+        }
+        else if (node instanceof BreakNode) {
+            if (jumpTargets.isEmpty()) {
+                throw new SemanticException(node.location() + ": break from out of loop");
+            }
+            jumpTo(jumpTargets.peek().breakTarget, "break.after");
+        }
+        else if (node instanceof ContinueNode) {
+            SsaBuilder.Block target = null;
+            for (JumpTargets t : jumpTargets) {
+                if (t.continueTarget != null) {
+                    target = t.continueTarget;
+                    break;
+                }
+            }
+            if (target == null) {
+                throw new SemanticException(node.location() + ": continue from out of loop");
+            }
+            jumpTo(target, "continue.after");
+        }
+        else if (node instanceof GotoNode) {
+            jumpTo(labelBlock(((GotoNode) node).target()), "goto.after");
+        }
         else if (node instanceof LabelNode){
-            String name = ((LabelNode) node).name();
-            LLVMBasicBlockRef labelBlock = LLVMAppendBasicBlockInContext(context, currFunc, name);
-            StmtNode body = ((LabelNode) node).stmt();
-
+            LabelNode label = (LabelNode) node;
+            if (definedLabels.put(label.name(), label) != null) {
+                throw new SemanticException(label.location() + ": duplicated label: " + label.name());
+            }
+            // sealed with the other labels at the end of the function
+            SsaBuilder.Block labelBlock = labelBlock(label.name());
+            // fall through into the label
+            br(labelBlock);
+            startBlock(labelBlock);
+            // a goto may loop back to the label
+            checkFuel();
+            stmtToLLVM(module, builder, label.stmt(), scope);
         }
         return null;
     }
 
-    private LLVMValueRef buildICmp(LLVMModuleRef module, LLVMBuilderRef builder, ExprNode expr, Scope scope) {
+    /*
+     * All case values go into one LLVM switch instruction; the backend
+     * turns a dense switch into a jump table (one indirect branch) and a
+     * sparse one into a binary search, so no compare chain is generated
+     * here.  The parser makes every clause end with break; the branch to
+     * the next clause only closes the unreachable block after it, and
+     * would give C fall through otherwise.
+     */
+    private void compileSwitch(LLVMModuleRef module, LLVMBuilderRef builder, SwitchNode node, Scope scope) throws SemanticException {
+        LLVMValueRef cond = exprToLLVM(module, builder, node.cond(), scope);
+        LLVMTypeRef condType = LLVMTypeOf(cond);
+        List<CaseNode> cases = node.cases();
+        SsaBuilder.Block endBlock = newBlock("switch.end");
+        SsaBuilder.Block[] caseBlocks = new SsaBuilder.Block[cases.size()];
+        SsaBuilder.Block defaultBlock = endBlock;
+        int numValues = 0;
+        for (int i = 0; i < cases.size(); i++) {
+            CaseNode c = cases.get(i);
+            caseBlocks[i] = newBlock(c.isDefault() ? "switch.default" : "switch.case");
+            if (c.isDefault()) {
+                defaultBlock = caseBlocks[i];
+            }
+            numValues += c.values().size();
+        }
+        LLVMValueRef sw = LLVMBuildSwitch(builder, cond, defaultBlock.ref, numValues);
+        ssa.addEdge(currBlock, defaultBlock);
+        Map<Long, CaseNode> seen = new HashMap<>();
+        for (int i = 0; i < cases.size(); i++) {
+            for (ExprNode value : cases.get(i).values()) {
+                long v = caseValue(value);
+                if (seen.put(v, cases.get(i)) != null) {
+                    throw new SemanticException(value.location() + ": duplicated case value: " + v);
+                }
+                LLVMAddCase(sw, LLVMConstInt(condType, v, signed(node.cond())), caseBlocks[i].ref);
+                // one edge per case value, as phis have one entry per edge
+                ssa.addEdge(currBlock, caseBlocks[i]);
+            }
+        }
+
+        jumpTargets.push(new JumpTargets(endBlock, null));
+        for (int i = 0; i < cases.size(); i++) {
+            BlockNode body = cases.get(i).body();
+            ssa.seal(caseBlocks[i]);
+            startBlock(caseBlocks[i]);
+            stmtToLLVM(module, builder, body, body.scope());
+            br(i + 1 < cases.size() ? caseBlocks[i + 1] : endBlock);
+        }
+        jumpTargets.pop();
+        ssa.seal(endBlock);
+        startBlock(endBlock);
+    }
+
+    private long caseValue(ExprNode value) throws SemanticException {
+        if (value instanceof IntegerLiteralNode) {
+            return ((IntegerLiteralNode) value).value();
+        }
+        else if (value instanceof CastNode) {
+            return caseValue(((CastNode) value).expr());
+        }
+        else if (value instanceof VariableNode && ((VariableNode) value).entity().isConstant()) {
+            return caseValue(((VariableNode) value).entity().value());
+        }
+        throw new SemanticException(value.location() + ": case value is not an integer constant");
+    }
+
+    // Ends the current block with a branch to target.
+    private void jumpTo(SsaBuilder.Block target, String after) {
+        br(target);
+        startUnreachableBlock(after);
+    }
+
+    private SsaBuilder.Block labelBlock(String name) {
+        SsaBuilder.Block block = labelBlocks.get(name);
+        if (block == null) {
+            block = newBlock(name);
+            labelBlocks.put(name, block);
+        }
+        return block;
+    }
+
+    // Also seals the label blocks: all gotos are known now.
+    private void checkLabels(DefinedFunction func) throws SemanticException {
+        for (String name : labelBlocks.keySet()) {
+            if (!definedLabels.containsKey(name)) {
+                throw new SemanticException(func.location() + ": undefined label: " + name);
+            }
+        }
+        for (SsaBuilder.Block block : labelBlocks.values()) {
+            ssa.seal(block);
+        }
+    }
+
+    private LLVMValueRef buildICmp(LLVMModuleRef module, LLVMBuilderRef builder, ExprNode expr, Scope scope) throws SemanticException {
         if (expr instanceof LogicalAndNode) {
             LLVMValueRef cmpR = buildICmp(module, builder, ((BinaryOpNode) expr).right(), scope);
             LLVMValueRef cmpL = buildICmp(module, builder, ((BinaryOpNode) expr).left(), scope);
@@ -202,16 +690,15 @@ public class LLVMIRGenerator {
             LLVMValueRef cmpR = buildICmp(module, builder, ((BinaryOpNode) expr).right(), scope);
             LLVMValueRef cmpL = buildICmp(module, builder, ((BinaryOpNode) expr).left(), scope);
             return LLVMBuildOr(builder, cmpL, cmpR, "or");
+        } else if (expr instanceof BinaryOpNode && getICmpOp(((BinaryOpNode) expr).operator()) != 0) {
+            BinaryOpNode node = (BinaryOpNode) expr;
+            LLVMValueRef rhs = exprToLLVM(module, builder, node.right(), scope);
+            LLVMValueRef lhs = exprToLLVM(module, builder, node.left(), scope);
+            return LLVMBuildICmp(builder, getICmpOp(node.operator()), lhs, rhs, "cmp");
         } else {
-            ExprNode right = ((BinaryOpNode) expr).right();
-            long cmpVal = ((IntegerLiteralNode) right).value();
-
-            VariableNode left = (VariableNode) ((BinaryOpNode) expr).left();
-            String op = ((BinaryOpNode) expr).operator();
-            int iCmpOp = getICmpOp(op);
-            LLVMValueRef lhs = LLVMBuildLoad(builder, scope.getAlloca(left.name()), left.name());
-            return LLVMBuildICmp(builder, iCmpOp, lhs, LLVMConstInt(selectSize(right.type()), cmpVal, signed(((BinaryOpNode) expr).right())), "cmp");
-
+            // any other value is true unless it is 0
+            LLVMValueRef value = exprToLLVM(module, builder, expr, scope);
+            return LLVMBuildICmp(builder, LLVMIntNE, value, LLVMConstNull(LLVMTypeOf(value)), "cmp");
         }
     }
 
@@ -219,7 +706,7 @@ public class LLVMIRGenerator {
         return  exprNode.type().isSigned() ? 0 :1;
     }
 
-    private LLVMValueRef exprToLLVM(LLVMModuleRef module, LLVMBuilderRef builder, ExprNode expr, Scope scope) {
+    private LLVMValueRef exprToLLVM(LLVMModuleRef module, LLVMBuilderRef builder, ExprNode expr, Scope scope) throws SemanticException {
         if (expr instanceof BinaryOpNode) {
             BinaryOpNode node = ((BinaryOpNode) expr);
 
@@ -227,7 +714,7 @@ public class LLVMIRGenerator {
             LLVMValueRef right = exprToLLVM(module, builder, node.right(), scope);
             LLVMValueRef left = exprToLLVM(module, builder, node.left(), scope);
 
-            if (((BinaryOpNode) expr).left().isConstant() && ((BinaryOpNode) expr).right().isConstant()) {
+            if (node.left() instanceof IntegerLiteralNode && node.right() instanceof IntegerLiteralNode) {
                 IntegerLiteralNode l = (IntegerLiteralNode) ((BinaryOpNode) expr).left();
                 IntegerLiteralNode r = (IntegerLiteralNode) ((BinaryOpNode) expr).right();
                 long value = constantFold(l, operator, r);
@@ -242,20 +729,10 @@ public class LLVMIRGenerator {
                 ExprNode value = e.value();
                 if (value instanceof IntegerLiteralNode) {
                     long value1 = ((IntegerLiteralNode) value).value();
-                    LLVMValueRef yPtr = LLVMBuildAlloca(builder, selectSize(e.type()), e.name());
-                    return LLVMBuildStore(builder,
-                            LLVMConstInt(selectSize(value.type()), value1, signed(value)),
-                            yPtr);
+                    return LLVMConstInt(selectSize(value.type()), value1, signed(value));
                 }
             } else if (e.isDefined()) {
-                if (e.isParameter()){
-                    return LLVMGetParam(currFunc, getParamIndex(e.name(), scope));
-//                    return LLVMBuildLoad(builder, var, e.name());
-                } else {
-                    LLVMValueRef var = scope.getAlloca(e.name());
-                    return LLVMBuildLoad(builder, var, e.name());
-                }
-
+                return loadVariable((VariableNode) expr, scope);
             }
         }
         else if (expr instanceof IntegerLiteralNode) {
@@ -264,7 +741,13 @@ public class LLVMIRGenerator {
             LLVMTypeRef valueType = typeToLLVMType(expr.type());
             return LLVMConstInt(valueType, value, signed(expr));
         }
-        else if (expr instanceof FuncallNode) {
+        else if (expr instanceof StringLiteralNode
+                || (expr instanceof CastNode && ((CastNode) expr).expr() instanceof IntegerLiteralNode)) {
+            return constToLLVMValue(expr);
+        }
+        else if (expr instanceof FuncallNode
+                && ((FuncallNode) expr).expr() instanceof VariableNode
+                && ((VariableNode) ((FuncallNode) expr).expr()).entity() instanceof DefinedFunction) {
             DefinedFunction func = (DefinedFunction) ((VariableNode) ((FuncallNode) expr).expr()).entity();
             List<ExprNode> args = ((FuncallNode) expr).args();
 
@@ -278,48 +761,89 @@ public class LLVMIRGenerator {
         }
         else if (expr instanceof AssignNode) {
             AssignNode node = (AssignNode) expr;
+            if (!(node.lhs() instanceof VariableNode)) {
+                throw unsupported(node.lhs());
+            }
             LLVMValueRef rhs = exprToLLVM(module, builder, node.rhs(), scope);
-            LLVMValueRef orig = scope.getAlloca(((VariableNode) node.lhs()).name());
-            return LLVMBuildStore(builder, rhs, orig);
+            storeVariable((VariableNode) node.lhs(), scope, rhs);
+            return rhs;
         }
         else if (expr instanceof OpAssignNode) {
             OpAssignNode node = (OpAssignNode) expr;
+            if (!(node.lhs() instanceof VariableNode)) {
+                throw unsupported(node.lhs());
+            }
             LLVMValueRef rhs = exprToLLVM(module, builder, node.rhs(), scope);
             LLVMValueRef lhs = exprToLLVM(module, builder, node.lhs(), scope);
             // cont(lhs += rhs) -> lhs = lhs + rhs; cont(lhs)
             LLVMValueRef res = compileBinaryOp(module, builder, rhs, lhs, node.operator(), scope);
-            LLVMValueRef orig = scope.getAlloca(((VariableNode) node.lhs()).name());
-            return LLVMBuildStore(builder, res, orig);
+            storeVariable((VariableNode) node.lhs(), scope, res);
+            return res;
 
         }
         else if (expr instanceof SuffixOpNode) {
-            ExprNode node = ((SuffixOpNode) expr).expr();
-            LLVMValueRef i = scope.getAlloca(((VariableNode) node).name());
-
-            LLVMValueRef load = LLVMBuildLoad(builder, i, ((VariableNode) node).name());
-            LLVMValueRef add = LLVMBuildAdd(builder, load, LLVMConstInt(selectSize(node.type()), 1, signed(node)), "add");
-            LLVMBuildStore(builder, add, i);
+            if (!(((SuffixOpNode) expr).expr() instanceof VariableNode)) {
+                throw unsupported(((SuffixOpNode) expr).expr());
+            }
+            VariableNode node = (VariableNode) ((SuffixOpNode) expr).expr();
+            LLVMValueRef old = loadVariable(node, scope);
+            LLVMValueRef one = LLVMConstInt(selectSize(node.type()), 1, signed(node));
+            LLVMValueRef res = "--".equals(((SuffixOpNode) expr).operator())
+                    ? LLVMBuildSub(builder, old, one, "sub")
+                    : LLVMBuildAdd(builder, old, one, "add");
+            storeVariable(node, scope, res);
+            return old;
         }
         else if (expr instanceof UnaryOpNode) {
             if ("+".equals(((UnaryOpNode) expr).operator())) {
-                constToLLVMValue(builder, expr);
+                return exprToLLVM(module, builder, ((UnaryOpNode) expr).expr(), scope);
             } else {
                 return transformUnary(module, builder, expr, scope);
             }
         }
-        else if (expr instanceof AddressNode) {
-            String name = ((VariableNode) ((AddressNode) expr).expr()).name();
-            LLVMValueRef var = scope.getAlloca(name);
+        else if (expr instanceof AddressNode && ((AddressNode) expr).expr() instanceof VariableNode) {
+            // address-taken variables are never kept in SSA form
+            VariableNode node = (VariableNode) ((AddressNode) expr).expr();
+            String name = node.name();
+            LLVMValueRef var = allocaOf(node, scope);
             return LLVMBuildBitCast(builder, var, LLVMPointerType(selectSize(expr.type()), 0), name + ".ptr");
         }
-        return null;
+        // arrays, structs, other casts and calls through pointers
+        throw unsupported(expr);
+    }
+
+    static private SemanticException unsupported(ExprNode expr) {
+        return new SemanticException(expr.location() + ": not supported by the IR generator: "
+                + expr.getClass().getSimpleName());
     }
 
-    private int getParamIndex(String name, Scope scope) {
-        return scope.getScopeParam(name);
+    // Finds the storage of a resolved variable by the (depth, slot)
+    // recorded by LocalResolver, without looking up its name.
+    private LLVMValueRef allocaOf(VariableNode node, Scope scope) {
+        return scope.scopeAt(node.scopeDepth()).getAlloca(node.slot());
     }
 
-    private LLVMValueRef transformUnary(LLVMModuleRef module, LLVMBuilderRef builder, ExprNode expr, Scope scope) {
+    private LLVMValueRef loadVariable(VariableNode node, Scope scope) {
+        Scope s = scope.scopeAt(node.scopeDepth());
+        int var = s.getSsaVariable(node.slot());
+        if (var >= 0) {
+            return ssa.read(var, currBlock);
+        }
+        return LLVMBuildLoad(builder, s.getAlloca(node.slot()), node.name());
+    }
+
+    private void storeVariable(VariableNode node, Scope scope, LLVMValueRef value) {
+        Scope s = scope.scopeAt(node.scopeDepth());
+        int var = s.getSsaVariable(node.slot());
+        if (var >= 0) {
+            ssa.write(var, currBlock, value);
+        }
+        else {
+            LLVMBuildStore(builder, value, s.getAlloca(node.slot()));
+        }
+    }
+
+    private LLVMValueRef transformUnary(LLVMModuleRef module, LLVMBuilderRef builder, ExprNode expr, Scope scope) throws SemanticException {
         UnaryOpNode node = (UnaryOpNode) expr;
         LLVMValueRef val = exprToLLVM(module, builder, node.expr(), scope);
         switch (node.operator()) {
@@ -334,32 +858,27 @@ public class LLVMIRGenerator {
         }
     }
 
-    public LLVMValueRef setAlloca(LLVMModuleRef module, LLVMBuilderRef builder, ExprNode expr, Scope scope) {
-        if (expr instanceof AssignNode) {
-            VariableNode lhs = (VariableNode) ((AssignNode) expr).lhs();
-            LLVMValueRef var = scope.getAlloca(lhs.name());
-            ExprNode rhs = ((AssignNode) expr).rhs();
-            if (rhs instanceof IntegerLiteralNode) {
-                LLVMValueRef var1 = exprToLLVM(module, builder, rhs, scope);
-                LLVMBuildStore(builder, var1, var);
-            } else if (rhs instanceof UnaryOpNode) {
-
-            }
-        } else if (expr instanceof VariableNode) {
-
+    public LLVMValueRef buildAlloca(LLVMModuleRef module, LLVMBuilderRef builder, DefinedVariable var, Scope scope) throws SemanticException {
+        int slot = scope.slotOf(var.name());
+        LLVMValueRef alloca = scope.getAlloca(slot);
+        if (alloca == null) {
+            alloca = buildEntryAlloca(typeToLLVMType(var.typeNode().type()), var.name());
+            scope.putAlloca(slot, alloca);
         }
-        return null;
+        return alloca;
     }
 
-    public LLVMValueRef buildAlloca(LLVMModuleRef module, LLVMBuilderRef builder, DefinedVariable var, Scope scope) throws SemanticException {
-        if (scope.getAlloca(var.name()) != null) {
-            return scope.getAlloca(var.name());
-        } else {
-            LLVMTypeRef varType = typeToLLVMType(var.typeNode().type());
-            LLVMValueRef alloca = LLVMBuildAlloca(builder, varType, var.name());
-            scope.putAlloca(var.name(), alloca);
-            return alloca;
+    // Allocas go to the start of the entry block, so that a variable of a
+    // loop body is allocated once.
+    private LLVMValueRef buildEntryAlloca(LLVMTypeRef type, String name) {
+        LLVMValueRef first = LLVMGetFirstInstruction(entryBlock);
+        if (first == null || first.isNull()) {
+            LLVMPositionBuilderAtEnd(allocaBuilder, entryBlock);
         }
+        else {
+            LLVMPositionBuilderBefore(allocaBuilder, first);
+        }
+        return LLVMBuildAlloca(allocaBuilder, type, name);
     }
 
 
@@ -382,7 +901,7 @@ public class LLVMIRGenerator {
     }
 
 
-    private static LLVMValueRef compileBinaryOp(LLVMModuleRef module, LLVMBuilderRef builder,
+    private LLVMValueRef compileBinaryOp(LLVMModuleRef module, LLVMBuilderRef builder,
                                                 LLVMValueRef right, LLVMValueRef left, String operator, Scope scope) {
         Op op = Op.internBinary(operator, false);
         LLVMValueRef ret = null;
@@ -397,15 +916,19 @@ public class LLVMIRGenerator {
                 ret = LLVMBuildMul(builder, left, right, "mul");
                 break;
             case S_DIV:
+                guardDivision(left, right, true);
                 ret = LLVMBuildSDiv(builder, left, right, "s_div");
                 break;
             case U_DIV:
+                guardDivision(left, right, false);
                 ret = LLVMBuildUDiv(builder, left, right, "u_div");
                 break;
             case U_MOD:
+                guardDivision(left, right, false);
                 ret = LLVMBuildURem(builder,left,right,"u_mod");
                 break;
             case S_MOD:
+                guardDivision(left, right, true);
                 ret = LLVMBuildSRem(builder,left,right,"s_mod");
                 break;
             case BIT_AND:
@@ -440,16 +963,34 @@ public class LLVMIRGenerator {
 //            LLVMSetLinkage(llvmVar, LLVMExternalLinkage);
             if (var.hasInitializer()) {
                 ExprNode init = var.initializer();
-                LLVMValueRef llvmInitVal = constToLLVMValue(builder, init);
+                LLVMValueRef llvmInitVal = constToLLVMValue(init);
                 LLVMSetInitializer(llvmVar, llvmInitVal);
             }
+            scope.putAlloca(scope.slotOf(var.name()), llvmVar);
+            ret = llvmVar;
+        } else if (var.isPrivate()) {
+            // a static local keeps its value between calls, so it is an
+            // internal global; only the function sees its name
+            String name = LLVMGetValueName(currFunc).getString() + "." + var.name();
+            LLVMValueRef llvmVar = LLVMAddGlobal(module, varType, name);
+            LLVMSetLinkage(llvmVar, LLVMInternalLinkage);
+            LLVMSetInitializer(llvmVar, var.hasInitializer()
+                    ? constToLLVMValue(var.initializer())
+                    : LLVMConstNull(varType));
+            scope.putAlloca(scope.slotOf(var.name()), llvmVar);
             ret = llvmVar;
+        } else if (isSsaVariable(var)) {
+            int ssaVar = ssa.newVariable(var.name(), varType);
+            scope.putSsaVariable(scope.slotOf(var.name()), ssaVar);
+            ret = null;
+            if (var.hasInitializer()) {
+                ret = exprToLLVM(module, builder, var.initializer(), scope);
+                ssa.write(ssaVar, currBlock, ret);
+            }
         } else {
             LLVMValueRef localVar = buildAlloca(module, builder, var, scope);
             if (var.hasInitializer()) {
-                IntegerLiteralNode initExpr = (IntegerLiteralNode) var.initializer();
-                long value = initExpr.value();
-                LLVMBuildStore(builder, LLVMConstInt(selectSize(initExpr.type()), value, signed(initExpr)), localVar);
+                LLVMBuildStore(builder, exprToLLVM(module, builder, var.initializer(), scope), localVar);
             }
             ret = localVar;
         }
@@ -470,45 +1011,49 @@ public class LLVMIRGenerator {
             LLVMTypeRef elementLLVMType = typeToLLVMType(elementType);
             return LLVMArrayType(elementLLVMType, (int) numElements);
         } else if (type instanceof VoidType) {
-            return LLVMVoidType();
+            return LLVMVoidTypeInContext(context);
         } else {
             throw new IllegalArgumentException("Unsupported type: " + type.getClass().getName());
         }
     }
 
 
-    private LLVMValueRef constToLLVMValue(LLVMBuilderRef builder, ExprNode expr ) {
+    private LLVMValueRef constToLLVMValue(ExprNode expr) throws SemanticException {
         if (expr instanceof IntegerLiteralNode) {
             IntegerLiteralNode initExpr = (IntegerLiteralNode) expr;
             long value = initExpr.value();
             return LLVMConstInt(selectSize(initExpr.type()), value, signed(initExpr));
         }
         else if (expr instanceof StringLiteralNode) {
-            //TODO: Unimplemented
-            StringLiteralNode str = (StringLiteralNode) expr;
-            String value = str.value();
-            LLVMValueRef strPtr = LLVMConstString(value, value.length(), 1);
-            LLVMValueRef[] indices = {LLVMConstInt(LLVMInt32Type(), 0, 0), LLVMConstInt(LLVMInt32Type(), 0, signed(expr))};
-            return LLVMBuildInBoundsGEP2(builder, LLVMPointerType(LLVMInt8Type(), 0), strPtr, new PointerPointer(indices), 2, "");
-        }
-        else if (expr instanceof CastNode){
+            return stringToLLVMValue(((StringLiteralNode) expr).value());
+        }
+        else if (expr instanceof CastNode && ((CastNode) expr).expr() instanceof IntegerLiteralNode) {
             Type type = expr.type();
             long value = ((IntegerLiteralNode) ((CastNode) expr).expr()).value();
             return LLVMConstInt(selectSize(type), value, signed(expr));
         }
-        else {
-            throw new IllegalArgumentException("Unsupported constant type: " + expr.getClass().getName());
-        }
+        throw unsupported(expr);
+    }
+
+    // The characters go into a private constant global, as a C compiler
+    // puts them into .rodata; the value is the address of the first one.
+    private LLVMValueRef stringToLLVMValue(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        LLVMValueRef chars = LLVMConstStringInContext(context, new BytePointer(bytes), bytes.length, 0);
+        LLVMValueRef str = LLVMAddGlobal(module, LLVMTypeOf(chars), ".str");
+        LLVMSetInitializer(str, chars);
+        LLVMSetGlobalConstant(str, 1);
+        LLVMSetLinkage(str, LLVMPrivateLinkage);
+        LLVMValueRef zero = LLVMConstInt(LLVMInt32TypeInContext(context), 0, 0);
+        return LLVMConstInBoundsGEP(str, new PointerPointer<>(zero, zero), 2);
     }
 
 
-    private LLVMTypeRef[] typesToLLVMTypes(List<Parameter> parameter, Scope scope) throws SemanticException {
+    private LLVMTypeRef[] typesToLLVMTypes(List<Parameter> parameter) throws SemanticException {
         LLVMTypeRef[] llvmTypes = new LLVMTypeRef[parameter.size()];
         for (int i = 0; i < parameter.size(); i++) {
             DefinedVariable var = parameter.get(i);
             LLVMTypeRef llvmType = typeToLLVMType(var.type());
-
-            scope.putScopeParam(var.name(), i);
             // If the variable is an array, wrap the LLVM type in a pointer type
             if (var.type() instanceof ArrayType) {
                 llvmType = LLVMPointerType(llvmType, 0);
@@ -518,19 +1063,10 @@ public class LLVMIRGenerator {
         return llvmTypes;
     }
 
-    private LLVMValueRef[] argsToLLVMValue(LLVMModuleRef module, LLVMBuilderRef builder, List<ExprNode> args, Scope scope) {
+    private LLVMValueRef[] argsToLLVMValue(LLVMModuleRef module, LLVMBuilderRef builder, List<ExprNode> args, Scope scope) throws SemanticException {
         LLVMValueRef[] llvmTypes = new LLVMValueRef[args.size()];
         for (int i = 0; i < args.size(); i++) {
-            ExprNode exprNode = args.get(i);
-            LLVMValueRef argVal = null;
-            if (args.get(i) instanceof VariableNode) {
-                argVal = scope.getAlloca(((VariableNode) args.get(i)).name());
-
-            } else if (args.get(i) instanceof IntegerLiteralNode) {
-                argVal = exprToLLVM(module, builder, exprNode, scope);
-
-            }
-            llvmTypes[i] = argVal;
+            llvmTypes[i] = exprToLLVM(module, builder, args.get(i), scope);
         }
         return llvmTypes;
     }
@@ -558,13 +1094,13 @@ public class LLVMIRGenerator {
     private LLVMTypeRef selectSize(Type type) {
         switch ((int) type.size()){
             case 4:
-                return LLVMInt32Type();
+                return LLVMInt32TypeInContext(context);
             case 2:
-                return LLVMInt16Type();
+                return LLVMInt16TypeInContext(context);
 
 
             case 1:
-                return LLVMInt8Type();
+                return LLVMInt8TypeInContext(context);
         }
         return null;
     }
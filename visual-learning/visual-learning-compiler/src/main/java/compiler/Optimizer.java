@@ -0,0 +1,118 @@
+package compiler;
+
+import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.bytedeco.llvm.LLVM.LLVMPassManagerRef;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Runs a list of LLVM passes over a module, through the pass manager
+ * of the C API.  The passes are named as in opt(1); passesOf() gives
+ * the pipeline of an -O level, and -fpasses= replaces it.
+ * LLVMIRGenerator builds SSA form for scalar locals itself; mem2reg
+ * still promotes the allocas of the rest where it can.
+ */
+public class Optimizer {
+    static private final Map<String, Consumer<LLVMPassManagerRef>> PASSES = new LinkedHashMap<>();
+    static {
+        PASSES.put("mem2reg", pm -> LLVMAddPromoteMemoryToRegisterPass(pm));
+        PASSES.put("sroa", pm -> LLVMAddScalarReplAggregatesPass(pm));
+        PASSES.put("early-cse", pm -> LLVMAddEarlyCSEPass(pm));
+        PASSES.put("sccp", pm -> LLVMAddSCCPPass(pm));
+        PASSES.put("instcombine", pm -> LLVMAddInstructionCombiningPass(pm));
+        PASSES.put("reassociate", pm -> LLVMAddReassociatePass(pm));
+        PASSES.put("gvn", pm -> LLVMAddGVNPass(pm));
+        PASSES.put("simplifycfg", pm -> LLVMAddCFGSimplificationPass(pm));
+        PASSES.put("loop-rotate", pm -> LLVMAddLoopRotatePass(pm));
+        PASSES.put("licm", pm -> LLVMAddLICMPass(pm));
+        PASSES.put("indvars", pm -> LLVMAddIndVarSimplifyPass(pm));
+        PASSES.put("loop-deletion", pm -> LLVMAddLoopDeletionPass(pm));
+        PASSES.put("loop-unroll", pm -> LLVMAddLoopUnrollPass(pm));
+        PASSES.put("memcpyopt", pm -> LLVMAddMemCpyOptPass(pm));
+        PASSES.put("dse", pm -> LLVMAddDeadStoreEliminationPass(pm));
+        PASSES.put("adce", pm -> LLVMAddAggressiveDCEPass(pm));
+        PASSES.put("tailcallelim", pm -> LLVMAddTailCallEliminationPass(pm));
+        PASSES.put("inline", pm -> LLVMAddFunctionInliningPass(pm));
+        PASSES.put("globalopt", pm -> LLVMAddGlobalOptimizerPass(pm));
+        PASSES.put("globaldce", pm -> LLVMAddGlobalDCEPass(pm));
+    }
+
+    static private final List<String> O1 = Arrays.asList(
+            "mem2reg", "instcombine", "simplifycfg");
+    static private final List<String> O2 = Arrays.asList(
+            "mem2reg", "early-cse", "sccp", "instcombine", "reassociate",
+            "gvn", "simplifycfg",
+            "loop-rotate", "licm", "indvars", "loop-deletion",
+            "instcombine", "dse", "adce", "simplifycfg");
+    static private final List<String> O3 = Arrays.asList(
+            "mem2reg", "inline", "early-cse", "sccp", "instcombine", "reassociate",
+            "gvn", "simplifycfg", "tailcallelim",
+            "loop-rotate", "licm", "indvars", "loop-deletion", "loop-unroll",
+            "instcombine", "gvn", "memcpyopt", "dse", "adce", "simplifycfg",
+            "globalopt", "globaldce");
+
+    /** Returns the passes run at -O<level>; none at -O0. */
+    static public List<String> passesOf(int level) {
+        switch (level) {
+            case 0: return Collections.emptyList();
+            case 1: return O1;
+            case 2: return O2;
+            case 3: return O3;
+            default:
+                throw new IllegalArgumentException("no optimization level " + level);
+        }
+    }
+
+    static public boolean isKnownPass(String name) {
+        return PASSES.containsKey(name);
+    }
+
+    /** The LLVMCodeGenOptLevel used together with -O<level>. */
+    static public int codeGenLevelOf(int level) {
+        switch (level) {
+            case 0: return LLVMCodeGenLevelNone;
+            case 1: return LLVMCodeGenLevelLess;
+            case 2: return LLVMCodeGenLevelDefault;
+            case 3: return LLVMCodeGenLevelAggressive;
+            default:
+                throw new IllegalArgumentException("no optimization level " + level);
+        }
+    }
+
+    private final List<String> passes;
+
+    public Optimizer(List<String> passes) {
+        for (String name : passes) {
+            if (!isKnownPass(name)) {
+                throw new IllegalArgumentException("unknown pass: " + name);
+            }
+        }
+        this.passes = passes;
+    }
+
+    public List<String> passes() {
+        return passes;
+    }
+
+    /** Optimizes module in place. */
+    public void optimize(LLVMModuleRef module) {
+        if (passes.isEmpty()) return;
+        LLVMPassManagerRef pm = LLVMCreatePassManager();
+        try {
+            for (String name : passes) {
+                PASSES.get(name).accept(pm);
+            }
+            LLVMRunPassManager(pm, module);
+        }
+        finally {
+            LLVMDisposePassManager(pm);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package compiler;
 
 import exception.*;
 import type.TypeTable;
+import utils.TimeReport;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -10,6 +11,13 @@ import java.util.ListIterator;
 
 public class Options {
     private String outputFileName;
+    private int jobs = 1;
+    private boolean fusedSemantics = false;
+    private boolean parallelChecks = false;
+    private int optLevel = 0;
+    private List<String> passes;     // -fpasses=, replaces the passes of optLevel
+    private final TypeTable typeTable = TypeTable.ilp32();
+    private TimeReport.Format timeReportFormat;
 
     private List<LdArg> ldArgs;
     private List<SourceFile> sourceFiles;
@@ -28,6 +36,11 @@ public class Options {
         return sourceFiles;
     }
 
+    // number of source files compiled concurrently (-j)
+    public int jobs() {
+        return jobs;
+    }
+
     String asmFileNameOf(SourceFile src) {
         if (outputFileName != null && mode == CompilerMode.Compile) {
             return outputFileName;
@@ -35,8 +48,35 @@ public class Options {
         return src.asmFileName();
     }
 
+    // runs the semantic passes over one traversal (-ffused-semantics)
+    public boolean fusedSemantics() {
+        return fusedSemantics;
+    }
+
+    // checks function bodies on a ForkJoinPool (-fparallel-checks);
+    // ignored with -ffused-semantics
+    public boolean parallelChecks() {
+        return parallelChecks;
+    }
+
+    // -O0 .. -O3; -O is -O1
+    public int optLevel() {
+        return optLevel;
+    }
+
+    // the LLVM passes run before code generation
+    public List<String> optimizationPasses() {
+        return (passes != null) ? passes : Optimizer.passesOf(optLevel);
+    }
+
+    // null unless -ftime-report is given
+    public TimeReport.Format timeReportFormat() {
+        return timeReportFormat;
+    }
+
+    // shared by all files of the invocation, which may be compiled in parallel
     public TypeTable typeTable() {
-        return TypeTable.ilp32();
+        return typeTable;
     }
 
 
@@ -54,9 +94,31 @@ public class Options {
                     }
                     mode = CompilerMode.fromOption(arg);
                 }
+                else if (arg.startsWith("-O")) {
+                    optLevel = parseOptLevel(arg);
+                }
+                else if (arg.startsWith("-fpasses=")) {
+                    passes = parsePasses(arg.substring("-fpasses=".length()));
+                }
                 else if (arg.startsWith("-o")) {
                     outputFileName = getOptArg(arg, args);
                 }
+                else if (arg.equals("-ftime-report")
+                        || arg.equals("-ftime-report=table")) {
+                    timeReportFormat = TimeReport.Format.Table;
+                }
+                else if (arg.equals("-ftime-report=json")) {
+                    timeReportFormat = TimeReport.Format.Json;
+                }
+                else if (arg.equals("-ffused-semantics")) {
+                    fusedSemantics = true;
+                }
+                else if (arg.equals("-fparallel-checks")) {
+                    parallelChecks = true;
+                }
+                else if (arg.startsWith("-j")) {
+                    jobs = parseJobs(getOptArg(arg, args));
+                }
                 else {
                     parseError("unknown option: " + arg);
                 }
@@ -84,6 +146,42 @@ public class Options {
         }
     }
 
+    private int parseJobs(String n) {
+        try {
+            int j = Integer.parseInt(n);
+            if (j > 0) {
+                return j;
+            }
+        }
+        catch (NumberFormatException ignored) {
+        }
+        parseError("-j requires a positive number: " + n);
+        return 1;
+    }
+
+    private int parseOptLevel(String arg) {
+        if (arg.equals("-O")) {
+            return 1;
+        }
+        if (arg.length() == 3 && arg.charAt(2) >= '0' && arg.charAt(2) <= '3') {
+            return arg.charAt(2) - '0';
+        }
+        parseError("unknown optimization level: " + arg);
+        return 0;
+    }
+
+    private List<String> parsePasses(String list) {
+        List<String> result = new ArrayList<>();
+        for (String name : list.split(",")) {
+            if (name.isEmpty()) continue;
+            if (!Optimizer.isKnownPass(name)) {
+                parseError("unknown pass in -fpasses: " + name);
+            }
+            result.add(name);
+        }
+        return result;
+    }
+
     private void parseError(String msg) {
         throw new OptionParseError(msg);
     }
@@ -0,0 +1,218 @@
+package compiler;
+
+import org.bytedeco.llvm.LLVM.LLVMBasicBlockRef;
+import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMContextRef;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMUseRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Builds SSA form while the IR of one function is generated, after
+ * Braun et al., "Simple and Efficient Construction of Static Single
+ * Assignment Form" (CC 2013).
+ * A variable is a number from newVariable().  write() records its
+ * current value in a block; read() finds the value reaching a block,
+ * placing phis at the joins on the way.  A block is sealed once all of
+ * its predecessors are known; phis read in it before are completed
+ * then.  Phis whose operands are all the same value are removed.
+ * Every edge of the CFG must be added with addEdge(), and every block
+ * sealed before finish().
+ */
+final class SsaBuilder {
+    final class Block {
+        final LLVMBasicBlockRef ref;
+        private final List<Block> preds = new ArrayList<>();   // one per edge
+        private boolean sealed = false;
+        private LLVMValueRef[] defs;        // by variable, allocated on the first write
+        private List<LLVMValueRef> incompletePhis;
+        private List<Integer> incompleteVars;
+
+        private Block(LLVMBasicBlockRef ref) {
+            this.ref = ref;
+        }
+    }
+
+    private final LLVMContextRef context;
+    private final LLVMValueRef function;
+    private final LLVMBuilderRef phiBuilder;
+    private final List<LLVMTypeRef> types = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    // removed phis and the values which replaced them.  The phis are
+    // erased by finish(): until then their addresses cannot be reused
+    // by new instructions, which would be taken for them.
+    private final Map<LLVMValueRef, LLVMValueRef> replaced = new HashMap<>();
+    private int unsealed = 0;
+    private boolean disposed = false;
+
+    SsaBuilder(LLVMContextRef context, LLVMValueRef function) {
+        this.context = context;
+        this.function = function;
+        this.phiBuilder = LLVMCreateBuilderInContext(context);
+    }
+
+    int newVariable(String name, LLVMTypeRef type) {
+        types.add(type);
+        names.add(name);
+        return types.size() - 1;
+    }
+
+    Block newBlock(String name) {
+        unsealed++;
+        return new Block(LLVMAppendBasicBlockInContext(context, function, name));
+    }
+
+    /** Records the edge of a branch from one block to another. */
+    void addEdge(Block from, Block to) {
+        if (to.sealed) {
+            throw new Error("must not happen: edge into sealed block");
+        }
+        to.preds.add(from);
+    }
+
+    void seal(Block block) {
+        if (block.sealed) return;
+        if (block.incompletePhis != null) {
+            for (int i = 0; i < block.incompletePhis.size(); i++) {
+                addPhiOperands(block.incompleteVars.get(i), block.incompletePhis.get(i), block);
+            }
+            block.incompletePhis = null;
+            block.incompleteVars = null;
+        }
+        block.sealed = true;
+        unsealed--;
+    }
+
+    void write(int var, Block block, LLVMValueRef value) {
+        if (block.defs == null || var >= block.defs.length) {
+            block.defs = (block.defs == null)
+                    ? new LLVMValueRef[types.size()]
+                    : Arrays.copyOf(block.defs, types.size());
+        }
+        block.defs[var] = value;
+    }
+
+    LLVMValueRef read(int var, Block block) {
+        if (block.defs != null && var < block.defs.length && block.defs[var] != null) {
+            LLVMValueRef value = resolve(block.defs[var]);
+            block.defs[var] = value;
+            return value;
+        }
+        return readRecursive(var, block);
+    }
+
+    private LLVMValueRef readRecursive(int var, Block block) {
+        LLVMValueRef value;
+        if (!block.sealed) {
+            // operands are added when the block is sealed
+            value = newPhi(var, block);
+            if (block.incompletePhis == null) {
+                block.incompletePhis = new ArrayList<>();
+                block.incompleteVars = new ArrayList<>();
+            }
+            block.incompletePhis.add(value);
+            block.incompleteVars.add(var);
+        }
+        else if (block.preds.size() == 1) {
+            value = read(var, block.preds.get(0));
+        }
+        else if (block.preds.isEmpty()) {
+            // the entry block, or unreachable code
+            value = LLVMGetUndef(types.get(var));
+        }
+        else {
+            // write the phi first to break cycles through loops
+            LLVMValueRef phi = newPhi(var, block);
+            write(var, block, phi);
+            value = addPhiOperands(var, phi, block);
+        }
+        write(var, block, value);
+        return value;
+    }
+
+    private LLVMValueRef newPhi(int var, Block block) {
+        LLVMValueRef first = LLVMGetFirstInstruction(block.ref);
+        if (first == null || first.isNull()) {
+            LLVMPositionBuilderAtEnd(phiBuilder, block.ref);
+        }
+        else {
+            LLVMPositionBuilderBefore(phiBuilder, first);
+        }
+        return LLVMBuildPhi(phiBuilder, types.get(var), names.get(var));
+    }
+
+    private LLVMValueRef addPhiOperands(int var, LLVMValueRef phi, Block block) {
+        for (Block pred : block.preds) {
+            LLVMValueRef value = read(var, pred);
+            LLVMAddIncoming(phi, value, pred.ref, 1);
+        }
+        return tryRemoveTrivialPhi(phi);
+    }
+
+    // A phi whose operands are itself and one other value is that value.
+    private LLVMValueRef tryRemoveTrivialPhi(LLVMValueRef phi) {
+        LLVMValueRef same = null;
+        int n = LLVMCountIncoming(phi);
+        for (int i = 0; i < n; i++) {
+            LLVMValueRef op = resolve(LLVMGetIncomingValue(phi, i));
+            if (op.equals(same) || op.equals(phi)) continue;
+            if (same != null) return phi;
+            same = op;
+        }
+        if (same == null) {
+            // unreachable, or the variable is read before any write
+            same = LLVMGetUndef(LLVMTypeOf(phi));
+        }
+        List<LLVMValueRef> phiUsers = new ArrayList<>();
+        for (LLVMUseRef use = LLVMGetFirstUse(phi); use != null && !use.isNull(); use = LLVMGetNextUse(use)) {
+            LLVMValueRef user = LLVMGetUser(use);
+            LLVMValueRef userPhi = LLVMIsAPHINode(user);
+            if (userPhi != null && !userPhi.isNull() && !user.equals(phi)) {
+                phiUsers.add(user);
+            }
+        }
+        LLVMReplaceAllUsesWith(phi, same);
+        replaced.put(phi, same);
+        for (LLVMValueRef user : phiUsers) {
+            if (!replaced.containsKey(user)) {
+                tryRemoveTrivialPhi(user);
+            }
+        }
+        return resolve(same);
+    }
+
+    private LLVMValueRef resolve(LLVMValueRef value) {
+        LLVMValueRef r;
+        while ((r = replaced.get(value)) != null) {
+            value = r;
+        }
+        return value;
+    }
+
+    void finish() {
+        dispose();
+        if (unsealed != 0) {
+            throw new Error("must not happen: " + unsealed + " blocks not sealed");
+        }
+        // no uses are left: all went to the replacements
+        for (LLVMValueRef phi : replaced.keySet()) {
+            LLVMInstructionEraseFromParent(phi);
+        }
+        replaced.clear();
+    }
+
+    /** Releases the builder; finish() does so too. */
+    void dispose() {
+        if (disposed) return;
+        LLVMDisposeBuilder(phiBuilder);
+        disposed = true;
+    }
+}
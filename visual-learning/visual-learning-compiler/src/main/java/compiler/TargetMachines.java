@@ -0,0 +1,128 @@
+package compiler;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.llvm.LLVM.LLVMTargetMachineRef;
+import org.bytedeco.llvm.LLVM.LLVMTargetRef;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Process-wide LLVM target registry and TargetMachine cache.
+ * The targets are registered once, on first use.  TargetMachines are
+ * created per (triple, cpu, features, level) and handed out one caller
+ * at a time, since a TargetMachine must not emit two modules at once;
+ * released machines are kept for the next compilation and disposed
+ * when the JVM exits.
+ */
+public class TargetMachines {
+    static private boolean initialized = false;
+    static private final Map<Key, Deque<LLVMTargetMachineRef>> idle = new HashMap<>();
+    static private final List<LLVMTargetMachineRef> created = new ArrayList<>();
+
+    private TargetMachines() {
+    }
+
+    static private void initialize() {
+        if (initialized) return;
+        LLVMInitializeAllTargetInfos();
+        LLVMInitializeAllTargets();
+        LLVMInitializeAllTargetMCs();
+        LLVMInitializeAllAsmPrinters();
+        LLVMInitializeAllAsmParsers();
+        LLVMInitializeAllDisassemblers();
+        Runtime.getRuntime().addShutdownHook(new Thread(TargetMachines::disposeAll, "dispose-target-machines"));
+        initialized = true;
+    }
+
+    /**
+     * Returns a TargetMachine for the exclusive use of the caller
+     * until it is passed to release().
+     */
+    static public LLVMTargetMachineRef acquire(String triple, String cpu, String features, int level) {
+        Key key = new Key(triple, cpu, features, level);
+        synchronized (TargetMachines.class) {
+            initialize();
+            Deque<LLVMTargetMachineRef> machines = idle.get(key);
+            if (machines != null && !machines.isEmpty()) {
+                return machines.pop();
+            }
+        }
+        // creating a machine takes a while; do not hold the lock
+        LLVMTargetMachineRef machine = LLVMCreateTargetMachine(
+                lookupTarget(triple), triple, cpu, features,
+                level, LLVMRelocDefault, LLVMCodeModelDefault);
+        synchronized (TargetMachines.class) {
+            created.add(machine);
+        }
+        return machine;
+    }
+
+    static public void release(LLVMTargetMachineRef machine, String triple, String cpu, String features, int level) {
+        Key key = new Key(triple, cpu, features, level);
+        synchronized (TargetMachines.class) {
+            if (!created.contains(machine)) {
+                throw new IllegalArgumentException("not a cached TargetMachine");
+            }
+            idle.computeIfAbsent(key, k -> new ArrayDeque<>()).push(machine);
+        }
+    }
+
+    // Accepts a target triple, or a target name such as "x86-64".
+    static private LLVMTargetRef lookupTarget(String triple) {
+        LLVMTargetRef target = new LLVMTargetRef();
+        BytePointer error = new BytePointer();
+        if (LLVMGetTargetFromTriple(triple, target, error) == 0) {
+            return target;
+        }
+        LLVMDisposeMessage(error);
+        target = LLVMGetTargetFromName(triple);
+        if (target == null || target.isNull()) {
+            throw new Error("unknown target: " + triple);
+        }
+        return target;
+    }
+
+    /** Disposes every TargetMachine; called from a shutdown hook. */
+    static public synchronized void disposeAll() {
+        for (LLVMTargetMachineRef machine : created) {
+            LLVMDisposeTargetMachine(machine);
+        }
+        created.clear();
+        idle.clear();
+    }
+
+    static private final class Key {
+        final String triple;
+        final String cpu;
+        final String features;
+        final int level;
+
+        Key(String triple, String cpu, String features, int level) {
+            this.triple = triple;
+            this.cpu = cpu;
+            this.features = features;
+            this.level = level;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+            Key k = (Key)other;
+            return triple.equals(k.triple) && cpu.equals(k.cpu)
+                    && features.equals(k.features) && level == k.level;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(triple, cpu, features, level);
+        }
+    }
+}
@@ -0,0 +1,732 @@
+package corpus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates random programs which Parser accepts and which pass all
+ * semantic checks, for benchmarks and stress tests.  The text depends
+ * only on the seed and the Shape.
+ *
+ * Every loop is bounded by a counter which nothing else assigns, calls
+ * only go to functions defined earlier and divisors are non-zero
+ * literals, so the programs also terminate when run.
+ */
+public class ProgramGenerator {
+    /**
+     * Size and shape of the generated program.
+     */
+    static public class Shape {
+        private int lines = 0;
+        private int functions = 20;
+        private int globals = 10;
+        private int statements = 8;
+        private int depth = 3;
+        private boolean irSafe = false;
+
+        public int lines() { return lines; }
+        public int functions() { return functions; }
+        public int globals() { return globals; }
+        public int statements() { return statements; }
+        public int depth() { return depth; }
+        public boolean irSafe() { return irSafe; }
+
+        /** Keep adding functions until the program has this many lines (0: use functions()). */
+        public Shape lines(int n) { this.lines = n; return this; }
+        /** Number of functions besides main, when lines() is 0. */
+        public Shape functions(int n) { this.functions = n; return this; }
+        public Shape globals(int n) { this.globals = n; return this; }
+        /** Maximum number of statements in a function body. */
+        public Shape statements(int n) { this.statements = n; return this; }
+        /** Maximum nesting of compound statements. */
+        public Shape depth(int n) { this.depth = n; return this; }
+
+        /**
+         * Restricts the program to what LLVMIRGenerator can translate:
+         * int locals initialized with literals, conditions of the form
+         * "variable op literal", binary operators with a variable on the
+         * left, calls with literal arguments, and parameters referenced
+         * only outside nested blocks.  Control flow includes switch,
+         * break, continue and goto; the bodies of if and loops are blocks.
+         */
+        public Shape irSafe(boolean b) { this.irSafe = b; return this; }
+    }
+
+    static private final String[] ARITH = { "+", "-", "*", "&", "|", "^" };
+    static private final String[] CMP = { "<", "<=", ">", ">=", "==", "!=" };
+    static private final String[] LOGICAL = { "&&", "||" };
+    static private final String[] SHIFT = { "<<", ">>" };
+    static private final String[] OPASSIGN = { "+=", "-=", "*=", "&=", "|=", "^=" };
+    static private final String[] UNARY = { "-", "~", "!" };
+
+    static public String generate(long seed, Shape shape) {
+        return new ProgramGenerator(seed, shape).generate();
+    }
+
+    private final Random rand;
+    private final Shape shape;
+    private StringBuilder buf;
+    private int nLines;
+    private String indent;
+
+    // program-wide names
+    private final List<String> globals = new ArrayList<>();
+    private final List<String> constants = new ArrayList<>();
+    private final List<String> strings = new ArrayList<>();
+    private final List<String> staticGlobals = new ArrayList<>();
+    // functions.get(i) is i for f<i>, or -1 if f<i> returns void
+    private final List<Integer> functions = new ArrayList<>();
+    private final List<Integer> arities = new ArrayList<>();
+
+    // per function
+    private final List<String> vars = new ArrayList<>();        // assignable ints
+    private final List<String> readOnly = new ArrayList<>();    // loop counters
+    private final List<String> arrays = new ArrayList<>();
+    private final List<String> pointers = new ArrayList<>();
+    private int nLocals;
+    private boolean usesDone;
+    private Block block;
+
+    // Declarations must precede the statements of a block, but they are
+    // only known once the statements are written; they are collected
+    // here and inserted at the start of the block when it is closed.
+    private class Block {
+        final StringBuilder decls = new StringBuilder();
+        final String indent;
+        final Block outer;
+        final int start;
+        final int varMark, readOnlyMark, arrayMark, pointerMark;
+
+        Block(String indent, Block outer, int start) {
+            this.indent = indent;
+            this.outer = outer;
+            this.start = start;
+            this.varMark = vars.size();
+            this.readOnlyMark = readOnly.size();
+            this.arrayMark = arrays.size();
+            this.pointerMark = pointers.size();
+        }
+
+        void declare(String decl) {
+            decls.append(indent).append(decl).append('\n');
+        }
+
+        void leave() {
+            truncate(vars, varMark);
+            truncate(readOnly, readOnlyMark);
+            truncate(arrays, arrayMark);
+            truncate(pointers, pointerMark);
+        }
+    }
+
+    public ProgramGenerator(long seed, Shape shape) {
+        this.rand = new Random(seed);
+        this.shape = shape;
+    }
+
+    public String generate() {
+        buf = new StringBuilder();
+        nLines = 0;
+        indent = "";
+        line("// generated by corpus.ProgramGenerator");
+        for (int i = 0; i < shape.globals(); i++) {
+            global(i);
+        }
+        line("");
+        int n = 0;
+        while (shape.lines() > 0 ? nLines < shape.lines() : n < shape.functions()) {
+            if (shape.irSafe()) {
+                irSafeFunction(n++);
+            }
+            else {
+                function(n++);
+            }
+        }
+        line("int main(void)");
+        line("{");
+        vars.clear();
+        if (!shape.irSafe() && !functions.isEmpty()) {
+            line("    int r = 0;");
+            // static globals must be referenced somewhere
+            for (String g : staticGlobals) {
+                line("    r += " + g + ";");
+            }
+            line("    return " + call(0, 2) + " & r & 0;");
+        }
+        else {
+            line("    return 0;");
+        }
+        line("}");
+        return buf.toString();
+    }
+
+    //
+    // Top level
+    //
+
+    private void global(int i) {
+        switch (shape.irSafe() ? 0 : rand.nextInt(5)) {
+        case 0:
+        case 1:
+            globals.add("g" + i);
+            line(storage("g" + i) + "int g" + i + " = " + literal() + ";");
+            break;
+        case 2:
+            globals.add("g" + i);
+            line(storage("g" + i) + "int g" + i + ";");
+            break;
+        case 3:
+            constants.add("K" + i);
+            line("const int K" + i + " = " + (1 + rand.nextInt(64)) + ";");
+            break;
+        default:
+            strings.add("s" + i);
+            line("char *s" + i + " = \"str" + i + "\\n\";");
+        }
+    }
+
+    private String storage(String name) {
+        if (shape.irSafe() || rand.nextInt(4) != 0) {
+            return "";
+        }
+        staticGlobals.add(name);
+        return "static ";
+    }
+
+    private void function(int id) {
+        boolean isVoid = id > 0 && rand.nextInt(5) == 0;
+        int arity = rand.nextInt(4);
+        StringBuilder sig = new StringBuilder();
+        sig.append(isVoid ? "void" : "int").append(" f").append(id).append('(');
+        vars.clear();
+        readOnly.clear();
+        arrays.clear();
+        pointers.clear();
+        nLocals = 0;
+        usesDone = false;
+        if (arity == 0) {
+            sig.append("void");
+        }
+        for (int i = 0; i < arity; i++) {
+            if (i > 0) sig.append(", ");
+            sig.append("int p").append(i);
+            vars.add("p" + i);
+        }
+        sig.append(')');
+        if (rand.nextInt(4) == 0) {
+            comment();
+        }
+        line(sig.toString());
+
+        open("");
+        declareLocal("int r", "0");
+        vars.add("r");
+        int n = 1 + rand.nextInt(shape.statements());
+        for (int i = 0; i < n; i++) {
+            stmt(1, false, false);
+        }
+        if (usesDone) {
+            line("done:");
+        }
+        if (isVoid) {
+            line(indent + "r++;");
+            line(indent + "return;");
+        }
+        else {
+            line(indent + "return r + " + expr(0) + ";");
+        }
+        close("");
+        line("");
+
+        // registered last so that a function never calls itself
+        functions.add(isVoid ? -1 : id);
+        arities.add(arity);
+    }
+
+    //
+    // Statements
+    //
+
+    private void stmt(int depth, boolean breakable, boolean continuable) {
+        boolean compound = depth < shape.depth();
+        int k = rand.nextInt(compound ? 14 : 6);
+        switch (k) {
+        case 0: case 1:
+            line(indent + assignTarget() + " = " + expr(0) + ";");
+            break;
+        case 2:
+            line(indent + assignTarget() + " " + pick(OPASSIGN) + " " + expr(1) + ";");
+            break;
+        case 3:
+            if (!functions.isEmpty()) {
+                int f = rand.nextInt(functions.size());
+                if (functions.get(f) < 0) {
+                    line(indent + call(f, 1) + ";");
+                }
+                else {
+                    line(indent + assignTarget() + " = " + call(f, 1) + ";");
+                }
+                break;
+            }
+            line(indent + assignTarget() + "++;");
+            break;
+        case 4:
+            if (breakable && rand.nextBoolean()) {
+                line(indent + "if (" + cond() + ") break;");
+            }
+            else if (continuable) {
+                line(indent + "if (" + cond() + ") continue;");
+            }
+            else {
+                usesDone = true;
+                line(indent + "if (" + cond() + ") goto done;");
+            }
+            break;
+        case 5:
+            newLocal();
+            break;
+        case 6: case 7:
+            ifStmt(depth, breakable, continuable);
+            break;
+        case 8:
+            whileStmt(depth);
+            break;
+        case 9:
+            doWhileStmt(depth);
+            break;
+        case 10:
+            forStmt(depth);
+            break;
+        case 11:
+            switchStmt(depth, continuable);
+            break;
+        case 12:
+            open("");
+            stmts(depth + 1, breakable, continuable);
+            close("");
+            break;
+        default:
+            if (rand.nextBoolean()) {
+                comment();
+            }
+            line(indent + assignTarget() + " = " + expr(0) + ";");
+        }
+    }
+
+    private void stmts(int depth, boolean breakable, boolean continuable) {
+        int n = 1 + rand.nextInt(Math.max(1, shape.statements() / 2));
+        for (int i = 0; i < n; i++) {
+            stmt(depth, breakable, continuable);
+        }
+    }
+
+    private void ifStmt(int depth, boolean breakable, boolean continuable) {
+        open("if (" + cond() + ")");
+        stmts(depth + 1, breakable, continuable);
+        if (rand.nextBoolean()) {
+            closeAndOpen("else");
+            stmts(depth + 1, breakable, continuable);
+        }
+        close("");
+    }
+
+    private void whileStmt(int depth) {
+        String c = newCounter();
+        line(indent + c + " = 0;");
+        open("while (" + c + " < " + (1 + rand.nextInt(8)) + ")");
+        // first, so that continue cannot skip it
+        line(indent + c + "++;");
+        stmts(depth + 1, true, true);
+        close("");
+    }
+
+    private void doWhileStmt(int depth) {
+        String c = newCounter();
+        line(indent + c + " = 0;");
+        open("do");
+        line(indent + c + "++;");
+        stmts(depth + 1, true, true);
+        close(" while (" + c + " < " + (1 + rand.nextInt(8)) + ");");
+    }
+
+    private void forStmt(int depth) {
+        String c = newCounter();
+        open("for (" + c + " = 0; " + c + " < " + (1 + rand.nextInt(8)) + "; " + c + "++)");
+        stmts(depth + 1, true, true);
+        close("");
+    }
+
+    private void switchStmt(int depth, boolean continuable) {
+        line(indent + "switch (" + expr(1) + " & 7) {");
+        int n = 1 + rand.nextInt(4);
+        int value = 0;
+        for (int i = 0; i < n; i++) {
+            int labels = 1 + rand.nextInt(2);
+            for (int j = 0; j < labels; j++) {
+                line(indent + "case " + value++ + ":");
+            }
+            caseBody(depth, continuable);
+        }
+        if (rand.nextBoolean()) {
+            line(indent + "default:");
+            caseBody(depth, continuable);
+        }
+        line(indent + "}");
+    }
+
+    // case bodies are not blocks: their declarations go to the enclosing block
+    private void caseBody(int depth, boolean continuable) {
+        String outer = indent;
+        indent += "    ";
+        stmts(depth + 1, true, continuable);
+        line(indent + "break;");
+        indent = outer;
+    }
+
+    //
+    // Declarations
+    //
+
+    private void declareLocal(String decl, String init) {
+        block.declare(init == null ? decl + ";" : decl + " = " + init + ";");
+    }
+
+    private void newLocal() {
+        String name = "v" + nLocals++;
+        switch (rand.nextInt(4)) {
+        case 0:
+            arrays.add(name);
+            declareLocal("int[8] " + name, null);
+            line(indent + name + "[" + rand.nextInt(8) + "] = " + expr(1) + ";");
+            break;
+        case 1:
+            String target = pick(vars);
+            pointers.add(name);
+            declareLocal("int *" + name, "&" + target);
+            line(indent + "*" + name + " = " + expr(1) + ";");
+            break;
+        default:
+            // every name in vars is declared before this one: it is
+            // either in an enclosing block or earlier in this block
+            declareLocal("int " + name, initializer());
+            vars.add(name);
+            line(indent + name + " += " + expr(1) + ";");
+        }
+    }
+
+    private String newCounter() {
+        String name = "c" + nLocals++;
+        declareLocal("int " + name, "0");
+        readOnly.add(name);
+        return name;
+    }
+
+    //
+    // Expressions
+    //
+
+    private String expr(int depth) {
+        if (depth >= 3) {
+            return primary();
+        }
+        switch (rand.nextInt(12)) {
+        case 0: case 1: case 2:
+            return primary();
+        case 3: case 4:
+            return "(" + expr(depth + 1) + " " + pick(ARITH) + " " + expr(depth + 1) + ")";
+        case 5:
+            return "(" + expr(depth + 1) + " " + pick(rand.nextBoolean() ? CMP : LOGICAL) + " " + expr(depth + 1) + ")";
+        case 6:
+            return "(" + expr(depth + 1) + " " + (rand.nextBoolean() ? "/" : "%")
+                    + " " + (1 + rand.nextInt(9)) + ")";
+        case 7:
+            return "(" + expr(depth + 1) + " " + pick(SHIFT) + " " + rand.nextInt(8) + ")";
+        case 8:
+            return "(" + pick(UNARY) + expr(depth + 1) + ")";
+        case 9:
+            return "(" + cond() + " ? " + expr(depth + 1) + " : " + expr(depth + 1) + ")";
+        case 10:
+            int f = valueFunction();
+            if (f >= 0 && depth < 2) {
+                return call(f, depth + 1);
+            }
+            return primary();
+        default:
+            return special();
+        }
+    }
+
+    private String primary() {
+        int k = rand.nextInt(10);
+        if (k < 3) return literal();
+        if (k < 8 || readOnly.isEmpty()) return pick(vars);
+        return pick(readOnly);
+    }
+
+    private String special() {
+        switch (rand.nextInt(7)) {
+        case 0:
+            if (!arrays.isEmpty()) {
+                return pick(arrays) + "[" + primary() + " & 7]";
+            }
+            break;
+        case 1:
+            if (!pointers.isEmpty()) {
+                return "*" + pick(pointers);
+            }
+            break;
+        case 2:
+            if (!globals.isEmpty()) return pick(globals);
+            break;
+        case 3:
+            if (!constants.isEmpty()) return pick(constants);
+            break;
+        case 4:
+            if (!strings.isEmpty()) return pick(strings) + "[" + rand.nextInt(3) + "]";
+            break;
+        case 5:
+            return "(int)sizeof(" + (rand.nextBoolean() ? "int" : pick(vars)) + ")";
+        default:
+            return "'" + (char)('a' + rand.nextInt(26)) + "'";
+        }
+        return literal();
+    }
+
+    private String initializer() {
+        if (rand.nextBoolean()) {
+            return literal();
+        }
+        return "(" + pick(vars) + " " + pick(ARITH) + " " + literal() + ")";
+    }
+
+    private String cond() {
+        String lhs = rand.nextInt(3) == 0 ? expr(2) : primary();
+        return lhs + " " + pick(CMP) + " " + literal();
+    }
+
+    private String assignTarget() {
+        if (!globals.isEmpty() && rand.nextInt(6) == 0) {
+            return pick(globals);
+        }
+        return pick(vars);
+    }
+
+    private int valueFunction() {
+        if (functions.isEmpty()) return -1;
+        int f = rand.nextInt(functions.size());
+        return functions.get(f) < 0 ? -1 : f;
+    }
+
+    private String call(int f, int depth) {
+        StringBuilder b = new StringBuilder();
+        b.append('f').append(f).append('(');
+        for (int i = 0; i < arities.get(f); i++) {
+            if (i > 0) b.append(", ");
+            b.append(depth >= 2 || vars.isEmpty() ? literal() : expr(2));
+        }
+        return b.append(')').toString();
+    }
+
+    private String literal() {
+        switch (rand.nextInt(6)) {
+        case 0:  return "0x" + Integer.toHexString(rand.nextInt(256));
+        case 1:  return Integer.toString(rand.nextInt(10));
+        default: return Integer.toString(rand.nextInt(1000));
+        }
+    }
+
+    //
+    // IR-safe subset
+    //
+
+    private void irSafeFunction(int id) {
+        line("int f" + id + "(int a, int b)");
+        line("{");
+        line("    int x = " + rand.nextInt(100) + ";");
+        line("    int y = " + rand.nextInt(100) + ";");
+        line("    int z = 0;");
+        usesDone = false;
+        int n = 1 + rand.nextInt(shape.statements());
+        for (int i = 0; i < n; i++) {
+            irSafeStmt(id);
+        }
+        if (usesDone) {
+            line("done:");
+        }
+        line("    return x + y + z;");
+        line("}");
+        line("");
+        functions.add(id);
+        arities.add(2);
+    }
+
+    private void irSafeStmt(int id) {
+        switch (rand.nextInt(8)) {
+        case 0:
+            line("    if (" + irSafeVar() + " " + pick(CMP) + " " + rand.nextInt(100) + ") {");
+            line("        " + irSafeAssign(false));
+            line("    }");
+            line("    else {");
+            line("        " + irSafeAssign(false));
+            line("    }");
+            break;
+        case 1:
+            line("    while (z < " + (1 + rand.nextInt(10)) + ") {");
+            line("        " + irSafeAssign(false));
+            line("        z += 1;");
+            line("    }");
+            break;
+        case 2:
+            if (id > 0) {
+                line("    x = f" + rand.nextInt(id) + "(" + rand.nextInt(10) + ", " + rand.nextInt(10) + ");");
+                break;
+            }
+            // fall through
+        case 3:
+            irSafeSwitch();
+            break;
+        case 4:
+            // z is incremented first, so that continue cannot skip it
+            line("    while (z < " + (1 + rand.nextInt(10)) + ") {");
+            line("        z += 1;");
+            line("        if (" + irSafeVar() + " " + pick(CMP) + " " + rand.nextInt(100) + ") {");
+            line("            continue;");
+            line("        }");
+            line("        " + irSafeAssign(false));
+            line("        if (" + irSafeVar() + " " + pick(CMP) + " " + rand.nextInt(100) + ") {");
+            line("            break;");
+            line("        }");
+            line("    }");
+            break;
+        case 5:
+            line("    if (" + irSafeVar() + " " + pick(CMP) + " " + rand.nextInt(100) + ") {");
+            line("        goto done;");
+            line("    }");
+            usesDone = true;
+            break;
+        default:
+            line("    " + irSafeAssign(true));
+        }
+    }
+
+    // dense case values, some of them sharing a clause
+    private void irSafeSwitch() {
+        line("    switch (" + irSafeVar() + " & 7) {");
+        int n = 1 + rand.nextInt(6);
+        int value = 0;
+        while (value < n) {
+            int labels = 1 + rand.nextInt(2);
+            for (int j = 0; j < labels; j++) {
+                line("    case " + value++ + ":");
+            }
+            line("        " + irSafeAssign(false));
+            line("        break;");
+        }
+        if (rand.nextBoolean()) {
+            line("    default:");
+            line("        " + irSafeAssign(false));
+            line("        break;");
+        }
+        line("    }");
+    }
+
+    // params: whether a and b may be used (not inside nested blocks)
+    private String irSafeAssign(boolean params) {
+        String lhs = irSafeVar();
+        if (rand.nextBoolean()) {
+            return lhs + " " + pick(new String[] { "+=", "-=", "*=", "|=" }) + " " + rand.nextInt(16) + ";";
+        }
+        String rhs;
+        switch (rand.nextInt(3)) {
+        case 0:
+            if (params) {
+                rhs = rand.nextBoolean() ? "a" : "b";
+                break;
+            }
+            // fall through
+        case 1:
+            rhs = Integer.toString(rand.nextInt(1000));
+            break;
+        default:
+            rhs = irSafeVar();
+        }
+        // the left operand is a variable: the generator folds only + - * / %
+        return lhs + " = " + irSafeVar() + " " + pick(ARITH) + " " + rhs + ";";
+    }
+
+    private String irSafeVar() {
+        return rand.nextBoolean() ? "x" : "y";
+    }
+
+    //
+    // Output
+    //
+
+    private void open(String head) {
+        line(indent + (head.isEmpty() ? "{" : head + " {"));
+        enterBlock();
+    }
+
+    private void closeAndOpen(String head) {
+        leaveBlock();
+        line(indent + "}");
+        line(indent + head + " {");
+        enterBlock();
+    }
+
+    private void close(String tail) {
+        leaveBlock();
+        line(indent + "}" + tail);
+    }
+
+    private void enterBlock() {
+        indent += "    ";
+        block = new Block(indent, block, buf.length());
+    }
+
+    private void leaveBlock() {
+        // inner blocks are closed first, so this start is still valid
+        buf.insert(block.start, block.decls);
+        nLines += countLines(block.decls);
+        block.leave();
+        block = block.outer;
+        indent = indent.substring(4);
+    }
+
+    private void comment() {
+        if (rand.nextBoolean()) {
+            line(indent + "/* block comment " + rand.nextInt(1000) + " */");
+        }
+        else {
+            line(indent + "// line comment " + rand.nextInt(1000));
+        }
+    }
+
+    private void line(String s) {
+        buf.append(s).append('\n');
+        nLines++;
+    }
+
+    static private int countLines(CharSequence s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '\n') n++;
+        }
+        return n;
+    }
+
+    private String pick(String[] choices) {
+        return choices[rand.nextInt(choices.length)];
+    }
+
+    private String pick(List<String> choices) {
+        return choices.get(rand.nextInt(choices.size()));
+    }
+
+    static private void truncate(List<String> list, int size) {
+        while (list.size() > size) {
+            list.remove(list.size() - 1);
+        }
+    }
+}
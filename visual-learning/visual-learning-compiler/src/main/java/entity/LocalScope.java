@@ -1,26 +1,26 @@
 package entity;
 
+import ast.VariableNode;
 import exception.*;
 import org.bytedeco.llvm.LLVM.LLVMBasicBlockRef;
-import org.bytedeco.llvm.LLVM.LLVMTypeRef;
 import org.bytedeco.llvm.LLVM.LLVMValueRef;
-import type.Type;
 import utils.ErrorHandler;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 
 public class LocalScope extends Scope {
     protected Scope parent;
-    protected Map<String, DefinedVariable> variables;
+    protected NameTable<DefinedVariable> variables;
+    protected final int depth;
+    private Scope[] enclosing;      // by depth, built by the first scopeAt()
 
     public LocalScope(Scope parent) {
         super();
         this.parent = parent;
+        this.depth = parent.depth() + 1;
         parent.addChild(this);
-        variables = new LinkedHashMap<>();
+        variables = new NameTable<>();
     }
 
     public boolean isToplevel() {
@@ -31,6 +31,24 @@ public class LocalScope extends Scope {
         return parent.toplevel();
     }
 
+    public int depth() {
+        return depth;
+    }
+
+    public Scope scopeAt(int depth) {
+        if (depth == this.depth) {
+            return this;
+        }
+        if (enclosing == null) {
+            Scope[] scopes = new Scope[this.depth];
+            for (Scope s = parent; ; s = ((LocalScope)s).parent) {
+                scopes[s.depth()] = s;
+                if (s.isToplevel()) break;
+            }
+            enclosing = scopes;
+        }
+        return enclosing[depth];
+    }
 
     public boolean isDefinedLocally(String name) {
         return variables.containsKey(name);
@@ -44,6 +62,13 @@ public class LocalScope extends Scope {
         variables.put(var.name(), var);
     }
 
+    public int slotOf(String name) {
+        return variables.slotOf(name);
+    }
+
+    protected int slotCount() {
+        return variables.size();
+    }
 
     public Entity get(String name) throws SemanticException {
         DefinedVariable var = variables.get(name);
@@ -55,9 +80,19 @@ public class LocalScope extends Scope {
         }
     }
 
+    public Entity resolve(VariableNode node) throws SemanticException {
+        int slot = variables.slotOf(node.name());
+        if (slot >= 0) {
+            node.setSlot(depth, slot);
+            return variables.valueAt(slot);
+        }
+        else {
+            return parent.resolve(node);
+        }
+    }
 
-    public LLVMValueRef getAlloca(String name){
-        LLVMValueRef alloca = scopeAlloca.get(name);
+    public LLVMValueRef getAlloca(String name) {
+        LLVMValueRef alloca = super.getAlloca(name);
         if (alloca != null) {
             return alloca;
         }
@@ -66,12 +101,8 @@ public class LocalScope extends Scope {
         }
     }
 
-    public void putAlloca(String name, LLVMValueRef alloca){
-        scopeAlloca.put(name, alloca);
-    }
-
     public LLVMBasicBlockRef getScopeBasicBlock(String name) {
-        LLVMBasicBlockRef block = scopeBasicBlock.get(name);
+        LLVMBasicBlockRef block = super.getScopeBasicBlock(name);
         if (block != null) {
             return block;
         }
@@ -80,26 +111,6 @@ public class LocalScope extends Scope {
         }
     }
 
-    public void putScopeBasicBlock(String name, LLVMBasicBlockRef block) {
-        scopeBasicBlock.put(name, block);
-
-    }
-
-    public Integer getScopeParam(String name) {
-        Integer ref = scopeParams.get(name);
-        if (ref != null) {
-            return ref;
-        }
-        else {
-            throw new Error("Can not get Parameter: " + name);
-        }
-    }
-
-    public void putScopeParam(String name, Integer ref) {
-        scopeParams.put(name, ref);
-
-    }
-
     /**
      * Returns all local variables in this scope.
      * The result DOES includes all nested local variables,
@@ -120,7 +131,8 @@ public class LocalScope extends Scope {
      */
     public List<DefinedVariable> localVariables() {
         List<DefinedVariable> result = new ArrayList<DefinedVariable>();
-        for (DefinedVariable var : variables.values()) {
+        for (int i = 0; i < variables.size(); i++) {
+            DefinedVariable var = variables.valueAt(i);
             if (!var.isPrivate()) {
                 result.add(var);
             }
@@ -134,7 +146,8 @@ public class LocalScope extends Scope {
     public List<DefinedVariable> staticLocalVariables() {
         List<DefinedVariable> result = new ArrayList<DefinedVariable>();
         for (LocalScope s : allLocalScopes()) {
-            for (DefinedVariable var : s.variables.values()) {
+            for (int i = 0; i < s.variables.size(); i++) {
+                DefinedVariable var = s.variables.valueAt(i);
                 if (var.isPrivate()) {
                     result.add(var);
                 }
@@ -158,7 +171,8 @@ public class LocalScope extends Scope {
     }
 
     public void checkReferences(ErrorHandler h) {
-        for (DefinedVariable var : variables.values()) {
+        for (int i = 0; i < variables.size(); i++) {
+            DefinedVariable var = variables.valueAt(i);
             if (!var.isRefered()) {
                 h.warn(var.location(), "unused variable: " + var.name());
             }
@@ -0,0 +1,105 @@
+package entity;
+
+import java.util.Arrays;
+
+/**
+ * Insertion-ordered table from names to values for the scopes.
+ * Nothing is allocated until the first put(), as most blocks declare
+ * nothing.  An entry keeps its position, its slot, for the life of the
+ * table; replacing a value does not move it.
+ * Small tables are searched by scanning the keys, which for the
+ * interned names of the parser stops at the == check in String.equals();
+ * bigger ones add an open-addressing index over the same arrays.
+ */
+final class NameTable<V> {
+    static private final int LINEAR_LIMIT = 8;
+
+    private String[] keys;
+    private Object[] values;
+    private int[] index;    // slot + 1 per bucket, 0 if empty; null while small
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    String keyAt(int slot) {
+        return keys[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    V valueAt(int slot) {
+        return (V)values[slot];
+    }
+
+    /** Returns the slot of name, or -1. */
+    int slotOf(String name) {
+        if (index == null) {
+            for (int i = 0; i < size; i++) {
+                if (name.equals(keys[i])) return i;
+            }
+            return -1;
+        }
+        int mask = index.length - 1;
+        int i = mix(name.hashCode()) & mask;
+        int e;
+        while ((e = index[i]) != 0) {
+            if (name.equals(keys[e - 1])) return e - 1;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    V get(String name) {
+        int slot = slotOf(name);
+        return slot < 0 ? null : valueAt(slot);
+    }
+
+    boolean containsKey(String name) {
+        return slotOf(name) >= 0;
+    }
+
+    /** Adds or replaces the value of name; returns its slot. */
+    int put(String name, V value) {
+        int slot = slotOf(name);
+        if (slot >= 0) {
+            values[slot] = value;
+            return slot;
+        }
+        if (keys == null) {
+            keys = new String[4];
+            values = new Object[4];
+        }
+        else if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        slot = size++;
+        keys[slot] = name;
+        values[slot] = value;
+        if (index != null && size * 2 <= index.length) {
+            addToIndex(slot);
+        }
+        else if (size > LINEAR_LIMIT) {
+            index = new int[Integer.highestOneBit(size) << 2];
+            for (int i = 0; i < size; i++) {
+                addToIndex(i);
+            }
+        }
+        return slot;
+    }
+
+    private void addToIndex(int slot) {
+        int mask = index.length - 1;
+        int i = mix(keys[slot].hashCode()) & mask;
+        while (index[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        index[i] = slot + 1;
+    }
+
+    // same as parser.Symbols: spreads the low bits of short names
+    static private int mix(int h) {
+        return h ^ (h >>> 16);
+    }
+}
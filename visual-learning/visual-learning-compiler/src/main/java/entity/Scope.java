@@ -1,40 +1,114 @@
 package entity;
 
+import ast.VariableNode;
 import exception.*;
 import org.bytedeco.llvm.LLVM.LLVMBasicBlockRef;
-import org.bytedeco.llvm.LLVM.LLVMTypeRef;
 import org.bytedeco.llvm.LLVM.LLVMValueRef;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * A scope gives each of its names a slot, its position in the scope,
+ * and counts its depth from the ToplevelScope (0), through the
+ * parameters of a function (1), into the nested blocks.
+ * Resolving a VariableNode records the (depth, slot) of its definition
+ * on the node, so that the code generator finds the variable with
+ * scopeAt(depth).getAlloca(slot) and no name lookup; a variable
+ * which it keeps in SSA form has an SSA variable number instead.
+ * The tables are allocated on first use.
+ */
 abstract public class Scope {
     protected List<LocalScope> children;
-    protected Map<String, LLVMValueRef> scopeAlloca = new HashMap<>();
-    protected Map<String, LLVMBasicBlockRef> scopeBasicBlock = new HashMap<>();
-    protected Map<String, Integer> scopeParams = new HashMap<>();
+    private LLVMValueRef[] allocas;     // by slot
+    private int[] ssaVariables;         // by slot: SSA variable + 1, 0 if none
+    private NameTable<LLVMBasicBlockRef> scopeBasicBlock;
 
     public Scope() {
-        children = new ArrayList<>();
+        children = Collections.emptyList();
     }
 
     abstract public boolean isToplevel();
     abstract public ToplevelScope toplevel();
 
     protected void addChild(LocalScope s) {
+        if (children.isEmpty()) {
+            children = new ArrayList<>();
+        }
         children.add(s);
     }
 
+    abstract public int depth();
+
+    /** Returns this scope or its enclosing scope at depth. */
+    abstract public Scope scopeAt(int depth);
+
+    /** Returns the slot of name defined in this scope, or -1. */
+    abstract public int slotOf(String name);
+
+    abstract protected int slotCount();
+
     abstract public Entity get(String name) throws SemanticException;
 
-    abstract public LLVMValueRef getAlloca(String name);
-    abstract public void putAlloca(String name, LLVMValueRef var);
+    /**
+     * Searches the entity of node as get() does, and records
+     * its (depth, slot) on node.
+     */
+    abstract public Entity resolve(VariableNode node) throws SemanticException;
+
+    public LLVMValueRef getAlloca(int slot) {
+        return (allocas == null || slot >= allocas.length) ? null : allocas[slot];
+    }
+
+    public void putAlloca(int slot, LLVMValueRef alloca) {
+        if (allocas == null) {
+            allocas = new LLVMValueRef[slotCount()];
+        }
+        else if (slot >= allocas.length) {
+            allocas = Arrays.copyOf(allocas, slotCount());
+        }
+        allocas[slot] = alloca;
+    }
+
+    /** Returns the SSA variable of slot, or -1 if it is kept in memory. */
+    public int getSsaVariable(int slot) {
+        return (ssaVariables == null || slot >= ssaVariables.length) ? -1 : ssaVariables[slot] - 1;
+    }
 
-    abstract public LLVMBasicBlockRef getScopeBasicBlock(String name);
-    abstract public void putScopeBasicBlock(String name, LLVMBasicBlockRef var);
+    public void putSsaVariable(int slot, int var) {
+        if (ssaVariables == null) {
+            ssaVariables = new int[slotCount()];
+        }
+        else if (slot >= ssaVariables.length) {
+            ssaVariables = Arrays.copyOf(ssaVariables, slotCount());
+        }
+        ssaVariables[slot] = var + 1;
+    }
 
-    abstract public Integer getScopeParam(String name);
-    abstract public void putScopeParam(String name, Integer var);
+    /** Looks up the alloca by name; prefer getAlloca(slot). */
+    public LLVMValueRef getAlloca(String name) {
+        int slot = slotOf(name);
+        return slot < 0 ? null : getAlloca(slot);
+    }
+
+    public void putAlloca(String name, LLVMValueRef alloca) {
+        int slot = slotOf(name);
+        if (slot < 0) {
+            throw new Error("no variable in scope: " + name);
+        }
+        putAlloca(slot, alloca);
+    }
+
+    public LLVMBasicBlockRef getScopeBasicBlock(String name) {
+        return scopeBasicBlock == null ? null : scopeBasicBlock.get(name);
+    }
+
+    public void putScopeBasicBlock(String name, LLVMBasicBlockRef block) {
+        if (scopeBasicBlock == null) {
+            scopeBasicBlock = new NameTable<>();
+        }
+        scopeBasicBlock.put(name, block);
+    }
 }
@@ -1,20 +1,18 @@
 package entity;
 
+import ast.VariableNode;
 import exception.*;
-import org.bytedeco.llvm.LLVM.LLVMBasicBlockRef;
-import org.bytedeco.llvm.LLVM.LLVMTypeRef;
-import org.bytedeco.llvm.LLVM.LLVMValueRef;
 import utils.ErrorHandler;
 
 import java.util.*;
 
 public class ToplevelScope extends Scope {
-    protected Map<String, Entity> entities;
+    protected NameTable<Entity> entities;
     protected List<DefinedVariable> staticLocalVariables;   // cache
 
     public ToplevelScope() {
         super();
-        entities = new LinkedHashMap<>();
+        entities = new NameTable<>();
         staticLocalVariables = null;
     }
 
@@ -26,6 +24,24 @@ public class ToplevelScope extends Scope {
         return this;
     }
 
+    public int depth() {
+        return 0;
+    }
+
+    public Scope scopeAt(int depth) {
+        if (depth != 0) {
+            throw new Error("no scope at depth " + depth + " from ToplevelScope");
+        }
+        return this;
+    }
+
+    public int slotOf(String name) {
+        return entities.slotOf(name);
+    }
+
+    protected int slotCount() {
+        return entities.size();
+    }
 
     /** Define variable or function globally. */
     public void defineEntity(Entity entity) throws SemanticException {
@@ -47,35 +63,20 @@ public class ToplevelScope extends Scope {
         return ent;
     }
 
-    public LLVMValueRef getAlloca(String name){
-        return scopeAlloca.get(name);
-    }
-
-    public void putAlloca(String name, LLVMValueRef alloca){
-        scopeAlloca.put(name, alloca);
-    }
-
-    public LLVMBasicBlockRef getScopeBasicBlock(String name) {
-        return scopeBasicBlock.get(name);
-    }
-
-    public void putScopeBasicBlock(String name, LLVMBasicBlockRef block) {
-        scopeBasicBlock.put(name, block);
-
-    }
-
-    public Integer getScopeParam(String name) {
-        return scopeParams.get(name);
-    }
-
-    public void putScopeParam(String name, Integer var) {
-        scopeParams.put(name,var);
+    public Entity resolve(VariableNode node) throws SemanticException {
+        int slot = entities.slotOf(node.name());
+        if (slot < 0) {
+            throw new SemanticException("unresolved reference: " + node.name());
+        }
+        node.setSlot(0, slot);
+        return entities.valueAt(slot);
     }
 
     /** Returns a list of all global variables.*/
     public List<Variable> allGlobalVariables() {
         List<Variable> result = new ArrayList<>();
-        for (Entity ent : entities.values()) {
+        for (int i = 0; i < entities.size(); i++) {
+            Entity ent = entities.valueAt(i);
             if (ent instanceof Variable) {
                 result.add((Variable)ent);
             }
@@ -86,7 +87,8 @@ public class ToplevelScope extends Scope {
 
     public List<DefinedVariable> definedGlobalScopeVariables() {
         List<DefinedVariable> result = new ArrayList<>();
-        for (Entity ent : entities.values()) {
+        for (int i = 0; i < entities.size(); i++) {
+            Entity ent = entities.valueAt(i);
             if (ent instanceof DefinedVariable) {
                 result.add((DefinedVariable)ent);
             }
@@ -118,7 +120,8 @@ public class ToplevelScope extends Scope {
     }
 
     public void checkReferences(ErrorHandler h) {
-        for (Entity ent : entities.values()) {
+        for (int i = 0; i < entities.size(); i++) {
+            Entity ent = entities.valueAt(i);
             if (ent.isDefined()
                     && ent.isPrivate()
                     && !ent.isConstant()
@@ -1,7 +1,36 @@
 package exception;
 
+import ast.AST;
+
+import java.util.Collections;
+import java.util.List;
+
 public class SyntaxException extends CompileException {
+    protected final List<String> errors;
+    protected final AST ast;
+
     public SyntaxException(String msg) {
         super(msg);
+        this.errors = Collections.singletonList(msg);
+        this.ast = null;
+    }
+
+    /**
+     * All errors of one parse; ast is what could be parsed around
+     * them, or null if parsing could not go on.
+     */
+    public SyntaxException(List<String> errors, AST ast) {
+        super(String.join("\n", errors));
+        this.errors = errors;
+        this.ast = ast;
+    }
+
+    public List<String> errors() {
+        return errors;
+    }
+
+    /** The partial AST with ErrorStmtNodes in place of bad statements, or null. */
+    public AST ast() {
+        return ast;
     }
 }
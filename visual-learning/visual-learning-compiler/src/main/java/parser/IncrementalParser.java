@@ -0,0 +1,253 @@
+package parser;
+
+import ast.AST;
+import ast.Declarations;
+import ast.Segment;
+import ast.SourceText;
+import exception.SyntaxException;
+import utils.ErrorHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the parse of one document and brings it up to date after each
+ * text edit, for an editor which resubmits the program as it is typed.
+ * <p>
+ * The text is split into chunks of whole top-level definitions, each
+ * starting at the beginning of a line.  An edit re-lexes and re-parses
+ * only the chunks it touches; a chunk after the edit is moved, not
+ * re-parsed, since its Locations are relative to its Segment.
+ * Definitions of untouched chunks are shared with the previous AST,
+ * whose Locations follow the current text: use only the latest AST.
+ * While the text has a lexical or syntax error, the chunks cannot be
+ * trusted to start where the full parser resynchronizes, so the
+ * diagnostics and the partial AST come from parsing the whole text.
+ * Not thread safe.
+ */
+public class IncrementalParser {
+    private final String name;
+    private final ErrorHandler errorHandler;
+    private final Parser parser = new Parser(new StringCharStream(""), null, null);
+
+    private String text = "";
+    private StringCharStream stream;
+    private SourceText source;
+    // null until the text has been parsed, and after a lexical error
+    private List<Chunk> chunks;
+
+    static private final class Chunk {
+        int start;
+        int end;
+        final Segment segment;
+        AST ast;
+        final List<String> errors = new ArrayList<>();
+
+        Chunk(int start, int end, Segment segment) {
+            this.start = start;
+            this.end = end;
+            this.segment = segment;
+        }
+    }
+
+    public IncrementalParser(String name, ErrorHandler errorHandler) {
+        this.name = name;
+        this.errorHandler = errorHandler;
+    }
+
+    public String text() {
+        return text;
+    }
+
+    /** Parses text from scratch. */
+    public AST parse(String text) throws SyntaxException {
+        setText(text);
+        chunks = null;
+        chunks = parseRegion(0, text.length(), true);
+        if (chunks == null) {
+            return fullParse();
+        }
+        return result();
+    }
+
+    /**
+     * Replaces removedLength characters at offset by insertedText and
+     * returns the AST of the new text.
+     */
+    public AST edit(int offset, int removedLength, String insertedText) throws SyntaxException {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > text.length()) {
+            throw new IllegalArgumentException("edit out of range: " + offset + "+" + removedLength);
+        }
+        String newText = text.substring(0, offset) + insertedText
+                + text.substring(offset + removedLength);
+        if (chunks == null) {
+            return parse(newText);
+        }
+        List<Chunk> old = chunks;
+        int delta = insertedText.length() - removedLength;
+        int first = chunkAt(old, offset);
+        if (first > 0 && old.get(first).start == offset) {
+            // the edit may join its line to the last line of the chunk before
+            first--;
+        }
+        int last = chunkAt(old, offset + removedLength);
+        setText(newText);
+        chunks = null;
+
+        List<Chunk> region = parseRegion(old.get(first).start, old.get(last).end + delta, false);
+        if (region == null) {
+            // the edit left an open definition; it extends to the end
+            last = old.size() - 1;
+            region = parseRegion(old.get(first).start, newText.length(), true);
+            if (region == null) {
+                return fullParse();
+            }
+        }
+
+        List<Chunk> result = new ArrayList<>(old.size() + region.size());
+        for (int i = 0; i < first; i++) {
+            Chunk c = old.get(i);
+            c.segment.moveTo(source, c.start, c.segment.line());
+            result.add(c);
+        }
+        result.addAll(region);
+        for (int i = last + 1; i < old.size(); i++) {
+            Chunk c = old.get(i);
+            c.start += delta;
+            c.end += delta;
+            c.segment.moveTo(source, c.start, stream.lineOf(c.start));
+            result.add(c);
+        }
+        chunks = result;
+        return result();
+    }
+
+    /**
+     * Parses newText as an edit of the current text: the edit is the
+     * span between their common prefix and common suffix.
+     */
+    public AST update(String newText) throws SyntaxException {
+        if (chunks == null) {
+            return parse(newText);
+        }
+        int max = Math.min(text.length(), newText.length());
+        int prefix = 0;
+        while (prefix < max && text.charAt(prefix) == newText.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && text.charAt(text.length() - 1 - suffix) == newText.charAt(newText.length() - 1 - suffix)) {
+            suffix++;
+        }
+        return edit(prefix, text.length() - prefix - suffix,
+                newText.substring(prefix, newText.length() - suffix));
+    }
+
+    private void setText(String text) {
+        this.text = text;
+        this.stream = new StringCharStream(text);
+        this.source = stream.sourceText(name);
+    }
+
+    // index of the chunk containing offset; the last chunk for the end of text
+    static private int chunkAt(List<Chunk> chunks, int offset) {
+        int lo = 0;
+        int hi = chunks.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (chunks.get(mid).start <= offset) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /*
+     * Splits text[begin, end) into chunks and parses them.  Returns null
+     * on a lexical error and, unless toEnd, if end may not be a boundary
+     * between top-level definitions any more.
+     */
+    private List<Chunk> parseRegion(int begin, int end, boolean toEnd) throws SyntaxException {
+        Tokens tokens;
+        try {
+            tokens = new TokenScanner(new StringCharStream(stream, begin, end)).scanAll();
+        } catch (TokenMgrError err) {
+            // unless toEnd, maybe a comment or a string now runs past end
+            return null;
+        }
+        List<Integer> starts = new ArrayList<>();
+        starts.add(begin);
+        int depth = 0;
+        int lastKind = -1;
+        for (int i = 0; i < tokens.size(); i++) {
+            int kind = tokens.kind(i);
+            if (isComment(kind)) continue;
+            if (depth == 0 && (lastKind == ParserConstants.SEMICOLON || lastKind == ParserConstants.RBRACE)) {
+                int lineStart = lineStartBefore(tokens, i, begin);
+                if (lineStart > starts.get(starts.size() - 1)) {
+                    starts.add(lineStart);
+                }
+            }
+            if (kind == ParserConstants.LBRACE) depth++;
+            else if (kind == ParserConstants.RBRACE && depth > 0) depth--;
+            lastKind = kind;
+        }
+        if (!toEnd && !(depth == 0 && (lastKind == ParserConstants.SEMICOLON
+                || lastKind == ParserConstants.RBRACE || lastKind == -1))) {
+            return null;
+        }
+        List<Chunk> result = new ArrayList<>(starts.size());
+        for (int k = 0; k < starts.size(); k++) {
+            int start = starts.get(k);
+            int chunkEnd = (k + 1 < starts.size()) ? starts.get(k + 1) : end;
+            Chunk c = new Chunk(start, chunkEnd, new Segment(source, start, stream.lineOf(start)));
+            parseChunk(c);
+            result.add(c);
+        }
+        return result;
+    }
+
+    /*
+     * The start of the line of token i if only comments precede the token
+     * on that line, -1 otherwise.
+     */
+    private int lineStartBefore(Tokens tokens, int i, int begin) {
+        int line = tokens.line(i);
+        int j = i;
+        while (j > 0 && isComment(tokens.kind(j - 1)) && tokens.line(j - 1) == line) {
+            j--;
+        }
+        int lineStart = stream.lineStarts[line - 1];
+        int prevEnd = (j == 0) ? begin : tokens.endOffset(j - 1);
+        return (prevEnd <= lineStart) ? lineStart : -1;
+    }
+
+    static private boolean isComment(int kind) {
+        return kind == ParserConstants.BLOCK_COMMENT || kind == ParserConstants.LINE_COMMENT;
+    }
+
+    private void parseChunk(Chunk c) throws SyntaxException {
+        c.errors.clear();
+        c.ast = parser.parseSegment(new StringCharStream(stream, c.start, c.end),
+                source, c.segment, errorHandler, c.errors);
+    }
+
+    private AST result() throws SyntaxException {
+        Declarations decls = new Declarations();
+        for (Chunk c : chunks) {
+            if (!c.errors.isEmpty()) {
+                return fullParse();
+            }
+            decls.add(c.ast.declarations);
+        }
+        return new AST(chunks.get(0).ast.location(), decls);
+    }
+
+    // The chunks are kept for the next edit.
+    private AST fullParse() throws SyntaxException {
+        return new Parser(new StringCharStream(text), name, errorHandler).parse();
+    }
+}
@@ -9,45 +9,71 @@ import type.*;
 import utils.ErrorHandler;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.util.*;
 
 public class Parser implements ParserConstants {
 
     static public AST parseFile(File file, ErrorHandler errorHandler)
             throws SyntaxException, FileException {
+        String text;
         try {
-            BufferedReader r =
-                    new BufferedReader(
-                            new InputStreamReader(new FileInputStream(file),
-                                    SOURCE_ENCODING));
-            return new Parser(r, file.getPath(), errorHandler).parse();
-        } catch (FileNotFoundException ex) {
-            throw new FileException(ex.getMessage());
+            // read whole so that Locations can refer to the text
+            text = new String(Files.readAllBytes(file.toPath()), SOURCE_ENCODING);
+        } catch (NoSuchFileException ex) {
+            throw new FileException(ex.getFile() + " (No such file or directory)");
         } catch (UnsupportedEncodingException ex) {
             throw new Error("UTF-8 is not supported??: " + ex.getMessage());
+        } catch (IOException ex) {
+            throw new FileException(ex.getMessage());
         }
+        Parser parser = threadParser();
+        parser.ReInit(new StringCharStream(text));
+        return parser.parseAndRelease(file.getPath(), errorHandler);
     }
 
     static public AST parseOnlineCode(String code, ErrorHandler errorHandler)
             throws SyntaxException, FileException {
+        Parser parser = threadParser();
+        parser.ReInit(new StringCharStream(code));
+        return parser.parseAndRelease(null, errorHandler);
+    }
+
+    // Each thread keeps one parser and resets it with ReInit() instead of
+    // allocating a new parser, token manager and char stream per source.
+    static private final ThreadLocal<Parser> threadParser = new ThreadLocal<>();
+
+    static private Parser threadParser() {
+        Parser parser = threadParser.get();
+        if (parser == null) {
+            parser = new Parser(new StringCharStream(""), null, null);
+            threadParser.set(parser);
+        }
+        return parser;
+    }
+
+    private AST parseAndRelease(String name, ErrorHandler errorHandler)
+            throws SyntaxException {
+        reset(name, errorHandler);
         try {
-            BufferedReader r =
-                    new BufferedReader(
-                            new InputStreamReader(
-                                    new ByteArrayInputStream(code.getBytes())
-                            )
-                    );
-            return new Parser(r,errorHandler).parse();
-        } catch (SyntaxException e) {
-            throw new SyntaxException(e.getMessage());
+            return parse();
+        } finally {
+            release();
         }
     }
 
     static final public String SOURCE_ENCODING = "UTF-8";
 
     private String sourceName;
+    // created with the first Location of a source
+    private SourceText sourceText;
+    // set while IncrementalParser parses one segment
+    private Segment segment;
     private ErrorHandler errorHandler;
     private Set<String> knownTypedefs;
+    // syntax errors recovered from in the current parse
+    private final List<String> syntaxErrors = new ArrayList<>();
 
     public Parser(Reader s, String name, ErrorHandler errorHandler) {
         this(s, name, errorHandler, false);
@@ -66,24 +92,160 @@ public class Parser implements ParserConstants {
         }
     }
 
-    public Parser(Reader s, ErrorHandler errorHandler) {
+    public Parser(CharStream s, String name, ErrorHandler errorHandler) {
         this(s);
+        this.sourceName = name;
         this.errorHandler = errorHandler;
         this.knownTypedefs = new HashSet<>();
+        disable_tracing();
     }
 
+    public Parser(Reader s, ErrorHandler errorHandler) {
+        this(s, null, errorHandler, false);
+    }
+
+    private void reset(String name, ErrorHandler errorHandler) {
+        this.sourceName = name;
+        this.sourceText = null;
+        this.errorHandler = errorHandler;
+        this.knownTypedefs.clear();
+        this.syntaxErrors.clear();
+        disable_tracing();
+    }
+
+    // Drops references to the last source so that a pooled parser
+    // does not keep its tokens (and so its AST) alive.
+    private void release() {
+        this.errorHandler = null;
+        this.sourceText = null;
+        token_source.symbols.clear();
+        token = jj_nt = jj_scanpos = jj_lastpos = null;
+        for (int i = 0; i < jj_2_rtns.length; i++) {
+            for (JJCalls c = jj_2_rtns[i]; c != null; c = c.next) {
+                c.first = null;
+            }
+        }
+    }
+
+    /**
+     * Parses the whole source.  Errors in statements and top-level
+     * definitions are recovered from, so that one SyntaxException
+     * reports all of them together with the partial AST.
+     */
     public AST parse() throws SyntaxException {
+        AST ast;
+        try {
+            ast = compilation_unit();
+        } catch (TokenMgrError err) {
+            throw fatalSyntaxError(err.getMessage());
+        } catch (ParseException ex) {
+            throw fatalSyntaxError(ex.getMessage());
+        } catch (LookaheadSuccess err) {
+            throw fatalSyntaxError("syntax error");
+        }
+        if (!syntaxErrors.isEmpty()) {
+            throw new SyntaxException(new ArrayList<>(syntaxErrors), ast);
+        }
+        return ast;
+    }
+
+    /*
+     * Parses the top-level definitions in s, a part of source, for
+     * IncrementalParser.  Locations are made relative to segment.
+     * Errors recovered from are added to errors instead of thrown.
+     */
+    AST parseSegment(StringCharStream s, SourceText source, Segment segment,
+                     ErrorHandler errorHandler, List<String> errors) throws SyntaxException {
+        ReInit(s);
+        reset(source.name(), errorHandler);
+        this.sourceText = source;
+        this.segment = segment;
         try {
-            return compilation_unit();
+            Location loc = location(getToken(1));
+            Declarations decls = top_defs();
+            jj_consume_token(EOF);
+            errors.addAll(syntaxErrors);
+            return new AST(loc, decls);
         } catch (TokenMgrError err) {
-            throw new SyntaxException(err.getMessage());
+            throw fatalSyntaxError(err.getMessage());
         } catch (ParseException ex) {
-            throw new SyntaxException(ex.getMessage());
+            throw fatalSyntaxError(ex.getMessage());
         } catch (LookaheadSuccess err) {
-            throw new SyntaxException("syntax error");
+            throw fatalSyntaxError("syntax error");
+        } finally {
+            this.segment = null;
+            release();
         }
     }
 
+    private SyntaxException fatalSyntaxError(String msg) {
+        if (syntaxErrors.isEmpty()) {
+            return new SyntaxException(msg);
+        }
+        List<String> errors = new ArrayList<>(syntaxErrors);
+        if (!errors.contains(msg)) {
+            errors.add(msg);
+        }
+        return new SyntaxException(errors, null);
+    }
+
+    // beyond this the rest of the source is not worth reading
+    static private final int MAX_SYNTAX_ERRORS = 100;
+
+    /*
+     * Panic-mode recovery.  Records ex and skips the rest of the statement
+     * or definition which began with start: up to and including the next
+     * ";" outside braces, or the "}" which closes a brace opened since
+     * start.  A "}" closing an enclosing block is left for its owner.
+     */
+    private void recover(Token start, ParseException ex) throws ParseException {
+        syntaxErrors.add(ex.getMessage());
+        if (syntaxErrors.size() >= MAX_SYNTAX_ERRORS) {
+            throw ex;
+        }
+        int depth = 0;
+        Token next = getToken(1);
+        for (Token t = start; t != next; t = t.next) {
+            if (t.kind == LBRACE) depth++;
+            else if (t.kind == RBRACE && depth > 0) depth--;
+        }
+        if (start == next && next.kind != EOF) {
+            // nothing was consumed; make progress
+            Token t = getNextToken();
+            if (t.kind == RBRACE || t.kind == SEMICOLON) return;
+            if (t.kind == LBRACE) depth++;
+        }
+        while (true) {
+            Token t = getToken(1);
+            if (t.kind == EOF) return;
+            if (t.kind == RBRACE) {
+                if (depth == 0) return;
+                getNextToken();
+                if (--depth == 0) return;
+            } else {
+                getNextToken();
+                if (t.kind == LBRACE) depth++;
+                else if (t.kind == SEMICOLON && depth == 0) return;
+            }
+        }
+    }
+
+    // stmt() which turns a syntax error into an ErrorStmtNode
+    private StmtNode stmtOrError() throws ParseException {
+        Token start = getToken(1);
+        try {
+            return stmt();
+        } catch (ParseException ex) {
+            recover(start, ex);
+            return new ErrorStmtNode(location(start), firstLine(ex.getMessage()));
+        }
+    }
+
+    static private String firstLine(String msg) {
+        int idx = msg.indexOf('\n');
+        return (idx < 0) ? msg : msg.substring(0, idx);
+    }
+
 
 
     private void addType(String name) {
@@ -94,6 +256,26 @@ public class Parser implements ParserConstants {
         return knownTypedefs.contains(name);
     }
 
+    // Whether a type() can begin with t.  Decides "(" type ")" against
+    // "(" expr ")" by one token instead of a syntactic lookahead.
+    private boolean isTypeStart(Token t) {
+        switch (t.kind) {
+            case VOID:
+            case CHAR:
+            case SHORT:
+            case INT:
+            case LONG:
+            case UNSIGNED:
+            case STRUCT:
+            case UNION:
+                return true;
+            case IDENTIFIER:
+                return isType(t.image);
+            default:
+                return false;
+        }
+    }
+
     private IntegerLiteralNode integerNode(Location loc, String image) {
         long i = integerValue(image);
         if (image.endsWith("UL")) {
@@ -229,7 +411,17 @@ public class Parser implements ParserConstants {
     }
 
     protected Location location(Token t) {
-        return new Location(sourceName, t);
+        if (sourceText == null) {
+            CharStream s = token_source.input_stream;
+            sourceText = (s instanceof StringCharStream)
+                    ? ((StringCharStream)s).sourceText(sourceName)
+                    : new SourceText(sourceName);
+        }
+        if (segment != null) {
+            int offset = sourceText.offsetOf(t.beginLine, t.beginColumn);
+            return segment.location(offset, t.beginLine, t.beginColumn);
+        }
+        return new Location(sourceText, t);
     }
 
     // rule5
@@ -307,35 +499,48 @@ public class Parser implements ParserConstants {
         trace_call("top_defs");
         try {
             Declarations decls = new Declarations();
-            DefinedFunction defun;
-            List<DefinedVariable> defvars;
             Constant defconst;
+            boolean priv;
+            TypeRef type;
+            String name;
 
             label_4:
             while (true) {
-                if (jj_2_2(1)) {
-                    ;
-                } else {
-                    break label_4;
+                switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk) {
+                    case EOF:
+                        break label_4;
+                    default:
+                        ;
                 }
-                if (jj_2_3(2147483647)) {
-                    defun = defun();
-                    decls.addDefun(defun);
-                } else if (jj_2_4(3)) {
-                    defvars = defvars();
-                    decls.addDefvars(defvars);
-                } else {
+                Token start = getToken(1);
+                try {
+                    if (!jj_2_2(1)) {
+                        jj_consume_token(-1);
+                        throw new ParseException();
+                    }
+                    // A function and a variable definition begin alike, so read
+                    // "storage typeref name" once and decide on the next token
+                    // instead of scanning ahead for storage() typeref() <IDENTIFIER> "(".
                     switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk) {
                         case CONST:
                             defconst = defconst();
                             decls.addConstant(defconst);
                             break;
-
                         default:
                             jj_la1[4] = jj_gen;
-                            jj_consume_token(-1);
-                            throw new ParseException();
+                            priv = storage();
+                            type = typeref();
+                            name = name();
+                            switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk) {
+                                case 46:
+                                    decls.addDefun(defun(priv, type, name));
+                                    break;
+                                default:
+                                    decls.addDefvars(defvars(priv, new TypeNode(type), name));
+                            }
                     }
+                } catch (ParseException ex) {
+                    recover(start, ex);
                 }
             }
             {
@@ -350,14 +555,27 @@ public class Parser implements ParserConstants {
     final public List<DefinedVariable> defvars() throws ParseException {
         trace_call("defvars");
         try {
-            List<DefinedVariable> defs = new ArrayList<DefinedVariable>();
             boolean priv;
             TypeNode type;
             String name;
-            ExprNode init = null;
             priv = storage();
             type = type();
             name = name();
+            {
+                if (true) return defvars(priv, type, name);
+            }
+            throw new Error("Missing return statement in function");
+        } finally {
+            trace_return("defvars");
+        }
+    }
+
+    // the rest of defvars(), after the first name
+    final public List<DefinedVariable> defvars(boolean priv, TypeNode type, String name) throws ParseException {
+        trace_call("defvars");
+        try {
+            List<DefinedVariable> defs = new ArrayList<DefinedVariable>();
+            ExprNode init = null;
             switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk) {
                 case 49:
                     jj_consume_token(49);
@@ -430,11 +648,24 @@ public class Parser implements ParserConstants {
             boolean priv;
             TypeRef ret;
             String n;
-            Params ps;
-            BlockNode body;
             priv = storage();
             ret = typeref();
             n = name();
+            {
+                if (true) return defun(priv, ret, n);
+            }
+            throw new Error("Missing return statement in function");
+        } finally {
+            trace_return("defun");
+        }
+    }
+
+    // the rest of defun(), after the name
+    final public DefinedFunction defun(boolean priv, TypeRef ret, String n) throws ParseException {
+        trace_call("defun");
+        try {
+            Params ps;
+            BlockNode body;
             jj_consume_token(46);
             ps = params();
             jj_consume_token(51);
@@ -579,8 +810,13 @@ public class Parser implements ParserConstants {
                 } else {
                     break label_7;
                 }
-                vars = defvars();
-                result.addAll(vars);
+                Token start = getToken(1);
+                try {
+                    vars = defvars();
+                    result.addAll(vars);
+                } catch (ParseException ex) {
+                    recover(start, ex);
+                }
             }
             {
                 if (true) return result;
@@ -930,7 +1166,7 @@ public class Parser implements ParserConstants {
                         jj_la1[15] = jj_gen;
                         break label_11;
                 }
-                s = stmt();
+                s = stmtOrError();
                 if (s != null) ss.add(s);
             }
             {
@@ -1327,7 +1563,7 @@ public class Parser implements ParserConstants {
             StmtNode s;
             label_14:
             while (true) {
-                s = stmt();
+                s = stmtOrError();
                 if (s != null) stmts.add(s);
                 switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk) {
                     case IF:
@@ -1363,7 +1599,8 @@ public class Parser implements ParserConstants {
                 }
             }
             // last stmt of case clause must be break stmt.
-            if (!(stmts.getLast() instanceof BreakNode)) {
+            // A body of only ";" has no statements at all.
+            if (stmts.isEmpty() || !(stmts.getLast() instanceof BreakNode)) {
                 {
                     if (true) throw new ParseException(
                             "missing break statement at the last of case clause");
@@ -1462,50 +1699,43 @@ public class Parser implements ParserConstants {
     }
 
     // #@@range/expr{
+    // Both operands of an assignment start with term(), so parse it once
+    // and look at the operator, instead of scanning term() ahead to find
+    // "=" or an op-assign and then parsing it again.
     final public ExprNode expr() throws ParseException {
         trace_call("expr");
         try {
-            ExprNode lhs, rhs, expr;
+            ExprNode lhs, rhs;
             String op;
-            if (jj_2_19(2147483647)) {
-                lhs = term();
-                jj_consume_token(49);
-                rhs = expr();
+            lhs = term();
+            switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk) {
+                case 49:
+                    jj_consume_token(49);
+                    rhs = expr();
                 {
                     if (true) return new AssignNode(lhs, rhs);
                 }
-            } else if (jj_2_20(2147483647)) {
-                lhs = term();
-                op = opassign_op();
-                rhs = expr();
+                break;
+                case 59:
+                case 60:
+                case 61:
+                case 62:
+                case 63:
+                case 64:
+                case 65:
+                case 66:
+                case 67:
+                case 68:
+                    op = opassign_op();
+                    rhs = expr();
                 {
                     if (true) return new OpAssignNode(lhs, op, rhs);
                 }
-            } else {
-                switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk) {
-                    case SIZEOF:
-                    case IDENTIFIER:
-                    case INTEGER:
-                    case CHARACTER:
-                    case STRING:
-                    case 46:
-                    case 57:
-                    case 80:
-                    case 83:
-                    case 84:
-                    case 87:
-                    case 88:
-                    case 89:
-                    case 90:
-                        expr = expr10();
-                    {
-                        if (true) return expr;
-                    }
-                    break;
-                    default:
-                        jj_la1[27] = jj_gen;
-                        jj_consume_token(-1);
-                        throw new ParseException();
+                break;
+                default:
+                    jj_la1[51] = jj_gen;
+                {
+                    if (true) return expr10(lhs);
                 }
             }
             throw new Error("Missing return statement in function");
@@ -1594,10 +1824,15 @@ public class Parser implements ParserConstants {
 
 
     final public ExprNode expr10() throws ParseException {
+        return expr10(null);
+    }
+
+    // first, if not null, is the already parsed leftmost term
+    final public ExprNode expr10(ExprNode first) throws ParseException {
         trace_call("expr10");
         try {
             ExprNode c, t, e;
-            c = expr9();
+            c = expr9(first);
             switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk) {
                 case 69:
                     jj_consume_token(69);
@@ -1625,10 +1860,14 @@ public class Parser implements ParserConstants {
 
     // #@@range/expr9{
     final public ExprNode expr9() throws ParseException {
+        return expr9(null);
+    }
+
+    final public ExprNode expr9(ExprNode first) throws ParseException {
         trace_call("expr9");
         try {
             ExprNode l, r;
-            l = expr8();
+            l = expr8(first);
             label_15:
             while (true) {
                 switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk) {
@@ -1656,10 +1895,14 @@ public class Parser implements ParserConstants {
 
     // #@@range/expr8{
     final public ExprNode expr8() throws ParseException {
+        return expr8(null);
+    }
+
+    final public ExprNode expr8(ExprNode first) throws ParseException {
         trace_call("expr8");
         try {
             ExprNode l, r;
-            l = expr7();
+            l = expr7(first);
             label_16:
             while (true) {
                 switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk) {
@@ -1687,10 +1930,14 @@ public class Parser implements ParserConstants {
 
     // #@@range/expr7{
     final public ExprNode expr7() throws ParseException {
+        return expr7(null);
+    }
+
+    final public ExprNode expr7(ExprNode first) throws ParseException {
         trace_call("expr7");
         try {
             ExprNode l, r;
-            l = expr6();
+            l = expr6(first);
             label_17:
             while (true) {
                 switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk) {
@@ -1756,10 +2003,14 @@ public class Parser implements ParserConstants {
 
     // #@@range/expr6{
     final public ExprNode expr6() throws ParseException {
+        return expr6(null);
+    }
+
+    final public ExprNode expr6(ExprNode first) throws ParseException {
         trace_call("expr6");
         try {
             ExprNode l, r;
-            l = expr5();
+            l = expr5(first);
             label_18:
             while (true) {
                 switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk) {
@@ -1787,10 +2038,14 @@ public class Parser implements ParserConstants {
 
     // #@@range/expr5{
     final public ExprNode expr5() throws ParseException {
+        return expr5(null);
+    }
+
+    final public ExprNode expr5(ExprNode first) throws ParseException {
         trace_call("expr5");
         try {
             ExprNode l, r;
-            l = expr4();
+            l = expr4(first);
             label_19:
             while (true) {
                 switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk) {
@@ -1818,10 +2073,14 @@ public class Parser implements ParserConstants {
 
     // #@@range/expr4{
     final public ExprNode expr4() throws ParseException {
+        return expr4(null);
+    }
+
+    final public ExprNode expr4(ExprNode first) throws ParseException {
         trace_call("expr4");
         try {
             ExprNode l, r;
-            l = expr3();
+            l = expr3(first);
             label_20:
             while (true) {
                 switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk) {
@@ -1849,10 +2108,14 @@ public class Parser implements ParserConstants {
 
     // #@@range/expr3{
     final public ExprNode expr3() throws ParseException {
+        return expr3(null);
+    }
+
+    final public ExprNode expr3(ExprNode first) throws ParseException {
         trace_call("expr3");
         try {
             ExprNode l, r;
-            l = expr2();
+            l = expr2(first);
             label_21:
             while (true) {
                 switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk) {
@@ -1894,10 +2157,14 @@ public class Parser implements ParserConstants {
 
     // #@@range/expr2{
     final public ExprNode expr2() throws ParseException {
+        return expr2(null);
+    }
+
+    final public ExprNode expr2(ExprNode first) throws ParseException {
         trace_call("expr2");
         try {
             ExprNode l, r;
-            l = expr1();
+            l = expr1(first);
             label_22:
             while (true) {
                 switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk) {
@@ -1936,10 +2203,14 @@ public class Parser implements ParserConstants {
     }
 
     final public ExprNode expr1() throws ParseException {
+        return expr1(null);
+    }
+
+    final public ExprNode expr1(ExprNode first) throws ParseException {
         trace_call("expr1");
         try {
             ExprNode l, r;
-            l = term();
+            l = (first != null) ? first : term();
             label_23:
             while (true) {
                 switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk) {
@@ -1991,7 +2262,7 @@ public class Parser implements ParserConstants {
         try {
             TypeNode t;
             ExprNode n;
-            if (jj_2_21(2147483647)) {
+            if (getToken(1).kind == 46 && isTypeStart(getToken(2))) {
                 jj_consume_token(46);
                 t = type();
                 jj_consume_token(51);
@@ -2099,7 +2370,8 @@ public class Parser implements ParserConstants {
                 break;
                 default:
                     jj_la1[44] = jj_gen;
-                    if (jj_2_22(3)) {
+                    if (getToken(1).kind == SIZEOF && getToken(2).kind == 46
+                            && isTypeStart(getToken(3))) {
                         jj_consume_token(SIZEOF);
                         jj_consume_token(46);
                         t = type();
@@ -2341,30 +2613,6 @@ public class Parser implements ParserConstants {
         }
     }
 
-    private boolean jj_2_3(int xla) {
-        jj_la = xla;
-        jj_lastpos = jj_scanpos = token;
-        try {
-            return !jj_3_3();
-        } catch (LookaheadSuccess ls) {
-            return true;
-        } finally {
-            jj_save(2, xla);
-        }
-    }
-
-    private boolean jj_2_4(int xla) {
-        jj_la = xla;
-        jj_lastpos = jj_scanpos = token;
-        try {
-            return !jj_3_4();
-        } catch (LookaheadSuccess ls) {
-            return true;
-        } finally {
-            jj_save(3, xla);
-        }
-    }
-
     private boolean jj_2_5(int xla) {
         jj_la = xla;
         jj_lastpos = jj_scanpos = token;
@@ -2373,7 +2621,7 @@ public class Parser implements ParserConstants {
         } catch (LookaheadSuccess ls) {
             return true;
         } finally {
-            jj_save(4, xla);
+            jj_save(2, xla);
         }
     }
 
@@ -2385,7 +2633,7 @@ public class Parser implements ParserConstants {
         } catch (LookaheadSuccess ls) {
             return true;
         } finally {
-            jj_save(5, xla);
+            jj_save(3, xla);
         }
     }
 
@@ -2397,7 +2645,7 @@ public class Parser implements ParserConstants {
         } catch (LookaheadSuccess ls) {
             return true;
         } finally {
-            jj_save(6, xla);
+            jj_save(4, xla);
         }
     }
 
@@ -2409,7 +2657,7 @@ public class Parser implements ParserConstants {
         } catch (LookaheadSuccess ls) {
             return true;
         } finally {
-            jj_save(7, xla);
+            jj_save(5, xla);
         }
     }
 
@@ -2421,7 +2669,7 @@ public class Parser implements ParserConstants {
         } catch (LookaheadSuccess ls) {
             return true;
         } finally {
-            jj_save(8, xla);
+            jj_save(6, xla);
         }
     }
 
@@ -2433,7 +2681,7 @@ public class Parser implements ParserConstants {
         } catch (LookaheadSuccess ls) {
             return true;
         } finally {
-            jj_save(9, xla);
+            jj_save(7, xla);
         }
     }
 
@@ -2445,7 +2693,7 @@ public class Parser implements ParserConstants {
         } catch (LookaheadSuccess ls) {
             return true;
         } finally {
-            jj_save(10, xla);
+            jj_save(8, xla);
         }
     }
 
@@ -2457,7 +2705,7 @@ public class Parser implements ParserConstants {
         } catch (LookaheadSuccess ls) {
             return true;
         } finally {
-            jj_save(11, xla);
+            jj_save(9, xla);
         }
     }
 
@@ -2469,7 +2717,7 @@ public class Parser implements ParserConstants {
         } catch (LookaheadSuccess ls) {
             return true;
         } finally {
-            jj_save(12, xla);
+            jj_save(10, xla);
         }
     }
 
@@ -2481,7 +2729,7 @@ public class Parser implements ParserConstants {
         } catch (LookaheadSuccess ls) {
             return true;
         } finally {
-            jj_save(13, xla);
+            jj_save(11, xla);
         }
     }
 
@@ -2493,7 +2741,7 @@ public class Parser implements ParserConstants {
         } catch (LookaheadSuccess ls) {
             return true;
         } finally {
-            jj_save(14, xla);
+            jj_save(12, xla);
         }
     }
 
@@ -2505,7 +2753,7 @@ public class Parser implements ParserConstants {
         } catch (LookaheadSuccess ls) {
             return true;
         } finally {
-            jj_save(15, xla);
+            jj_save(13, xla);
         }
     }
 
@@ -2517,7 +2765,7 @@ public class Parser implements ParserConstants {
         } catch (LookaheadSuccess ls) {
             return true;
         } finally {
-            jj_save(16, xla);
+            jj_save(14, xla);
         }
     }
 
@@ -2529,55 +2777,7 @@ public class Parser implements ParserConstants {
         } catch (LookaheadSuccess ls) {
             return true;
         } finally {
-            jj_save(17, xla);
-        }
-    }
-
-    private boolean jj_2_19(int xla) {
-        jj_la = xla;
-        jj_lastpos = jj_scanpos = token;
-        try {
-            return !jj_3_19();
-        } catch (LookaheadSuccess ls) {
-            return true;
-        } finally {
-            jj_save(18, xla);
-        }
-    }
-
-    private boolean jj_2_20(int xla) {
-        jj_la = xla;
-        jj_lastpos = jj_scanpos = token;
-        try {
-            return !jj_3_20();
-        } catch (LookaheadSuccess ls) {
-            return true;
-        } finally {
-            jj_save(19, xla);
-        }
-    }
-
-    private boolean jj_2_21(int xla) {
-        jj_la = xla;
-        jj_lastpos = jj_scanpos = token;
-        try {
-            return !jj_3_21();
-        } catch (LookaheadSuccess ls) {
-            return true;
-        } finally {
-            jj_save(20, xla);
-        }
-    }
-
-    private boolean jj_2_22(int xla) {
-        jj_la = xla;
-        jj_lastpos = jj_scanpos = token;
-        try {
-            return !jj_3_22();
-        } catch (LookaheadSuccess ls) {
-            return true;
-        } finally {
-            jj_save(21, xla);
+            jj_save(15, xla);
         }
     }
 
@@ -2947,12 +3147,6 @@ public class Parser implements ParserConstants {
         return false;
     }
 
-    private boolean jj_3_20() {
-        if (jj_3R_39()) return true;
-        if (jj_3R_40()) return true;
-        return false;
-    }
-
     private boolean jj_3R_89() {
         if (jj_3R_91()) return true;
         Token xsp;
@@ -2971,12 +3165,6 @@ public class Parser implements ParserConstants {
         return false;
     }
 
-    private boolean jj_3_19() {
-        if (jj_3R_39()) return true;
-        if (jj_scan_token(49)) return true;
-        return false;
-    }
-
     private boolean jj_3R_33() {
         if (jj_3R_32()) return true;
         if (jj_3R_41()) return true;
@@ -3044,14 +3232,6 @@ public class Parser implements ParserConstants {
         return false;
     }
 
-    private boolean jj_3_3() {
-        if (jj_3R_32()) return true;
-        if (jj_3R_26()) return true;
-        if (jj_scan_token(IDENTIFIER)) return true;
-        if (jj_scan_token(46)) return true;
-        return false;
-    }
-
     private boolean jj_3_22() {
         if (jj_scan_token(SIZEOF)) return true;
         if (jj_scan_token(46)) return true;
@@ -3213,12 +3393,6 @@ public class Parser implements ParserConstants {
         return false;
     }
 
-    private boolean jj_3_21() {
-        if (jj_scan_token(46)) return true;
-        if (jj_3R_41()) return true;
-        return false;
-    }
-
     private boolean jj_3R_53() {
         if (jj_3R_76()) return true;
         return false;
@@ -3718,7 +3892,7 @@ public class Parser implements ParserConstants {
     private boolean jj_lookingAhead = false;
     private boolean jj_semLA;
     private int jj_gen;
-    final private int[] jj_la1 = new int[51];
+    final private int[] jj_la1 = new int[52];
     static private int[] jj_la1_0;
     static private int[] jj_la1_1;
     static private int[] jj_la1_2;
@@ -3730,18 +3904,18 @@ public class Parser implements ParserConstants {
     }
 
     private static void jj_la1_init_0() {
-        jj_la1_0 = new int[]{0x80019800, 0x80019800, 0x0, 0x0, 0x80011800, 0x0, 0x0, 0x0, 0x4000, 0x0, 0x0, 0x0, 0x0, 0x7c0, 0x41800, 0x7f280000, 0x0, 0x7f280000, 0x100000, 0x0, 0x0, 0x0, 0x400000, 0x800000, 0x400000, 0x7f280000, 0x8000000, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,};
+        jj_la1_0 = new int[]{0x80019800, 0x80019800, 0x0, 0x0, 0x80011800, 0x0, 0x0, 0x0, 0x4000, 0x0, 0x0, 0x0, 0x0, 0x7c0, 0x41800, 0x7f280000, 0x0, 0x7f280000, 0x100000, 0x0, 0x0, 0x0, 0x400000, 0x800000, 0x400000, 0x7f280000, 0x8000000, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,};
     }
 
     private static void jj_la1_init_1() {
-        jj_la1_1 = new int[]{0x0, 0x0, 0x1, 0x8000, 0x0, 0x20000, 0x40000, 0x20000, 0x0, 0x40000, 0x2804000, 0x2804000, 0x40000, 0x0, 0x0, 0x221610e, 0x10000, 0x220610e, 0x0, 0x200610e, 0x200610e, 0x200610e, 0x0, 0x0, 0x0, 0x221610e, 0x0, 0x200610e, 0xf8000000, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x2000000, 0x2000000, 0x200610e, 0x2000000, 0x610e, 0x80c000, 0x80c000, 0x40000, 0x200610e, 0x610c,};
+        jj_la1_1 = new int[]{0x0, 0x0, 0x1, 0x8000, 0x0, 0x20000, 0x40000, 0x20000, 0x0, 0x40000, 0x2804000, 0x2804000, 0x40000, 0x0, 0x0, 0x221610e, 0x10000, 0x220610e, 0x0, 0x200610e, 0x200610e, 0x200610e, 0x0, 0x0, 0x0, 0x221610e, 0x0, 0x200610e, 0xf8000000, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x2000000, 0x2000000, 0x200610e, 0x2000000, 0x610e, 0x80c000, 0x80c000, 0x40000, 0x200610e, 0x610c, 0xf8020000,};
     }
 
     private static void jj_la1_init_2() {
-        jj_la1_2 = new int[]{0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x7990000, 0x0, 0x7990000, 0x0, 0x7990000, 0x7990000, 0x7990000, 0x0, 0x0, 0x0, 0x7990000, 0x0, 0x7990000, 0x1f, 0x20, 0x40, 0x80, 0x3f00, 0x3f00, 0x4000, 0x8000, 0x10000, 0x60000, 0x60000, 0x180000, 0x180000, 0x600000, 0x600000, 0x7990000, 0x7990000, 0x0, 0x9800000, 0x9800000, 0x0, 0x7990000, 0x0,};
+        jj_la1_2 = new int[]{0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x7990000, 0x0, 0x7990000, 0x0, 0x7990000, 0x7990000, 0x7990000, 0x0, 0x0, 0x0, 0x7990000, 0x0, 0x7990000, 0x1f, 0x20, 0x40, 0x80, 0x3f00, 0x3f00, 0x4000, 0x8000, 0x10000, 0x60000, 0x60000, 0x180000, 0x180000, 0x600000, 0x600000, 0x7990000, 0x7990000, 0x0, 0x9800000, 0x9800000, 0x0, 0x7990000, 0x0, 0x1f,};
     }
 
-    final private JJCalls[] jj_2_rtns = new JJCalls[22];
+    final private JJCalls[] jj_2_rtns = new JJCalls[16];
     private boolean jj_rescan = false;
     private int jj_gc = 0;
 
@@ -3765,7 +3939,7 @@ public class Parser implements ParserConstants {
         token = new Token();
         jj_ntk = -1;
         jj_gen = 0;
-        for (int i = 0; i < 51; i++) jj_la1[i] = -1;
+        for (int i = 0; i < 52; i++) jj_la1[i] = -1;
         for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();
     }
 
@@ -3781,7 +3955,8 @@ public class Parser implements ParserConstants {
      */
     public void ReInit(InputStream stream, String encoding) {
         try {
-            jj_input_stream.ReInit(stream, encoding, 1, 1);
+            if (jj_input_stream == null) jj_input_stream = new SimpleCharStream(stream, encoding, 1, 1);
+            else jj_input_stream.ReInit(stream, encoding, 1, 1);
         } catch (UnsupportedEncodingException e) {
             throw new RuntimeException(e);
         }
@@ -3789,8 +3964,9 @@ public class Parser implements ParserConstants {
         token = new Token();
         jj_ntk = -1;
         jj_gen = 0;
-        for (int i = 0; i < 51; i++) jj_la1[i] = -1;
-        for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();
+        for (int i = 0; i < 52; i++) jj_la1[i] = -1;
+        jj_reset_calls();
+        sourceText = null;
     }
 
     /**
@@ -3802,7 +3978,7 @@ public class Parser implements ParserConstants {
         token = new Token();
         jj_ntk = -1;
         jj_gen = 0;
-        for (int i = 0; i < 51; i++) jj_la1[i] = -1;
+        for (int i = 0; i < 52; i++) jj_la1[i] = -1;
         for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();
     }
 
@@ -3810,15 +3986,42 @@ public class Parser implements ParserConstants {
      * Reinitialise.
      */
     public void ReInit(Reader stream) {
-        jj_input_stream.ReInit(stream, 1, 1);
+        if (jj_input_stream == null) jj_input_stream = new SimpleCharStream(stream, 1, 1);
+        else jj_input_stream.ReInit(stream, 1, 1);
         token_source.ReInit(jj_input_stream);
         token = new Token();
         jj_ntk = -1;
         jj_gen = 0;
-        for (int i = 0; i < 51; i++) jj_la1[i] = -1;
+        for (int i = 0; i < 52; i++) jj_la1[i] = -1;
+        jj_reset_calls();
+        sourceText = null;
+    }
+
+    /**
+     * Constructor with user supplied CharStream.
+     */
+    public Parser(CharStream stream) {
+        token_source = new ParserTokenManager(stream);
+        token = new Token();
+        jj_ntk = -1;
+        jj_gen = 0;
+        for (int i = 0; i < 52; i++) jj_la1[i] = -1;
         for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();
     }
 
+    /**
+     * Reinitialise.
+     */
+    public void ReInit(CharStream stream) {
+        token_source.ReInit(stream);
+        token = new Token();
+        jj_ntk = -1;
+        jj_gen = 0;
+        for (int i = 0; i < 52; i++) jj_la1[i] = -1;
+        jj_reset_calls();
+        sourceText = null;
+    }
+
     /**
      * Constructor with generated Token Manager.
      */
@@ -3827,7 +4030,7 @@ public class Parser implements ParserConstants {
         token = new Token();
         jj_ntk = -1;
         jj_gen = 0;
-        for (int i = 0; i < 51; i++) jj_la1[i] = -1;
+        for (int i = 0; i < 52; i++) jj_la1[i] = -1;
         for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();
     }
 
@@ -3839,8 +4042,18 @@ public class Parser implements ParserConstants {
         token = new Token();
         jj_ntk = -1;
         jj_gen = 0;
-        for (int i = 0; i < 51; i++) jj_la1[i] = -1;
-        for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();
+        for (int i = 0; i < 52; i++) jj_la1[i] = -1;
+        jj_reset_calls();
+        sourceText = null;
+    }
+
+    private void jj_reset_calls() {
+        for (int i = 0; i < jj_2_rtns.length; i++) {
+            for (JJCalls c = jj_2_rtns[i]; c != null; c = c.next) {
+                c.gen = 0;
+                c.first = null;
+            }
+        }
     }
 
     private Token jj_consume_token(int kind) throws ParseException {
@@ -3974,7 +4187,7 @@ public class Parser implements ParserConstants {
             la1tokens[jj_kind] = true;
             jj_kind = -1;
         }
-        for (int i = 0; i < 51; i++) {
+        for (int i = 0; i < 52; i++) {
             if (jj_la1[i] == jj_gen) {
                 for (int j = 0; j < 32; j++) {
                     if ((jj_la1_0[i] & (1 << j)) != 0) {
@@ -4071,7 +4284,7 @@ public class Parser implements ParserConstants {
 
     private void jj_rescan_token() {
         jj_rescan = true;
-        for (int i = 0; i < 22; i++) {
+        for (int i = 0; i < jj_2_rtns.length; i++) {
             try {
                 JJCalls p = jj_2_rtns[i];
                 do {
@@ -4086,65 +4299,47 @@ public class Parser implements ParserConstants {
                                 jj_3_2();
                                 break;
                             case 2:
-                                jj_3_3();
-                                break;
-                            case 3:
-                                jj_3_4();
-                                break;
-                            case 4:
                                 jj_3_5();
                                 break;
-                            case 5:
+                            case 3:
                                 jj_3_6();
                                 break;
-                            case 6:
+                            case 4:
                                 jj_3_7();
                                 break;
-                            case 7:
+                            case 5:
                                 jj_3_8();
                                 break;
-                            case 8:
+                            case 6:
                                 jj_3_9();
                                 break;
-                            case 9:
+                            case 7:
                                 jj_3_10();
                                 break;
-                            case 10:
+                            case 8:
                                 jj_3_11();
                                 break;
-                            case 11:
+                            case 9:
                                 jj_3_12();
                                 break;
-                            case 12:
+                            case 10:
                                 jj_3_13();
                                 break;
-                            case 13:
+                            case 11:
                                 jj_3_14();
                                 break;
-                            case 14:
+                            case 12:
                                 jj_3_15();
                                 break;
-                            case 15:
+                            case 13:
                                 jj_3_16();
                                 break;
-                            case 16:
+                            case 14:
                                 jj_3_17();
                                 break;
-                            case 17:
+                            case 15:
                                 jj_3_18();
                                 break;
-                            case 18:
-                                jj_3_19();
-                                break;
-                            case 19:
-                                jj_3_20();
-                                break;
-                            case 20:
-                                jj_3_21();
-                                break;
-                            case 21:
-                                jj_3_22();
-                                break;
                         }
                     }
                     p = p.next;
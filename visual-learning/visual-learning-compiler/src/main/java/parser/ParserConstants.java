@@ -81,6 +81,18 @@ public interface ParserConstants {
   /** RegularExpression Id. */
   int STRING = 45;
 
+  /*
+   * The grammar gives its punctuators no names; these are the kinds of
+   * those which error recovery and IncrementalParser look for.  They
+   * must match tokenImage below.
+   */
+  /** Literal ";". */
+  int SEMICOLON = 48;
+  /** Literal "{". */
+  int LBRACE = 53;
+  /** Literal "}". */
+  int RBRACE = 54;
+
   /** Lexical state. */
   int DEFAULT = 0;
   /** Lexical state. */
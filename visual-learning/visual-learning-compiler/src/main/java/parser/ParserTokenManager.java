@@ -1130,27 +1130,27 @@ public class ParserTokenManager implements parser.ParserConstants {
     static final long[] jjtoMore = {
             0x1ef00000000cL, 0x0L,
     };
-    protected parser.SimpleCharStream input_stream;
+    protected parser.CharStream input_stream;
     private final int[] jjrounds = new int[19];
     private final int[] jjstateSet = new int[38];
     StringBuilder image;
     int jjimageLen;
     int lengthOfMatch;
     protected char curChar;
+    // canonical images of names and literals in the current source
+    final Symbols symbols = new Symbols();
 
     /**
      * Constructor.
      */
-    public ParserTokenManager(parser.SimpleCharStream stream) {
-        if (parser.SimpleCharStream.staticFlag)
-            throw new Error("ERROR: Cannot use a static CharStream class with a non-static lexical analyzer.");
+    public ParserTokenManager(parser.CharStream stream) {
         input_stream = stream;
     }
 
     /**
      * Constructor.
      */
-    public ParserTokenManager(parser.SimpleCharStream stream, int lexState) {
+    public ParserTokenManager(parser.CharStream stream, int lexState) {
         this(stream);
         SwitchTo(lexState);
     }
@@ -1158,10 +1158,11 @@ public class ParserTokenManager implements parser.ParserConstants {
     /**
      * Reinitialise parser.
      */
-    public void ReInit(parser.SimpleCharStream stream) {
+    public void ReInit(parser.CharStream stream) {
         jjmatchedPos = jjnewStateCnt = 0;
         curLexState = defaultLexState;
         input_stream = stream;
+        symbols.clear();
         ReInitRounds();
     }
 
@@ -1175,7 +1176,7 @@ public class ParserTokenManager implements parser.ParserConstants {
     /**
      * Reinitialise parser.
      */
-    public void ReInit(parser.SimpleCharStream stream, int lexState) {
+    public void ReInit(parser.CharStream stream, int lexState) {
         ReInit(stream);
         SwitchTo(lexState);
     }
@@ -1198,7 +1199,7 @@ public class ParserTokenManager implements parser.ParserConstants {
         final int beginColumn;
         final int endColumn;
         String im = jjstrLiteralImages[jjmatchedKind];
-        tokenImage = (im == null) ? input_stream.GetImage() : im;
+        tokenImage = (im != null) ? im : internedImage(jjmatchedKind);
         beginLine = input_stream.getBeginLine();
         beginColumn = input_stream.getBeginColumn();
         endLine = input_stream.getEndLine();
@@ -1213,6 +1214,22 @@ public class ParserTokenManager implements parser.ParserConstants {
         return t;
     }
 
+    private String internedImage(int kind) {
+        switch (kind) {
+            case IDENTIFIER:
+            case INTEGER:
+            case CHARACTER:
+            case STRING:
+                if (input_stream instanceof StringCharStream) {
+                    StringCharStream s = (StringCharStream) input_stream;
+                    return symbols.intern(s.text, s.getBeginOffset(), s.getEndOffset());
+                }
+                return symbols.intern(input_stream.GetImage());
+            default:
+                return input_stream.GetImage();
+        }
+    }
+
     int curLexState = 0;
     int defaultLexState = 0;
     int jjnewStateCnt;
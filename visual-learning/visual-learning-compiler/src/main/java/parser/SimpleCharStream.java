@@ -7,7 +7,7 @@ package parser;
  * contain only ASCII characters (without unicode processing).
  */
 
-public class SimpleCharStream
+public class SimpleCharStream implements CharStream
 {
 /** Whether parser is static. */
   public static final boolean staticFlag = false;
@@ -286,11 +286,12 @@ public class SimpleCharStream
 
     if (buffer == null || buffersize != buffer.length)
     {
-      available = bufsize = buffersize;
+      bufsize = buffersize;
       buffer = new char[buffersize];
       bufline = new int[buffersize];
       bufcolumn = new int[buffersize];
     }
+    available = bufsize;
     prevCharIsLF = prevCharIsCR = false;
     tokenBegin = inBuf = maxNextCharInd = 0;
     bufpos = -1;
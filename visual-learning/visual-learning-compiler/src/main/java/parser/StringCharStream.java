@@ -0,0 +1,175 @@
+package parser;
+
+import ast.SourceText;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A CharStream over a source which is already in memory.
+ * Unlike SimpleCharStream it does not copy the text into a ring buffer
+ * nor record line/column per character; positions are plain offsets and
+ * line/column are computed on demand from a table of line start offsets.
+ * Line and column numbers are the same as SimpleCharStream reports.
+ */
+public class StringCharStream implements CharStream {
+    static private final int TAB_SIZE = 8;
+
+    protected final String text;
+    protected final int begin;
+    protected final int end;
+    // lineStarts[i] is the offset of the first character of line (i + 1)
+    protected int[] lineStarts;
+    protected int nLines;
+    protected final boolean hasTab;
+
+    protected int pos = -1;
+    protected int tokenBegin = 0;
+
+    public StringCharStream(String text) {
+        this.text = text;
+        this.begin = 0;
+        this.end = text.length();
+        this.hasTab = text.indexOf('\t') >= 0;
+        scanLines();
+    }
+
+    /**
+     * A stream over text[begin, end) of another stream.  Offsets, lines
+     * and columns are those of the whole text; the line table is shared.
+     */
+    public StringCharStream(StringCharStream whole, int begin, int end) {
+        this.text = whole.text;
+        this.begin = begin;
+        this.end = end;
+        this.lineStarts = whole.lineStarts;
+        this.nLines = whole.nLines;
+        this.hasTab = whole.hasTab;
+        this.pos = begin - 1;
+        this.tokenBegin = begin;
+    }
+
+    private void scanLines() {
+        int[] starts = new int[Math.max(16, end / 32)];
+        int n = 0;
+        starts[n++] = 0;
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || (c == '\r' && (i + 1 == end || text.charAt(i + 1) != '\n'))) {
+                if (n == starts.length) {
+                    starts = Arrays.copyOf(starts, n * 2);
+                }
+                starts[n++] = i + 1;
+            }
+        }
+        this.lineStarts = starts;
+        this.nLines = n;
+    }
+
+    public char BeginToken() throws IOException {
+        tokenBegin = -1;
+        char c = readChar();
+        tokenBegin = pos;
+        return c;
+    }
+
+    public char readChar() throws IOException {
+        if (pos + 1 >= end) {
+            // like SimpleCharStream, stay on the last character at EOF
+            if (tokenBegin == -1) {
+                tokenBegin = pos;
+            }
+            throw new IOException();
+        }
+        return text.charAt(++pos);
+    }
+
+    public void backup(int amount) {
+        pos -= amount;
+    }
+
+    public String GetImage() {
+        return text.substring(tokenBegin, pos + 1);
+    }
+
+    public char[] GetSuffix(int len) {
+        char[] ret = new char[len];
+        text.getChars(pos + 1 - len, pos + 1, ret, 0);
+        return ret;
+    }
+
+    public void Done() {
+    }
+
+    /** @deprecated */
+    @Deprecated
+    public int getColumn() {
+        return columnOf(pos);
+    }
+
+    /** @deprecated */
+    @Deprecated
+    public int getLine() {
+        return lineOf(pos);
+    }
+
+    public int getEndColumn() {
+        return columnOf(pos);
+    }
+
+    public int getEndLine() {
+        return lineOf(pos);
+    }
+
+    public int getBeginColumn() {
+        return columnOf(tokenBegin);
+    }
+
+    public int getBeginLine() {
+        return lineOf(tokenBegin);
+    }
+
+    /** Offset of the first character of the current token. */
+    public int getBeginOffset() {
+        return tokenBegin;
+    }
+
+    /** Offset just past the last character read. */
+    public int getEndOffset() {
+        return pos + 1;
+    }
+
+    public String text() {
+        return text;
+    }
+
+    /** The text and line table of this stream, for Locations. */
+    public SourceText sourceText(String name) {
+        return new SourceText(name, text, lineStarts, nLines);
+    }
+
+    /** 1-based line number of the character at offset. */
+    public int lineOf(int offset) {
+        if (offset < 0) return 0;   // EOF of an empty source
+        int i = Arrays.binarySearch(lineStarts, 0, nLines, offset);
+        return (i >= 0) ? i + 1 : -(i + 1);
+    }
+
+    /** 1-based column of the character at offset, tabs expanded. */
+    public int columnOf(int offset) {
+        if (offset < 0) return 0;
+        int start = lineStarts[lineOf(offset) - 1];
+        if (!hasTab) {
+            return offset - start + 1;
+        }
+        int column = 0;
+        for (int i = start; i <= offset; i++) {
+            column++;
+            if (text.charAt(i) == '\t') {
+                column--;
+                column += (TAB_SIZE - (column % TAB_SIZE));
+            }
+        }
+        return column;
+    }
+}
@@ -0,0 +1,98 @@
+package parser;
+
+import java.util.Arrays;
+
+/**
+ * Interns token images so that every occurrence of an identifier (or a
+ * literal) in a source shares one String.  Names in the AST, the
+ * entities and the scope tables then hold the same object, and map
+ * lookups on them stop at the == check in String.equals() with the
+ * hash already cached in the String.
+ * Images are looked up by the region of the source they come from, so
+ * no String is created for a name which has been seen before.
+ * One table is used per parse; it is not thread safe.
+ */
+class Symbols {
+    static private final int INITIAL_CAPACITY = 256;
+
+    private String[] names;
+    private int[] hashes;
+    private int count;
+
+    Symbols() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        names = new String[capacity];
+        hashes = new int[capacity];
+        count = 0;
+    }
+
+    /** Returns the canonical String for text[begin, end). */
+    String intern(String text, int begin, int end) {
+        // same function as String.hashCode()
+        int h = 0;
+        for (int i = begin; i < end; i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        int len = end - begin;
+        int mask = names.length - 1;
+        int i = mix(h) & mask;
+        String s;
+        while ((s = names[i]) != null) {
+            if (hashes[i] == h && s.length() == len && text.regionMatches(begin, s, 0, len)) {
+                return s;
+            }
+            i = (i + 1) & mask;
+        }
+        s = text.substring(begin, end);
+        s.hashCode();   // cache it now
+        names[i] = s;
+        hashes[i] = h;
+        if (++count * 2 > names.length) {
+            rehash();
+        }
+        return s;
+    }
+
+    String intern(String image) {
+        return intern(image, 0, image.length());
+    }
+
+    private void rehash() {
+        String[] oldNames = names;
+        int[] oldHashes = hashes;
+        names = new String[oldNames.length * 2];
+        hashes = new int[oldNames.length * 2];
+        int mask = names.length - 1;
+        for (int j = 0; j < oldNames.length; j++) {
+            if (oldNames[j] == null) continue;
+            int i = mix(oldHashes[j]) & mask;
+            while (names[i] != null) {
+                i = (i + 1) & mask;
+            }
+            names[i] = oldNames[j];
+            hashes[i] = oldHashes[j];
+        }
+    }
+
+    // spreads the low bits, which are poor for short names
+    static private int mix(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /** Forgets every name; a table which grew for a big source is dropped. */
+    void clear() {
+        if (names.length > INITIAL_CAPACITY * 16) {
+            allocate(INITIAL_CAPACITY);
+        } else if (count > 0) {
+            Arrays.fill(names, null);
+            count = 0;
+        }
+    }
+
+    int size() {
+        return count;
+    }
+}
@@ -0,0 +1,62 @@
+package parser;
+
+/**
+ * Runs the generated lexer alone, without the parser.
+ * jjFillToken() is overridden to record each token into a Tokens table
+ * and to hand back one scratch Token, so no Token objects or image
+ * Strings are created per token.
+ */
+public class TokenScanner extends ParserTokenManager {
+    static public Tokens scan(String text) throws TokenMgrError {
+        return new TokenScanner(new StringCharStream(text)).scanAll();
+    }
+
+    private final StringCharStream stream;
+    private final Token scratch = new Token();
+    private Tokens tokens;
+    private int lineIndex = 0;
+
+    public TokenScanner(StringCharStream stream) {
+        super(stream);
+        this.stream = stream;
+    }
+
+    public Tokens scanAll() throws TokenMgrError {
+        tokens = new Tokens(stream.text(), Math.max(16, (stream.end - stream.begin) / 4));
+        lineIndex = 0;
+        while (getNextToken().kind != EOF) {
+            ;
+        }
+        return tokens;
+    }
+
+    @Override
+    protected Token jjFillToken() {
+        int kind = jjmatchedKind;
+        scratch.kind = kind;
+        scratch.next = null;
+        scratch.specialToken = null;
+        if (kind != EOF && kind != SPACES) {
+            int begin = stream.getBeginOffset();
+            tokens.add(kind, begin, stream.getEndOffset(), lineOf(begin), columnOf(begin));
+        }
+        return scratch;
+    }
+
+    // Tokens come in source order, so walk the line table forward
+    // instead of searching it for every token.
+    private int lineOf(int offset) {
+        int[] starts = stream.lineStarts;
+        while (lineIndex + 1 < stream.nLines && starts[lineIndex + 1] <= offset) {
+            lineIndex++;
+        }
+        return lineIndex + 1;
+    }
+
+    private int columnOf(int offset) {
+        if (stream.hasTab) {
+            return stream.columnOf(offset);
+        }
+        return offset - stream.lineStarts[lineIndex] + 1;
+    }
+}
@@ -0,0 +1,92 @@
+package parser;
+
+import java.util.Arrays;
+
+/**
+ * Result of TokenScanner: the tokens of a source as parallel int arrays
+ * (struct of arrays) instead of a linked list of Token objects.
+ * Token images are not materialized; use image(i) on demand.
+ * Comments are included, white space and EOF are not.
+ */
+public class Tokens {
+    private final String text;
+    private int count;
+    private int[] kinds;
+    private int[] beginOffsets;
+    private int[] endOffsets;
+    private int[] lines;
+    private int[] columns;
+
+    Tokens(String text, int capacity) {
+        this.text = text;
+        this.count = 0;
+        this.kinds = new int[capacity];
+        this.beginOffsets = new int[capacity];
+        this.endOffsets = new int[capacity];
+        this.lines = new int[capacity];
+        this.columns = new int[capacity];
+    }
+
+    void add(int kind, int begin, int end, int line, int column) {
+        if (count == kinds.length) {
+            int cap = count * 2;
+            kinds = Arrays.copyOf(kinds, cap);
+            beginOffsets = Arrays.copyOf(beginOffsets, cap);
+            endOffsets = Arrays.copyOf(endOffsets, cap);
+            lines = Arrays.copyOf(lines, cap);
+            columns = Arrays.copyOf(columns, cap);
+        }
+        kinds[count] = kind;
+        beginOffsets[count] = begin;
+        endOffsets[count] = end;
+        lines[count] = line;
+        columns[count] = column;
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /** Token kind; see ParserConstants. */
+    public int kind(int i) {
+        return kinds[i];
+    }
+
+    public int beginOffset(int i) {
+        return beginOffsets[i];
+    }
+
+    /** Offset just past the last character of the token. */
+    public int endOffset(int i) {
+        return endOffsets[i];
+    }
+
+    public int line(int i) {
+        return lines[i];
+    }
+
+    public int column(int i) {
+        return columns[i];
+    }
+
+    public boolean isComment(int i) {
+        return kinds[i] == ParserConstants.BLOCK_COMMENT
+                || kinds[i] == ParserConstants.LINE_COMMENT;
+    }
+
+    public String image(int i) {
+        return text.substring(beginOffsets[i], endOffsets[i]);
+    }
+
+    public String kindName(int i) {
+        return ParserConstants.tokenImage[kinds[i]];
+    }
+
+    // Raw arrays; only the first size() elements are valid.
+    public int[] kinds() { return kinds; }
+    public int[] beginOffsets() { return beginOffsets; }
+    public int[] endOffsets() { return endOffsets; }
+    public int[] lines() { return lines; }
+    public int[] columns() { return columns; }
+}
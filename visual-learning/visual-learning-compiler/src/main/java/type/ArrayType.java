@@ -55,13 +55,10 @@ public class ArrayType extends Type {
         return baseType.alignment();
     }
 
-    public boolean equals(Object other) {
-        if (! (other instanceof ArrayType)) return false;
-        ArrayType type = (ArrayType)other;
-        return (baseType.equals(type.baseType) && length == type.length);
-    }
+    // Types are canonical: see TypeTable.  Use default #equals
 
     public boolean isSameType(Type other) {
+        if (this == other) return true;
         if (!other.isPointer() && !other.isArray()) return false;
         return baseType.isSameType(other.baseType());
     }
@@ -23,8 +23,13 @@ public class ArrayTypeRef extends TypeRef {
     }
 
     public boolean equals(Object other) {
-        return (other instanceof ArrayTypeRef) &&
-            (length == ((ArrayTypeRef)other).length);
+        if (! (other instanceof ArrayTypeRef)) return false;
+        ArrayTypeRef ref = (ArrayTypeRef)other;
+        return length == ref.length && baseType.equals(ref.baseType);
+    }
+
+    protected int computeHashCode() {
+        return 31 * (31 * baseType.hashCode() + 2) + Long.hashCode(length);
     }
 
     public TypeRef baseType() {
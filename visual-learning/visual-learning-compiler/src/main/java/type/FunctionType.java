@@ -20,6 +20,7 @@ public class FunctionType extends Type {
     }
 
     public boolean isSameType(Type other) {
+        if (this == other) return true;
         if (!other.isFunction()) return false;
         FunctionType t = other.getFunctionType();
         return t.returnType.isSameType(returnType)
@@ -24,6 +24,11 @@ public class FunctionTypeRef extends TypeRef {
                 && params.equals(other.params());
     }
 
+    protected int computeHashCode() {
+        int h = 31 * returnType.hashCode() + params.typerefs().hashCode();
+        return 2 * h + (params.isVararg() ? 1 : 0);
+    }
+
     public TypeRef returnType() {
         return returnType;
     }
@@ -22,12 +22,10 @@ public class PointerType extends Type {
         return baseType;
     }
 
-    public boolean equals(Object other) {
-        if (! (other instanceof PointerType)) return false;
-        return baseType.equals(((Type)other).getPointerType().baseType);
-    }
+    // Types are canonical: see TypeTable.  Use default #equals
 
     public boolean isSameType(Type other) {
+        if (this == other) return true;
         if (!other.isPointer()) return false;
         return baseType.isSameType(other.baseType());
     }
@@ -21,6 +21,10 @@ public class PointerTypeRef extends TypeRef {
         return baseType.equals(((PointerTypeRef)other).baseType);
     }
 
+    protected int computeHashCode() {
+        return 31 * baseType.hashCode() + 1;
+    }
+
     public String toString() {
         return baseType.toString() + "*";
     }
@@ -3,6 +3,7 @@ import ast.Location;
 
 public abstract class TypeRef {
     protected Location location;
+    private int hash;   // 0 until computed; refs do not change once built
 
     public TypeRef(Location loc) {
         this.location = loc;
@@ -13,6 +14,15 @@ public abstract class TypeRef {
     }
 
     public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = computeHashCode();
+            hash = h;
+        }
+        return h;
+    }
+
+    protected int computeHashCode() {
         return toString().hashCode();
     }
 }
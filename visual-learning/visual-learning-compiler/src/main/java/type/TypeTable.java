@@ -1,51 +1,63 @@
 package type;
 
-import ast.*;
-import exception.*;
-import utils.ErrorHandler;
-
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps TypeRefs to Types.  Derived types (pointers, arrays, functions)
+ * are made on first use and are canonical: there is one Type object per
+ * type in a table, so types of one table can be compared with ==.
+ * A table may be shared by threads and by compilations; all lookups go
+ * through lock-free concurrent maps, and a type made by two threads at
+ * once is registered only once.
+ */
 public class TypeTable {
-    static public TypeTable ilp32() { return newTable(1, 2, 4, 4, 4); }
-    static public TypeTable ilp64() { return newTable(1, 2, 8, 8, 8); }
-    static public TypeTable lp64()  { return newTable(1, 2, 4, 8, 8); }
-    static public TypeTable llp64() { return newTable(1, 2, 4, 4, 8); }
-
-    static private TypeTable newTable(int charsize, int shortsize, int intsize, int longsize, int ptrsize) {
-        TypeTable table = new TypeTable(intsize, longsize, ptrsize);
-        table.put(new VoidTypeRef(), new VoidType());
-        table.put(IntegerTypeRef.charRef(),
-                  new IntegerType(charsize,  true, "char"));
-        table.put(IntegerTypeRef.shortRef(),
-                  new IntegerType(shortsize, true, "short"));
-        table.put(IntegerTypeRef.intRef(),
-                  new IntegerType(intsize, true, "int"));
-        table.put(IntegerTypeRef.longRef(),
-                  new IntegerType(longsize, true, "long"));
-        table.put(IntegerTypeRef.ucharRef(),
-                  new IntegerType(charsize, false, "unsigned char"));
-        table.put(IntegerTypeRef.ushortRef(),
-                  new IntegerType(shortsize, false, "unsigned short"));
-        table.put(IntegerTypeRef.uintRef(),
-                  new IntegerType(intsize, false, "unsigned int"));
-        table.put(IntegerTypeRef.ulongRef(),
-                  new IntegerType(longsize, false, "unsigned long"));
-        return table;
-    }
-
-    private int intSize;
-    private int longSize;
-    private int pointerSize;
-    private Map<TypeRef, Type> table;
+    static public TypeTable ilp32() { return new TypeTable(1, 2, 4, 4, 4); }
+    static public TypeTable ilp64() { return new TypeTable(1, 2, 8, 8, 8); }
+    static public TypeTable lp64()  { return new TypeTable(1, 2, 4, 8, 8); }
+    static public TypeTable llp64() { return new TypeTable(1, 2, 4, 4, 8); }
+
+    private final int intSize;
+    private final int longSize;
+    private final int pointerSize;
+    private final Map<TypeRef, Type> table = new ConcurrentHashMap<>();
+    private final Map<Type, PointerType> pointers = new ConcurrentHashMap<>();
+    private final Map<ArrayKey, ArrayType> arrays = new ConcurrentHashMap<>();
+    private final Map<FunctionKey, FunctionType> functions = new ConcurrentHashMap<>();
+
+    // asked for by every arithmetic expression the TypeChecker sees
+    private final IntegerType signedShort;
+    private final IntegerType signedInt;
+    private final IntegerType signedLong;
+    private final IntegerType unsignedInt;
+    private final IntegerType unsignedLong;
 
     public TypeTable(int intSize, int longSize, int pointerSize) {
-        this.intSize = intSize;
-        this.longSize = longSize;
-        this.pointerSize = pointerSize;
-        this.table = new HashMap<>();
+        this(1, 2, intSize, longSize, pointerSize);
+    }
+
+    private TypeTable(int charsize, int shortsize, int intsize, int longsize, int ptrsize) {
+        this.intSize = intsize;
+        this.longSize = longsize;
+        this.pointerSize = ptrsize;
+        put(new VoidTypeRef(), new VoidType());
+        put(IntegerTypeRef.charRef(),
+            new IntegerType(charsize,  true, "char"));
+        signedShort = new IntegerType(shortsize, true, "short");
+        put(IntegerTypeRef.shortRef(), signedShort);
+        signedInt = new IntegerType(intsize, true, "int");
+        put(IntegerTypeRef.intRef(), signedInt);
+        signedLong = new IntegerType(longsize, true, "long");
+        put(IntegerTypeRef.longRef(), signedLong);
+        put(IntegerTypeRef.ucharRef(),
+            new IntegerType(charsize, false, "unsigned char"));
+        put(IntegerTypeRef.ushortRef(),
+            new IntegerType(shortsize, false, "unsigned short"));
+        unsignedInt = new IntegerType(intsize, false, "unsigned int");
+        put(IntegerTypeRef.uintRef(), unsignedInt);
+        unsignedLong = new IntegerType(longsize, false, "unsigned long");
+        put(IntegerTypeRef.ulongRef(), unsignedLong);
     }
 
     public boolean isDefined(TypeRef ref) {
@@ -53,10 +65,9 @@ public class TypeTable {
     }
 
     public void put(TypeRef ref, Type t) {
-        if (table.containsKey(ref)) {
+        if (table.putIfAbsent(ref, t) != null) {
             throw new Error("duplicated type definition: " + ref);
         }
-        table.put(ref, t);
     }
 
     public Type get(TypeRef ref) {
@@ -68,26 +79,22 @@ public class TypeTable {
             }
             else if (ref instanceof PointerTypeRef) {
                 PointerTypeRef pref = (PointerTypeRef)ref;
-                Type t = new PointerType(pointerSize, get(pref.baseType()));
-                table.put(pref, t);
-                return t;
+                type = pointerTo(get(pref.baseType()));
             }
             else if (ref instanceof ArrayTypeRef) {
                 ArrayTypeRef aref = (ArrayTypeRef)ref;
-                Type t = new ArrayType(get(aref.baseType()),
-                                       aref.length(),
-                                       pointerSize);
-                table.put(aref, t);
-                return t;
+                type = arrayOf(get(aref.baseType()), aref.length());
             }
             else if (ref instanceof FunctionTypeRef) {
                 FunctionTypeRef fref = (FunctionTypeRef)ref;
-                Type t = new FunctionType(get(fref.returnType()),
-                                          fref.params().internTypes(this));
-                table.put(fref, t);
-                return t;
+                type = functionType(get(fref.returnType()),
+                                    fref.params().internTypes(this));
             }
-            throw new Error("unregistered type: " + ref.toString());
+            else {
+                throw new Error("unregistered type: " + ref.toString());
+            }
+            // the Type is canonical, so it does not matter which ref wins
+            table.putIfAbsent(ref, type);
         }
         return type;
     }
@@ -125,28 +132,98 @@ public class TypeTable {
 
 
     public IntegerType signedShort() {
-        return (IntegerType)table.get(IntegerTypeRef.shortRef());
+        return signedShort;
     }
 
     public IntegerType signedInt() {
-        return (IntegerType)table.get(IntegerTypeRef.intRef());
+        return signedInt;
     }
 
     public IntegerType signedLong() {
-        return (IntegerType)table.get(IntegerTypeRef.longRef());
+        return signedLong;
     }
 
     public IntegerType unsignedInt() {
-        return (IntegerType)table.get(IntegerTypeRef.uintRef());
+        return unsignedInt;
     }
 
     public IntegerType unsignedLong() {
-        return (IntegerType)table.get(IntegerTypeRef.ulongRef());
+        return unsignedLong;
     }
 
     public PointerType pointerTo(Type baseType) {
-        return new PointerType(pointerSize, baseType);
+        PointerType t = pointers.get(baseType);
+        if (t == null) {
+            t = pointers.computeIfAbsent(baseType,
+                    base -> new PointerType(pointerSize, base));
+        }
+        return t;
+    }
+
+    public ArrayType arrayOf(Type baseType, long length) {
+        return arrays.computeIfAbsent(new ArrayKey(baseType, length),
+                key -> new ArrayType(baseType, length, pointerSize));
+    }
+
+    public FunctionType functionType(Type returnType, ParamTypes params) {
+        return functions.computeIfAbsent(new FunctionKey(returnType, params),
+                key -> new FunctionType(returnType, params));
+    }
+
+    // Component types are canonical, so keys compare them with ==.
+
+    static private final class ArrayKey {
+        final Type baseType;
+        final long length;
+
+        ArrayKey(Type baseType, long length) {
+            this.baseType = baseType;
+            this.length = length;
+        }
+
+        public boolean equals(Object other) {
+            if (!(other instanceof ArrayKey)) return false;
+            ArrayKey k = (ArrayKey)other;
+            return baseType == k.baseType && length == k.length;
+        }
+
+        public int hashCode() {
+            return 31 * System.identityHashCode(baseType) + Long.hashCode(length);
+        }
     }
 
+    static private final class FunctionKey {
+        final Type returnType;
+        final List<Type> paramTypes;
+        final boolean vararg;
+        final int hash;
+
+        FunctionKey(Type returnType, ParamTypes params) {
+            this.returnType = returnType;
+            this.paramTypes = params.types();
+            this.vararg = params.isVararg();
+            int h = System.identityHashCode(returnType);
+            for (Type t : paramTypes) {
+                h = 31 * h + System.identityHashCode(t);
+            }
+            this.hash = 2 * h + (vararg ? 1 : 0);
+        }
 
+        public boolean equals(Object other) {
+            if (!(other instanceof FunctionKey)) return false;
+            FunctionKey k = (FunctionKey)other;
+            if (returnType != k.returnType || vararg != k.vararg
+                    || paramTypes.size() != k.paramTypes.size()) {
+                return false;
+            }
+            for (int i = 0; i < paramTypes.size(); i++) {
+                if (paramTypes.get(i) != k.paramTypes.get(i)) return false;
+            }
+            return true;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+    }
 }
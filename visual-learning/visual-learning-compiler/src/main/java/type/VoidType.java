@@ -10,10 +10,6 @@ public class VoidType extends Type {
         return 1;
     }
 
-    public boolean equals(Object other) {
-        return (other instanceof VoidType);
-    }
-
     public boolean isSameType(Type other) {
         return other.isVoid();
     }
@@ -23,6 +23,7 @@ public class ErrorHandler {
 
     public void error(Location loc, String msg) {
         error(loc.toString() + ": " + msg);
+        printSourceLine(loc);
     }
 
     public void error(String msg) {
@@ -32,6 +33,7 @@ public class ErrorHandler {
 
     public void warn(Location loc, String msg) {
         warn(loc.toString() + ": " + msg);
+        printSourceLine(loc);
     }
 
     public void warn(String msg) {
@@ -39,6 +41,22 @@ public class ErrorHandler {
         nWarning++;
     }
 
+    // The offending line and, if the offset is known, a caret under
+    // the location, as gcc prints them.
+    protected void printSourceLine(Location loc) {
+        String line = loc.sourceLine();
+        if (line.isEmpty()) return;
+        stream.println(line);
+        if (loc.offset() < 0) return;
+        int column = line.length() - loc.line().length();
+        StringBuilder caret = new StringBuilder();
+        for (int i = 0; i < column; i++) {
+            // keep tabs, so that the caret lines up
+            caret.append(line.charAt(i) == '\t' ? '\t' : ' ');
+        }
+        stream.println(caret.append('^'));
+    }
+
     public boolean errorOccured() {
         return (nError > 0);
     }
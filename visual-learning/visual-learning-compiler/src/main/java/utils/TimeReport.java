@@ -0,0 +1,218 @@
+package utils;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Wall time, CPU time and allocated bytes spent in each compiler phase,
+ * and in each function within a phase (-ftime-report).
+ * Measurements are taken on the calling thread, so a report must be
+ * used by one thread only.
+ */
+public class TimeReport {
+    public enum Format { Table, Json }
+
+    static private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    static private final TimeReport DISABLED = new TimeReport(null, false);
+    static private final Timer NO_TIMER = new Timer(null);
+
+    // returns a report which records nothing
+    static public TimeReport disabled() {
+        return DISABLED;
+    }
+
+    private final String name;
+    private final boolean enabled;
+    private final Map<String, Record> phases = new LinkedHashMap<>();
+
+    public TimeReport(String name) {
+        this(name, true);
+    }
+
+    private TimeReport(String name, boolean enabled) {
+        this.name = name;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Starts timing a phase; the measurement ends when the Timer is closed. */
+    public Timer start(String phase) {
+        if (!enabled) return NO_TIMER;
+        return new Timer(phaseRecord(phase));
+    }
+
+    /** Starts timing one function within a phase. */
+    public Timer start(String phase, String function) {
+        if (!enabled) return NO_TIMER;
+        return new Timer(phaseRecord(phase).child(function));
+    }
+
+    private Record phaseRecord(String phase) {
+        Record rec = phases.get(phase);
+        if (rec == null) {
+            rec = new Record(phase);
+            phases.put(phase, rec);
+        }
+        return rec;
+    }
+
+    public void print(PrintStream s, Format format) {
+        if (!enabled) return;
+        if (format == Format.Json) {
+            printJson(s);
+        }
+        else {
+            printTable(s);
+        }
+    }
+
+    private void printTable(PrintStream s) {
+        s.println("time report: " + name);
+        s.println(String.format(Locale.ROOT, "  %-40s %10s %10s %12s %6s",
+                "phase", "wall(ms)", "cpu(ms)", "alloc(KB)", "count"));
+        for (Record phase : phases.values()) {
+            printRow(s, "", phase);
+            if (phase.children != null) {
+                for (Record func : phase.children.values()) {
+                    printRow(s, "  ", func);
+                }
+            }
+        }
+    }
+
+    private void printRow(PrintStream s, String indent, Record rec) {
+        s.println(String.format(Locale.ROOT, "  %-40s %10.3f %10.3f %12d %6d",
+                indent + rec.name,
+                rec.wallNanos / 1e6, rec.cpuNanos / 1e6,
+                rec.allocatedBytes / 1024, rec.count));
+    }
+
+    private void printJson(PrintStream s) {
+        StringBuilder buf = new StringBuilder();
+        buf.append("{\"file\":");
+        jsonString(buf, name);
+        buf.append(",\"phases\":[");
+        boolean first = true;
+        for (Record phase : phases.values()) {
+            if (!first) buf.append(',');
+            first = false;
+            jsonRecord(buf, phase);
+        }
+        buf.append("]}");
+        s.println(buf);
+    }
+
+    private void jsonRecord(StringBuilder buf, Record rec) {
+        buf.append("{\"name\":");
+        jsonString(buf, rec.name);
+        buf.append(",\"wallNanos\":").append(rec.wallNanos);
+        buf.append(",\"cpuNanos\":").append(rec.cpuNanos);
+        buf.append(",\"allocatedBytes\":").append(rec.allocatedBytes);
+        buf.append(",\"count\":").append(rec.count);
+        if (rec.children != null) {
+            buf.append(",\"functions\":[");
+            boolean first = true;
+            for (Record func : rec.children.values()) {
+                if (!first) buf.append(',');
+                first = false;
+                jsonRecord(buf, func);
+            }
+            buf.append(']');
+        }
+        buf.append('}');
+    }
+
+    static private void jsonString(StringBuilder buf, String str) {
+        buf.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '"' || c == '\\') {
+                buf.append('\\').append(c);
+            }
+            else if (c < 0x20) {
+                buf.append(String.format("\\u%04x", (int)c));
+            }
+            else {
+                buf.append(c);
+            }
+        }
+        buf.append('"');
+    }
+
+    static private long cpuTime() {
+        return threads.isCurrentThreadCpuTimeSupported()
+                ? threads.getCurrentThreadCpuTime() : 0;
+    }
+
+    // 0 when the JVM cannot count allocations per thread
+    static private long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean)threads)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    static private class Record {
+        final String name;
+        long wallNanos;
+        long cpuNanos;
+        long allocatedBytes;
+        int count;
+        Map<String, Record> children;
+
+        Record(String name) {
+            this.name = name;
+        }
+
+        Record child(String name) {
+            if (children == null) {
+                children = new LinkedHashMap<>();
+            }
+            Record rec = children.get(name);
+            if (rec == null) {
+                rec = new Record(name);
+                children.put(name, rec);
+            }
+            return rec;
+        }
+    }
+
+    static public class Timer implements AutoCloseable {
+        private final Record record;
+        private final long wallStart;
+        private final long cpuStart;
+        private final long allocStart;
+
+        private Timer(Record record) {
+            this.record = record;
+            if (record == null) {
+                wallStart = cpuStart = allocStart = 0;
+            }
+            else {
+                allocStart = allocatedBytes();
+                cpuStart = cpuTime();
+                wallStart = System.nanoTime();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (record == null) return;
+            long wall = System.nanoTime();
+            long cpu = cpuTime();
+            long alloc = allocatedBytes();
+            record.wallNanos += wall - wallStart;
+            record.cpuNanos += cpu - cpuStart;
+            record.allocatedBytes += alloc - allocStart;
+            record.count++;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+import ast.AST;
+import ast.ASTJsonWriter;
+import corpus.ProgramGenerator;
+import exception.SyntaxException;
+import org.junit.jupiter.api.Test;
+import parser.IncrementalParser;
+import parser.Parser;
+import parser.StringCharStream;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * After each edit IncrementalParser must give the same AST, locations
+ * included, and the same syntax errors as parsing the edited text from
+ * scratch.
+ */
+public class IncrementalParserTest {
+
+    @Test
+    public void editsMatchFullParse() throws Exception {
+        String text = "int g = 1;\n"
+                + "int f(int a) {\n"
+                + "    return a + g;\n"
+                + "}\n"
+                + "// main\n"
+                + "int main(void) {\n"
+                + "    return f(2);\n"
+                + "}\n";
+        IncrementalParser p = new IncrementalParser("t.c", null);
+        p.parse(text);
+
+        // a line added above every later definition
+        assertSameAsFullParse(p, edit(p, 0, 0, "int h;\n"));
+        // changes inside one function
+        int off = p.text().indexOf("a + g");
+        assertSameAsFullParse(p, edit(p, off, 5, "a * g - 1"));
+        // an opened brace swallows the rest of the file, then is closed
+        off = p.text().indexOf("int main");
+        assertSameAsFullParse(p, edit(p, off, 0, "int k(void) {\n"));
+        assertSameAsFullParse(p, edit(p, off + 14, 0, "return 0; }\n"));
+        String text2 = p.text().replace("f(2)", "f(3) + k()");
+        assertSameAsFullParse(p, edit(p, 0, p.text().length(), text2));
+        assertSameAsFullParse(p, json(p.update(text2.replace("int h;", "int h = 4;"))));
+    }
+
+    @Test
+    public void editsWithErrorsMatchFullParse() throws Exception {
+        // a stray "}" after a case label closes the switch, and the full
+        // parser resynchronizes elsewhere than at the boundaries of the chunks
+        IncrementalParser p = new IncrementalParser("t.c", null);
+        p.parse(ProgramGenerator.generate(8, new ProgramGenerator.Shape().functions(4)));
+        int caseBody = p.text().indexOf("case 1:") + "case 1:".length();
+        assertSameAsFullParse(p, edit(p, caseBody, 0, "}"));
+        assertSameAsFullParse(p, edit(p, caseBody, 1, ""));
+
+        // an unclosed comment is a lexical error
+        String[] inserts = { "}", "{", ";", "(", "/*", "\"" };
+        for (long seed = 0; seed < 50; seed++) {
+            p.parse(ProgramGenerator.generate(seed,
+                    new ProgramGenerator.Shape().functions(1 + (int)(seed % 5))));
+            Random r = new Random(seed);
+            for (String s : inserts) {
+                int off = r.nextInt(p.text().length());
+                assertSameAsFullParse(p, edit(p, off, 0, s));
+                assertSameAsFullParse(p, edit(p, off, s.length(), ""));
+            }
+        }
+    }
+
+    // the AST, or the partial AST and the syntax errors if the edit left any
+    private static String edit(IncrementalParser p, int offset, int removed, String inserted)
+            throws IOException {
+        try {
+            return json(p.edit(offset, removed, inserted));
+        } catch (SyntaxException ex) {
+            return ex.errors() + json(ex.ast());
+        }
+    }
+
+    private static void assertSameAsFullParse(IncrementalParser p, String result) throws IOException {
+        String full;
+        try {
+            full = json(new Parser(new StringCharStream(p.text()), "t.c", null).parse());
+        } catch (SyntaxException ex) {
+            full = ex.errors() + json(ex.ast());
+        }
+        assertEquals(full, result, p.text());
+    }
+
+    private static String json(AST ast) throws IOException {
+        if (ast == null) return "";
+        StringWriter w = new StringWriter();
+        new ASTJsonWriter(w).write(ast);
+        return w.toString();
+    }
+}
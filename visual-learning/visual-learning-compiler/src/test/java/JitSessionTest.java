@@ -0,0 +1,171 @@
+import compiler.JitSession;
+import exception.CompileException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Programs run in process: main returns its exit code, runs of the
+ * same source reuse the compiled program but not its globals, and a
+ * run which would not stop or would overflow the stack is stopped.
+ */
+public class JitSessionTest {
+
+    @Test
+    public void runsMain() throws Exception {
+        String src = "int g = 1;\n"
+                + "int main(void) {\n"
+                + "    int i; int s;\n"
+                + "    s = 0;\n"
+                + "    for (i = 0; i < 10; i++) { s += i; }\n"
+                + "    g += s;\n"
+                + "    return g;\n"
+                + "}\n";
+        try (JitSession session = new JitSession(100000, 1 << 20, 1, 4)) {
+            JitSession.Result first = session.run(src);
+            assertEquals(JitSession.Status.EXITED, first.status());
+            assertEquals(46, first.exitCode());
+            assertFalse(first.cached());
+            JitSession.Result second = session.run(src);
+            assertEquals(46, second.exitCode());
+            assertTrue(second.cached());
+        }
+    }
+
+    @Test
+    public void limits() throws Exception {
+        try (JitSession session = new JitSession(100000, 1 << 20, 0, 4)) {
+            assertEquals(JitSession.Status.OUT_OF_FUEL, session.run(
+                    "int main(void) { int i; i = 0; while (i >= 0) { i = 1; } return 0; }").status());
+            assertEquals(JitSession.Status.OUT_OF_MEMORY, session.run(
+                    "int f(int n) { return f(n + 1); }\n"
+                    + "int main(void) { return f(0); }").status());
+            assertEquals(JitSession.Status.DIVIDED_BY_ZERO, session.run(
+                    "int main(void) { int z; z = 0; return 1 / z; }").status());
+            assertThrows(CompileException.class, () -> session.run("int main(void) { return x; }"));
+            // arrays are not supported by the generator
+            assertThrows(CompileException.class, () -> session.run(
+                    "int main(void) { int a[2]; return a[0] + 1; }"));
+            assertThrows(CompileException.class, () -> session.run(
+                    "int main(void) { int a[2]; a[0] = 1; return 0; }"));
+            // the session is still usable
+            assertEquals(JitSession.Status.EXITED, session.run(
+                    "int main(void) { int x; int y; x = 1; y = 2; if (x < y) { return 3; } return 4; }").status());
+        }
+    }
+
+    // f maps the case values of cases to 1, 2, ... and others to the
+    // default clause or 0
+    private static String switchProgram(String cases, boolean withDefault, String main) {
+        StringBuilder src = new StringBuilder("int f(int k) {\n    int r;\n    r = 0;\n    switch (k) {\n");
+        int n = 0;
+        for (String c : cases.split(" ")) {
+            src.append("    case ").append(c).append(": r = ").append(++n).append("; break;\n");
+        }
+        if (withDefault) {
+            src.append("    default: r = 9; break;\n");
+        }
+        return src.append("    }\n    return r;\n}\nint main(void) { return ").append(main).append("; }\n").toString();
+    }
+
+    @Test
+    public void switches() throws Exception {
+        String dense = "f(0) + f(1) * 10 + f(3) * 100 + f(7) * 1000";
+        String sparse = "f(1) + f(100) * 10 + f(10000) * 100 + f(1000000) * 1000 + f(50) * 10000";
+        try (JitSession session = new JitSession(100000, 1 << 20, 1, 4)) {
+            assertEquals(9421, session.run(switchProgram("0 1 2 3", true, dense)).exitCode());
+            assertEquals(421, session.run(switchProgram("0 1 2 3", false, dense)).exitCode());
+            assertEquals(94321, session.run(switchProgram("1 100 10000 1000000", true, sparse)).exitCode());
+            assertEquals(4321, session.run(switchProgram("1 100 10000 1000000", false, sparse)).exitCode());
+        }
+    }
+
+    @Test
+    public void controlFlowErrors() throws Exception {
+        try (JitSession session = new JitSession(100000, 1 << 20, 1, 4)) {
+            assertCompileError(session, "duplicated case value: 2", switchProgram("1 2 2", false, "f(1)"));
+            assertCompileError(session, "undefined label: nowhere",
+                    "int main(void) { goto nowhere; return 0; }");
+            assertCompileError(session, "duplicated label: again",
+                    "int main(void) { int x; again: x = 1; again: x = 2; return x; }");
+            assertCompileError(session, "break from out of loop",
+                    "int main(void) { break; return 0; }");
+            assertCompileError(session, "continue from out of loop",
+                    "int main(void) { continue; return 0; }");
+            // a switch is no target of continue
+            assertCompileError(session, "continue from out of loop",
+                    "int main(void) { int x; x = 1; switch (x) { case 1: continue; break; } return 0; }");
+        }
+    }
+
+    private static void assertCompileError(JitSession session, String message, String src) {
+        CompileException ex = assertThrows(CompileException.class, () -> session.run(src));
+        assertTrue(ex.getMessage().contains(message), ex.getMessage());
+    }
+
+    @Test
+    public void stringLiterals() throws Exception {
+        try (JitSession session = new JitSession(100000, 1 << 20, 1, 4)) {
+            JitSession.Result run = session.run("char *s = \"abc\";\n"
+                    + "int main(void) { char *t; t = \"de\"; if (s != t) { return 7; } return 0; }\n");
+            assertEquals(JitSession.Status.EXITED, run.status());
+            assertEquals(7, run.exitCode());
+        }
+    }
+
+    @Test
+    public void staticLocals() throws Exception {
+        String src = "int f(void) { static int c = 0; c++; return c; }\n"
+                + "int main(void) { f(); f(); return f(); }\n";
+        try (JitSession session = new JitSession(100000, 1 << 20, 1, 4)) {
+            assertEquals(3, session.run(src).exitCode());
+            // reset with the other globals
+            JitSession.Result again = session.run(src);
+            assertTrue(again.cached());
+            assertEquals(3, again.exitCode());
+        }
+    }
+
+    // 100 values live across the recursive call: the frames are spilled
+    // to the stack, and far larger than a few bytes per call
+    @Test
+    public void largeFrames() throws Exception {
+        StringBuilder src = new StringBuilder("int f(int n) {\n    int s;\n");
+        for (int i = 0; i < 100; i++) {
+            src.append("    int a").append(i).append(";\n");
+        }
+        for (int i = 0; i < 100; i++) {
+            src.append("    a").append(i).append(" = n + ").append(i).append(";\n");
+        }
+        src.append("    if (n == 0) { return 0; }\n    s = f(n - 1);\n");
+        for (int i = 0; i < 100; i++) {
+            src.append("    s += a").append(i).append(";\n");
+        }
+        src.append("    return s;\n}\n");
+        try (JitSession session = new JitSession(100000000, 1 << 20, 0, 4)) {
+            // the sum of 100 * n + 4950 for n = 1 .. 100
+            JitSession.Result run = session.run(src + "int main(void) { return f(100); }\n");
+            assertEquals(JitSession.Status.EXITED, run.status());
+            assertEquals(1000000, run.exitCode());
+            assertEquals(JitSession.Status.OUT_OF_MEMORY,
+                    session.run(src + "int main(void) { return f(1000000); }\n").status());
+        }
+    }
+
+    @Test
+    public void boundedWaits() throws Exception {
+        String loop = "int main(void) { int i; i = 0; while (i >= 0) { i = 1; } return 0; }";
+        try (JitSession session = new JitSession(5000000000L, 1 << 20, 0, 4, 1000, 200)) {
+            assertThrows(CompileException.class, () -> session.run(
+                    "int main(void) {" + new String(new char[1000]).replace('\0', ' ') + "return 0; }"));
+            // runs for seconds: the caller gets TIMEOUT, the next one BUSY
+            assertEquals(JitSession.Status.TIMEOUT, session.run(loop).status());
+            JitSession.Result busy = session.run("int main(void) { return 1; }");
+            assertEquals(JitSession.Status.BUSY, busy.status());
+            assertEquals(0, busy.fuelUsed());
+        }
+    }
+}
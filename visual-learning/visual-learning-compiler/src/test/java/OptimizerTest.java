@@ -0,0 +1,114 @@
+import ast.AST;
+import checker.SemanticAnalyzer;
+import compiler.JitSession;
+import compiler.LLVMIRGenerator;
+import compiler.Optimizer;
+import compiler.Options;
+import corpus.ProgramGenerator;
+import exception.OptionParseError;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.llvm.LLVM.LLVMContextRef;
+import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.junit.jupiter.api.Test;
+import parser.Parser;
+import type.TypeTable;
+import utils.ErrorHandler;
+
+import java.util.Arrays;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * -O selects the pass pipeline and the code generation level;
+ * -fpasses= replaces the pipeline.  The optimized modules must still
+ * verify and return what the unoptimized ones return.
+ */
+public class OptimizerTest {
+
+    @Test
+    public void optimizationLevels() {
+        assertEquals(0, Options.parse(new String[] { "a.c" }).optLevel());
+        assertTrue(Options.parse(new String[] { "a.c" }).optimizationPasses().isEmpty());
+        assertEquals(1, Options.parse(new String[] { "-O", "a.c" }).optLevel());
+        for (int level = 1; level <= 3; level++) {
+            Options opts = Options.parse(new String[] { "-O" + level, "a.c" });
+            assertEquals(level, opts.optLevel());
+            // promotes what the generator leaves in allocas
+            assertEquals("mem2reg", opts.optimizationPasses().get(0));
+            for (String pass : opts.optimizationPasses()) {
+                assertTrue(Optimizer.isKnownPass(pass), pass);
+            }
+        }
+        assertThrows(OptionParseError.class, () -> Options.parse(new String[] { "-O4", "a.c" }));
+    }
+
+    @Test
+    public void explicitPasses() {
+        Options opts = Options.parse(new String[] { "-O3", "-fpasses=mem2reg,gvn", "a.c" });
+        assertEquals(Arrays.asList("mem2reg", "gvn"), opts.optimizationPasses());
+        assertEquals(3, opts.optLevel());
+        assertThrows(OptionParseError.class,
+                () -> Options.parse(new String[] { "-fpasses=mem2reg,nosuchpass", "a.c" }));
+    }
+
+    // an IR-safe program whose main returns a mix of all its functions
+    private static String program(long seed) {
+        int functions = 1 + (int)(seed % 4);
+        String src = ProgramGenerator.generate(seed,
+                new ProgramGenerator.Shape().irSafe(true).functions(functions));
+        StringBuilder ret = new StringBuilder("f0(1, 2)");
+        for (int i = 1; i < functions; i++) {
+            ret.append(" ^ f").append(i).append("(").append(i).append(", ").append(seed % 10).append(")");
+        }
+        return src.replace("    return 0;\n}", "    return " + ret + ";\n}");
+    }
+
+    @Test
+    public void optimizedModulesVerify() throws Exception {
+        LLVMContextRef context = LLVMContextCreate();
+        try {
+            for (long seed = 0; seed < 50; seed++) {
+                String src = program(seed);
+                for (int level = 1; level <= 2; level++) {
+                    ErrorHandler h = new ErrorHandler("test");
+                    AST ast = Parser.parseOnlineCode(src, h);
+                    new SemanticAnalyzer(TypeTable.ilp32(), h).analyze(ast);
+                    LLVMIRGenerator generator = new LLVMIRGenerator(context);
+                    generator.setCountFuel(true);
+                    LLVMModuleRef module = generator.llvmGenerate(ast);
+                    new Optimizer(Optimizer.passesOf(level)).optimize(module);
+                    BytePointer error = new BytePointer();
+                    int invalid = LLVMVerifyModule(module, LLVMReturnStatusAction, error);
+                    String msg = error.getString();
+                    LLVMDisposeMessage(error);
+                    LLVMDisposeModule(module);
+                    assertEquals(0, invalid, "seed " + seed + " -O" + level + ": " + msg + "\n" + src);
+                }
+            }
+        }
+        finally {
+            LLVMContextDispose(context);
+        }
+    }
+
+    @Test
+    public void optimizedProgramsReturnTheSameValues() throws Exception {
+        try (JitSession o0 = new JitSession(10000000, 1 << 20, 0, 64);
+             JitSession o1 = new JitSession(10000000, 1 << 20, 1, 64);
+             JitSession o2 = new JitSession(10000000, 1 << 20, 2, 64)) {
+            for (long seed = 0; seed < 50; seed++) {
+                String src = program(seed);
+                JitSession.Result expected = o0.run(src);
+                assertEquals(JitSession.Status.EXITED, expected.status(), src);
+                for (JitSession session : new JitSession[] { o1, o2 }) {
+                    JitSession.Result run = session.run(src);
+                    assertEquals(JitSession.Status.EXITED, run.status(), src);
+                    assertEquals(expected.exitCode(), run.exitCode(), src);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import ast.AST;
+import checker.DereferenceChecker;
+import checker.LocalResolver;
+import checker.TypeChecker;
+import checker.TypeResolver;
+import corpus.ProgramGenerator;
+import exception.SemanticException;
+import org.junit.jupiter.api.Test;
+import parser.Parser;
+import parser.StringCharStream;
+import type.TypeTable;
+import utils.ErrorHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checking the function bodies on a ForkJoinPool must give the messages
+ * of the serial checkers, in source order, and the same checked AST.
+ */
+public class ParallelChecksTest {
+
+    @Test
+    public void sameResultAsSerialChecks() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (long seed = 0; seed < 10; seed++) {
+                assertSameResult(ProgramGenerator.generate(seed,
+                        new ProgramGenerator.Shape().functions(20 + (int)seed * 10)), pool);
+            }
+            // errors in several functions
+            assertSameResult("int f(void) { int x; *x = 1; return 0; }\n"
+                    + "int g(void) { 1 = 2; return 0; }\n"
+                    + "int h(void) { int x; x(); return 0; }\n", pool);
+            assertSameResult("void f(void) { return 1; }\n"
+                    + "int g(void) { int* p; char c; c = p; return; }\n"
+                    + "int h(void) { return g(1); }\n", pool);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void assertSameResult(String src, ForkJoinPool pool) throws Exception {
+        assertEquals(check(src, null), check(src, pool), src);
+    }
+
+    private static String check(String src, ForkJoinPool pool) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ErrorHandler h = new ErrorHandler("test", out);
+        TypeTable types = TypeTable.ilp32();
+        AST ast = new Parser(new StringCharStream(src), "t.c", h).parse();
+        try {
+            new LocalResolver(h).resolve(ast);
+            new TypeResolver(types, h).resolve(ast);
+            if (pool != null) {
+                new DereferenceChecker(types, h).check(ast, pool);
+                new TypeChecker(types, h).check(ast, pool);
+            }
+            else {
+                new DereferenceChecker(types, h).check(ast);
+                new TypeChecker(types, h).check(ast);
+            }
+            PrintStream s = new PrintStream(out);
+            ast.dump(s);
+            s.flush();
+        } catch (SemanticException ex) {
+            out.write("failed\n".getBytes());
+        }
+        return out.toString();
+    }
+}
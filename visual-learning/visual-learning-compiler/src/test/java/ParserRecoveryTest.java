@@ -0,0 +1,60 @@
+import ast.AST;
+import ast.BlockNode;
+import ast.ErrorStmtNode;
+import exception.SyntaxException;
+import org.junit.jupiter.api.Test;
+import parser.Parser;
+import utils.ErrorHandler;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * One parse reports every syntax error and keeps what could be parsed.
+ */
+public class ParserRecoveryTest {
+
+    @Test
+    public void reportsAllErrors() {
+        String text = "int x int;\n"
+                + "int f(void) {\n"
+                + "    int a;\n"
+                + "    a = ;\n"
+                + "    a = 1;\n"
+                + "    if (a) { a + ; }\n"
+                + "    return a;\n"
+                + "}\n"
+                + "int g(void) { return 1; }\n";
+        SyntaxException ex = assertThrows(SyntaxException.class,
+                () -> Parser.parseOnlineCode(text, new ErrorHandler("test")));
+        assertEquals(3, ex.errors().size());
+
+        AST ast = ex.ast();
+        assertNotNull(ast);
+        assertEquals(2, ast.definedFunctions().size());
+        BlockNode body = ast.definedFunctions().get(0).body();
+        assertEquals(4, body.stmts().size());
+        assertTrue(body.stmts().get(0) instanceof ErrorStmtNode);
+    }
+
+    @Test
+    public void emptyCaseBody() {
+        String text = "int f(int x) {\n"
+                + "    switch (x) { case 1: ; }\n"
+                + "    return x;\n"
+                + "}\n";
+        SyntaxException ex = assertThrows(SyntaxException.class,
+                () -> Parser.parseOnlineCode(text, new ErrorHandler("test")));
+        assertEquals(1, ex.errors().size());
+        assertEquals(1, ex.ast().definedFunctions().size());
+    }
+
+    @Test
+    public void expectedTokensAfterTerm() {
+        String text = "int f(void) { int x; x 1; return x; }\n";
+        SyntaxException ex = assertThrows(SyntaxException.class,
+                () -> Parser.parseOnlineCode(text, new ErrorHandler("test")));
+        String msg = ex.errors().get(0);
+        assertTrue(msg.contains("\"=\" ..."), msg);
+        assertTrue(msg.contains("\"+=\" ..."), msg);
+    }
+}
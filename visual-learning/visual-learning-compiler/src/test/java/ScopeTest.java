@@ -0,0 +1,83 @@
+import ast.AST;
+import ast.BlockNode;
+import ast.VariableNode;
+import ast.Visitor;
+import checker.LocalResolver;
+import corpus.ProgramGenerator;
+import entity.DefinedFunction;
+import entity.Scope;
+import org.junit.jupiter.api.Test;
+import parser.Parser;
+import parser.StringCharStream;
+import utils.ErrorHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * The (depth, slot) which LocalResolver records on a VariableNode
+ * names the same entity as looking its name up from where it is used.
+ */
+public class ScopeTest {
+
+    @Test
+    public void slotsFindTheResolvedEntity() throws Exception {
+        // more locals than a scope scans linearly, shadowing,
+        // parameters, globals and the increment of a for statement
+        assertSlots("int g = 1;\n"
+                + "int f(int a, int b) {\n"
+                + "    int v0; int v1; int v2; int v3; int v4; int v5;\n"
+                + "    int v6; int v7; int v8; int v9; int i;\n"
+                + "    v0 = v1 = v2 = v3 = v4 = v5 = v6 = v7 = v8 = v9 = a;\n"
+                + "    for (i = 0; i < b; i++) { int i; i = g; { int a; a = i + v9; g = a; } }\n"
+                + "    return v0 + v1 + v2 + v3 + v4 + v5 + v6 + v7 + v8 + v9 + i + g;\n"
+                + "}\n"
+                + "int main(void) { return f(1, 2); }\n");
+        for (long seed = 0; seed < 20; seed++) {
+            assertSlots(ProgramGenerator.generate(seed,
+                    new ProgramGenerator.Shape().functions(1 + (int)(seed % 6))));
+        }
+    }
+
+    private static void assertSlots(String src) throws Exception {
+        ErrorHandler h = new ErrorHandler("test", new ByteArrayOutputStream());
+        AST ast = new Parser(new StringCharStream(src), "t.c", h).parse();
+        new LocalResolver(h).resolve(ast);
+        for (DefinedFunction f : ast.definedFunctions()) {
+            new SlotChecker(f.lvarScope().toplevel(), src).visit(f.body());
+        }
+    }
+
+    static private class SlotChecker extends Visitor {
+        private final Deque<Scope> scopes = new ArrayDeque<>();
+        private final String src;
+
+        SlotChecker(Scope toplevel, String src) {
+            this.scopes.push(toplevel);
+            this.src = src;
+        }
+
+        public Void visit(BlockNode node) {
+            scopes.push(node.scope());
+            super.visit(node);
+            scopes.pop();
+            return null;
+        }
+
+        public Void visit(VariableNode node) {
+            Scope defining = scopes.peek().scopeAt(node.scopeDepth());
+            assertEquals(node.slot(), defining.slotOf(node.name()), src);
+            try {
+                assertSame(node.entity(), defining.get(node.name()), src);
+            }
+            catch (Exception ex) {
+                throw new AssertionError(ex);
+            }
+            return null;
+        }
+    }
+}
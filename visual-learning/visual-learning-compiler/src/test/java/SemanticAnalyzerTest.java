@@ -0,0 +1,70 @@
+import ast.AST;
+import checker.DereferenceChecker;
+import checker.LocalResolver;
+import checker.SemanticAnalyzer;
+import checker.TypeChecker;
+import checker.TypeResolver;
+import corpus.ProgramGenerator;
+import exception.SemanticException;
+import org.junit.jupiter.api.Test;
+import parser.Parser;
+import parser.StringCharStream;
+import type.TypeTable;
+import utils.ErrorHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * SemanticAnalyzer must report what the four separate passes report,
+ * in the same order, and leave the same checked AST behind.
+ */
+public class SemanticAnalyzerTest {
+
+    @Test
+    public void sameResultAsSeparatePasses() throws Exception {
+        for (long seed = 0; seed < 50; seed++) {
+            assertSameResult(ProgramGenerator.generate(seed,
+                    new ProgramGenerator.Shape().functions(1 + (int)(seed % 6))));
+        }
+        // resolution errors end the analysis; unused variables are reported
+        assertSameResult("int f(int a, int a) { int u; return b; }\n"
+                + "int main(void) { return c + f(1, 2); }\n");
+        // dereference errors, one per statement, stop the type check
+        assertSameResult("int g;\n"
+                + "int main(void) { int x; 1 = x + *x; x++; *x = 2; g(); return 0; }\n");
+        // type errors and warnings
+        assertSameResult("void v(void) { return 1; }\n"
+                + "int main(void) { int* p; char c; p = 1; c = p; v(1); return; }\n");
+    }
+
+    private static void assertSameResult(String src) throws Exception {
+        assertEquals(analyze(src, false), analyze(src, true), src);
+    }
+
+    private static String analyze(String src, boolean fused) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ErrorHandler h = new ErrorHandler("test", out);
+        TypeTable types = TypeTable.ilp32();
+        AST ast = new Parser(new StringCharStream(src), "t.c", h).parse();
+        try {
+            if (fused) {
+                new SemanticAnalyzer(types, h).analyze(ast);
+            }
+            else {
+                new LocalResolver(h).resolve(ast);
+                new TypeResolver(types, h).resolve(ast);
+                new DereferenceChecker(types, h).check(ast);
+                new TypeChecker(types, h).check(ast);
+            }
+            PrintStream s = new PrintStream(out);
+            ast.dump(s);
+            s.flush();
+        } catch (SemanticException ex) {
+            out.write("failed\n".getBytes());
+        }
+        return out.toString();
+    }
+}
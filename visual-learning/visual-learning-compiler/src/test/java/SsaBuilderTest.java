@@ -0,0 +1,156 @@
+import ast.AST;
+import checker.SemanticAnalyzer;
+import compiler.JitSession;
+import compiler.LLVMIRGenerator;
+import corpus.ProgramGenerator;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.llvm.LLVM.LLVMContextRef;
+import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.junit.jupiter.api.Test;
+import parser.Parser;
+import type.TypeTable;
+import utils.ErrorHandler;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The generator keeps locals in SSA values: each program is run
+ * unoptimized and at -O2, where a wrong phi would show up as a wrong
+ * exit code, and the generated modules must pass the verifier.
+ */
+public class SsaBuilderTest {
+
+    private static void assertExits(int expected, String src) throws Exception {
+        for (int level : new int[] { 0, 2 }) {
+            try (JitSession session = new JitSession(1000000, 1 << 20, level, 1)) {
+                JitSession.Result run = session.run(src);
+                assertEquals(JitSession.Status.EXITED, run.status(), "-O" + level);
+                assertEquals(expected, run.exitCode(), "-O" + level);
+            }
+        }
+    }
+
+    @Test
+    public void nestedLoops() throws Exception {
+        // i * j + 1 for 0 <= j < i < 4
+        assertExits(17, "int main(void) {\n"
+                + "    int i; int j; int s;\n"
+                + "    s = 0;\n"
+                + "    for (i = 0; i < 4; i++) {\n"
+                + "        for (j = 0; j < i; j++) { s += i * j + 1; }\n"
+                + "    }\n"
+                + "    return s;\n"
+                + "}\n");
+    }
+
+    @Test
+    public void continueRunsTheIncrement() throws Exception {
+        // would not stop if continue skipped i++
+        assertExits(20, "int main(void) {\n"
+                + "    int i; int s;\n"
+                + "    s = 0;\n"
+                + "    for (i = 0; i < 10; i++) {\n"
+                + "        if (i & 1) { continue; }\n"
+                + "        s += i;\n"
+                + "    }\n"
+                + "    return s;\n"
+                + "}\n");
+    }
+
+    @Test
+    public void breakLeavesOnlyTheSwitch() throws Exception {
+        // 1 + 10 + 1 + 100 + 1, and 1000 for each of the 5 passes
+        assertExits(5113, "int main(void) {\n"
+                + "    int i; int s;\n"
+                + "    s = 0;\n"
+                + "    for (i = 0; i < 5; i++) {\n"
+                + "        switch (i) {\n"
+                + "        case 1: s += 10; break;\n"
+                + "        case 3: s += 100; break;\n"
+                + "        default: s += 1; break;\n"
+                + "        }\n"
+                + "        s += 1000;\n"
+                + "    }\n"
+                + "    return s;\n"
+                + "}\n");
+    }
+
+    @Test
+    public void gotos() throws Exception {
+        // 0 + 1 + 2 + 3 + 4, then the jump over s = 1
+        assertExits(10, "int main(void) {\n"
+                + "    int i; int s;\n"
+                + "    i = 0;\n"
+                + "    s = 0;\n"
+                + "again:\n"
+                + "    s += i;\n"
+                + "    i++;\n"
+                + "    if (i < 5) { goto again; }\n"
+                + "    if (s > 5) { goto out; }\n"
+                + "    s = 1;\n"
+                + "out:\n"
+                + "    return s;\n"
+                + "}\n");
+    }
+
+    @Test
+    public void assignedInSomeCases() throws Exception {
+        // 7 + 5 * 10 + 25 * 100 + 5 * 1000
+        assertExits(7557, "int pick(int k) {\n"
+                + "    int r;\n"
+                + "    r = 5;\n"
+                + "    switch (k) {\n"
+                + "    case 0: r = 7; break;\n"
+                + "    case 1: case 2: break;\n"
+                + "    case 3: r += 20; break;\n"
+                + "    }\n"
+                + "    return r;\n"
+                + "}\n"
+                + "int main(void) {\n"
+                + "    return pick(0) + pick(1) * 10 + pick(3) * 100 + pick(9) * 1000;\n"
+                + "}\n");
+    }
+
+    @Test
+    public void readBeforeWrite() throws Exception {
+        // u is undefined on the first pass only, w on every path
+        assertExits(8, "int main(void) {\n"
+                + "    int u; int w; int i; int s;\n"
+                + "    s = 6;\n"
+                + "    for (i = 0; i < 3; i++) {\n"
+                + "        if (i > 0) { s += u; }\n"
+                + "        u = 1;\n"
+                + "    }\n"
+                + "    return s + w * 0;\n"
+                + "}\n");
+    }
+
+    @Test
+    public void generatedProgramsVerify() throws Exception {
+        LLVMContextRef context = LLVMContextCreate();
+        try {
+            for (long seed = 0; seed < 200; seed++) {
+                String src = ProgramGenerator.generate(seed,
+                        new ProgramGenerator.Shape().irSafe(true).functions(1 + (int)(seed % 5)));
+                for (boolean countFuel : new boolean[] { false, true }) {
+                    ErrorHandler h = new ErrorHandler("test");
+                    AST ast = Parser.parseOnlineCode(src, h);
+                    new SemanticAnalyzer(TypeTable.ilp32(), h).analyze(ast);
+                    LLVMIRGenerator generator = new LLVMIRGenerator(context);
+                    generator.setCountFuel(countFuel);
+                    LLVMModuleRef module = generator.llvmGenerate(ast);
+                    BytePointer error = new BytePointer();
+                    int invalid = LLVMVerifyModule(module, LLVMReturnStatusAction, error);
+                    String msg = error.getString();
+                    LLVMDisposeMessage(error);
+                    LLVMDisposeModule(module);
+                    assertEquals(0, invalid, "seed " + seed + ": " + msg + "\n" + src);
+                }
+            }
+        }
+        finally {
+            LLVMContextDispose(context);
+        }
+    }
+}
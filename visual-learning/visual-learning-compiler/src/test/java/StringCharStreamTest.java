@@ -0,0 +1,61 @@
+import org.junit.jupiter.api.Test;
+import parser.*;
+
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * StringCharStream must produce exactly the tokens (including positions)
+ * that SimpleCharStream produces for the same text.
+ */
+public class StringCharStreamTest {
+
+    private static String tokens(CharStream s) {
+        ParserTokenManager tm = new ParserTokenManager(s);
+        StringBuilder buf = new StringBuilder();
+        try {
+            Token t;
+            do {
+                t = tm.getNextToken();
+                for (Token sp = t.specialToken; sp != null; sp = sp.specialToken) {
+                    buf.append(describe(sp)).append(" (special)\n");
+                }
+                buf.append(describe(t)).append('\n');
+            } while (t.kind != ParserConstants.EOF);
+        }
+        catch (TokenMgrError err) {
+            buf.append("error: ").append(err.getMessage()).append('\n');
+        }
+        return buf.toString();
+    }
+
+    private static String describe(Token t) {
+        return t.kind + " " + t.beginLine + ":" + t.beginColumn
+                + "-" + t.endLine + ":" + t.endColumn + " [" + t.image + "]";
+    }
+
+    private static void assertSameTokens(String text) {
+        assertEquals(tokens(new SimpleCharStream(new StringReader(text), 1, 1)),
+                     tokens(new StringCharStream(text)), text);
+    }
+
+    @Test
+    public void sameTokensAsSimpleCharStream() {
+        assertSameTokens("");
+        assertSameTokens("int main(int argc)\n{\n    return argc + 1;\n}\n");
+        assertSameTokens("int\tx =\t1;\r\nchar *s = \"a\\tb\";\r/* c\r\n */ x++; // end");
+        assertSameTokens("\t\tint a = 'x';\n\n\n  a = a <<= 2 ? 0x1fUL : 017;");
+        assertSameTokens("int a = 1; @");
+        assertSameTokens("\"unterminated");
+    }
+
+    @Test
+    public void sourceLongerThanBuffer() {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            buf.append("int v").append(i).append(" =\t").append(i).append(";\n");
+        }
+        assertSameTokens(buf.toString());
+    }
+}
@@ -0,0 +1,38 @@
+import org.junit.jupiter.api.Test;
+import parser.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * TokenScanner must see the same tokens as the Parser's token manager.
+ */
+public class TokenScannerTest {
+
+    @Test
+    public void sameTokensAsTokenManager() {
+        String text = "/* header */\nint main(int argc)\n{\n\tchar *s = \"x\\n\"; // tail\r\n"
+                + "    return argc >= 0x10 ? 'a' : -1;\n}\n";
+        Tokens tokens = TokenScanner.scan(text);
+
+        ParserTokenManager tm = new ParserTokenManager(new StringCharStream(text));
+        int i = 0;
+        for (Token t = tm.getNextToken(); t.kind != ParserConstants.EOF; t = tm.getNextToken()) {
+            if (t.specialToken != null) {
+                Token s = t.specialToken;
+                while (s.specialToken != null) s = s.specialToken;
+                for (; s != null && s != t; s = s.next) {
+                    if (s.kind != ParserConstants.SPACES) assertToken(tokens, i++, s);
+                }
+            }
+            assertToken(tokens, i++, t);
+        }
+        assertEquals(i, tokens.size());
+    }
+
+    private static void assertToken(Tokens tokens, int i, Token t) {
+        assertEquals(t.kind, tokens.kind(i), "kind of " + t.image);
+        assertEquals(t.image, tokens.image(i));
+        assertEquals(t.beginLine, tokens.line(i), "line of " + t.image);
+        assertEquals(t.beginColumn, tokens.column(i), "column of " + t.image);
+    }
+}
@@ -0,0 +1,64 @@
+import org.junit.jupiter.api.Test;
+import type.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Types are canonical within a TypeTable, also when they are asked for
+ * from several threads at once.
+ */
+public class TypeTableTest {
+
+    @Test
+    public void derivedTypesAreCanonical() {
+        TypeTable table = TypeTable.ilp32();
+        Type intPtr = table.get(new PointerTypeRef(IntegerTypeRef.intRef()));
+        assertSame(intPtr, table.pointerTo(table.signedInt()));
+        assertSame(intPtr, table.get(new PointerTypeRef(IntegerTypeRef.intRef())));
+
+        // arrays of the same length but different element types
+        Type ints = table.get(new ArrayTypeRef(IntegerTypeRef.intRef(), 3));
+        Type chars = table.get(new ArrayTypeRef(IntegerTypeRef.charRef(), 3));
+        assertNotSame(ints, chars);
+        assertEquals("char[3]", chars.toString());
+        assertSame(chars, table.arrayOf(table.get(IntegerTypeRef.charRef()), 3));
+    }
+
+    @Test
+    public void concurrentLookupsAgree() throws Exception {
+        TypeTable table = TypeTable.ilp32();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<Type>>> results = new ArrayList<>();
+            for (int n = 0; n < 8; n++) {
+                results.add(pool.submit(() -> {
+                    List<Type> types = new ArrayList<>();
+                    for (int len = 0; len < 200; len++) {
+                        TypeRef ref = new PointerTypeRef(
+                                new ArrayTypeRef(IntegerTypeRef.longRef(), len));
+                        types.add(table.get(ref));
+                    }
+                    return types;
+                }));
+            }
+            List<Type> first = results.get(0).get();
+            for (Future<List<Type>> f : results) {
+                List<Type> types = f.get();
+                for (int i = 0; i < types.size(); i++) {
+                    assertSame(first.get(i), types.get(i));
+                }
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -1,17 +1,34 @@
 package com.zp.visuallearningservice.controller;
 
 import ast.AST;
+import ast.ASTJsonWriter;
 import com.zp.visuallearningservice.models.CodeRequest;
 import com.zp.visuallearningservice.models.Result;
+import com.zp.visuallearningservice.service.ParseResultCache;
+import com.zp.visuallearningservice.service.ParseSessions;
 import exception.FileException;
 import exception.SyntaxException;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.ResponseBody;
+import parser.IncrementalParser;
 import parser.Parser;
+import parser.TokenMgrError;
+import parser.TokenScanner;
+import parser.Tokens;
 import utils.ErrorHandler;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
 /**
  * @author ZP
  * @date 2023/6/7 23:08
@@ -21,17 +38,143 @@ import utils.ErrorHandler;
 @ResponseBody
 public class ASTVisualController {
 
+    private final ParseResultCache parseCache;
+    private final ParseSessions parseSessions;
+
+    public ASTVisualController(ParseResultCache parseCache, ParseSessions parseSessions) {
+        this.parseCache = parseCache;
+        this.parseSessions = parseSessions;
+    }
 
+    /**
+     * The AST is streamed straight into the response body with the same
+     * {"message": ..., "data": ...} shape as {@link Result},
+     * so large programs never exist as an in-memory JSON tree.
+     * Identical submissions are answered from {@link ParseResultCache}.
+     * When the parser recovered from syntax errors, the message is
+     * "Syntax error", "errors" lists all of them and data is the partial
+     * AST, in which ErrorStmtNode stands for each bad statement.
+     * Requests with a documentId are parsed incrementally against the
+     * previous submission of the same document.
+     */
     @PostMapping("/parse")
-    public Result parseCode(@RequestBody CodeRequest codeRequest) throws FileException, SyntaxException {
+    public void parseCode(@RequestBody CodeRequest codeRequest, HttpServletResponse response)
+            throws FileException, SyntaxException, IOException {
+        String key = ParseResultCache.keyOf(codeRequest.getCode());
+        ParseResultCache.Entry cached = parseCache.get(key);
+        if (cached != null) {
+            if (cached.isError()) {
+                throw new SyntaxException(cached.error());
+            }
+            setJsonContentType(response);
+            response.setContentLength(cached.body().length);
+            response.getOutputStream().write(cached.body());
+            return;
+        }
+
         // 进行代码分析逻辑，并得到分析结果 result
-        AST ast = Parser.parseOnlineCode(codeRequest.getCode(), new ErrorHandler("Visual-Learning"));
-        //TODO: the ast needs to be wrapped into json format and returned to the front end
-        Result result = new Result();
-        // 设置分析结果
-        result.setMessage("Analysis completed");
-//        result.setData(/* 分析结果数据 */);
+        String documentId = codeRequest.getDocumentId();
+        if (documentId == null) {
+            parseAndWrite(key, codeRequest.getCode(), null, response);
+        } else {
+            IncrementalParser session = parseSessions.get(documentId);
+            // the AST shares its definitions with the session
+            synchronized (session) {
+                parseAndWrite(key, codeRequest.getCode(), session, response);
+            }
+        }
+    }
+
+    private void parseAndWrite(String key, String code, IncrementalParser session,
+                               HttpServletResponse response)
+            throws FileException, SyntaxException, IOException {
+        AST ast;
+        List<String> errors = null;
+        try {
+            ast = (session == null)
+                    ? Parser.parseOnlineCode(code, new ErrorHandler("Visual-Learning"))
+                    : session.update(code);
+        } catch (SyntaxException e) {
+            if (e.ast() == null) {
+                parseCache.putError(key, e.getMessage());
+                throw e;
+            }
+            ast = e.ast();
+            errors = e.errors();
+        }
+
+        setJsonContentType(response);
+        ParseResultCache.CapturingOutputStream body = parseCache.capture(response.getOutputStream());
+        Writer out = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+        ASTJsonWriter json = new ASTJsonWriter(out);
+        if (errors == null) {
+            out.write("{\"message\":\"Analysis completed\",\"data\":");
+        } else {
+            out.write("{\"message\":\"Syntax error\",\"errors\":");
+            json.writeStrings(errors);
+            out.write(",\"data\":");
+        }
+        json.write(ast);
+        out.write("}");
+        out.flush();
+        byte[] captured = body.captured();
+        if (captured != null) {
+            parseCache.putBody(key, captured);
+        }
+    }
 
+    /**
+     * Tokens only, for syntax highlighting: the parser is not run.
+     * data holds parallel arrays kind/begin/end/line/column, one entry per token.
+     */
+    @PostMapping("/tokens")
+    public void tokenize(@RequestBody CodeRequest codeRequest, HttpServletResponse response)
+            throws SyntaxException, IOException {
+        Tokens tokens;
+        try {
+            tokens = TokenScanner.scan(codeRequest.getCode());
+        } catch (TokenMgrError err) {
+            throw new SyntaxException(err.getMessage());
+        }
+
+        setJsonContentType(response);
+        Writer out = new BufferedWriter(
+                new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+        out.write("{\"message\":\"Analysis completed\",\"data\":{");
+        writeIntArray(out, "kind", tokens.kinds(), tokens.size());
+        out.write(',');
+        writeIntArray(out, "begin", tokens.beginOffsets(), tokens.size());
+        out.write(',');
+        writeIntArray(out, "end", tokens.endOffsets(), tokens.size());
+        out.write(',');
+        writeIntArray(out, "line", tokens.lines(), tokens.size());
+        out.write(',');
+        writeIntArray(out, "column", tokens.columns(), tokens.size());
+        out.write("}}");
+        out.flush();
+    }
+
+    private static void writeIntArray(Writer out, String name, int[] values, int n) throws IOException {
+        out.write('"');
+        out.write(name);
+        out.write("\":[");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) out.write(',');
+            out.write(Integer.toString(values[i]));
+        }
+        out.write(']');
+    }
+
+    @GetMapping("/parse/cache")
+    public Result parseCacheStats() {
+        Result result = new Result();
+        result.setMessage("OK");
+        result.setData(parseCache.stats());
         return result;
     }
+
+    private static void setJsonContentType(HttpServletResponse response) {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    }
 }
@@ -0,0 +1,59 @@
+package com.zp.visuallearningservice.controller;
+
+import com.zp.visuallearningservice.models.CodeRequest;
+import com.zp.visuallearningservice.models.Result;
+import com.zp.visuallearningservice.service.ProgramRunner;
+import compiler.JitSession;
+import exception.CompileException;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author ZP
+ * @date 2026/10/17 10:00
+ * @description Runs the submitted program in process, see {@link ProgramRunner}.
+ */
+@Controller
+@ResponseBody
+public class RunController {
+
+    private final ProgramRunner runner;
+
+    public RunController(ProgramRunner runner) {
+        this.runner = runner;
+    }
+
+    /**
+     * data holds the status of the run (EXITED, OUT_OF_FUEL,
+     * OUT_OF_MEMORY, DIVIDED_BY_ZERO, or BUSY and TIMEOUT when the
+     * run did not finish in time), the exit code of main, the
+     * fuel used and the time taken.  When the program does not
+     * compile, the message is "Compile error" and data the diagnostics.
+     */
+    @PostMapping("/run")
+    public Result run(@RequestBody CodeRequest codeRequest) {
+        Result result = new Result();
+        JitSession.Result run;
+        try {
+            run = runner.run(codeRequest.getCode());
+        } catch (CompileException e) {
+            result.setMessage("Compile error");
+            result.setData(e.getMessage());
+            return result;
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("status", run.status().name());
+        data.put("exitCode", run.exitCode());
+        data.put("fuelUsed", run.fuelUsed());
+        data.put("cached", run.cached());
+        data.put("micros", run.nanos() / 1000);
+        result.setMessage("Run completed");
+        result.setData(data);
+        return result;
+    }
+}
@@ -7,6 +7,8 @@ package com.zp.visuallearningservice.models;
  */
 public class CodeRequest {
     private String code;
+    // optional; identifies an editor buffer so that edits can be parsed incrementally
+    private String documentId;
 
     public String getCode() {
         return code;
@@ -15,5 +17,13 @@ public class CodeRequest {
     public void setCode(String code) {
         this.code = code;
     }
+
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
 }
 
@@ -0,0 +1,183 @@
+package com.zp.visuallearningservice.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author ZP
+ * @date 2026/10/17 10:00
+ * @description LRU cache of /parse responses keyed by the SHA-256 of the
+ * submitted source.  Entries are the serialized response body, or the
+ * syntax error message when the source did not parse.  The total size of
+ * all entries is bounded by visual-learning.parse-cache.max-bytes.
+ */
+@Component
+public class ParseResultCache {
+    // approximate per-entry overhead: key string, map node and Entry object
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long usedBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ParseResultCache(@Value("${visual-learning.parse-cache.max-bytes:67108864}") long maxBytes) {
+        this.maxBytes = maxBytes;
+        // one submission must not be able to flush the whole cache
+        this.maxEntryBytes = maxBytes / 4;
+    }
+
+    public static String keyOf(String code) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] digest = md.digest(code.getBytes(StandardCharsets.UTF_8));
+            StringBuilder buf = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                buf.append(Character.forDigit((b >> 4) & 0xf, 16));
+                buf.append(Character.forDigit(b & 0xf, 16));
+            }
+            return buf.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new Error("SHA-256 is not available", e);
+        }
+    }
+
+    public Entry get(String key) {
+        Entry ent;
+        synchronized (this) {
+            ent = entries.get(key);
+        }
+        (ent == null ? misses : hits).incrementAndGet();
+        return ent;
+    }
+
+    public void putBody(String key, byte[] body) {
+        put(key, new Entry(body, null));
+    }
+
+    public void putError(String key, String message) {
+        put(key, new Entry(null, message));
+    }
+
+    private void put(String key, Entry ent) {
+        long size = ent.size();
+        if (size > maxEntryBytes) return;
+        synchronized (this) {
+            Entry old = entries.put(key, ent);
+            if (old != null) {
+                usedBytes -= old.size();
+            }
+            usedBytes += size;
+            Iterator<Entry> it = entries.values().iterator();
+            while (usedBytes > maxBytes && it.hasNext()) {
+                usedBytes -= it.next().size();
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns a stream which forwards everything to out and keeps a copy
+     * for the cache as long as the copy fits into a single entry.
+     */
+    public CapturingOutputStream capture(OutputStream out) {
+        return new CapturingOutputStream(out, maxEntryBytes);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("usedBytes", usedBytes);
+        }
+        stats.put("maxBytes", maxBytes);
+        return stats;
+    }
+
+    public static class Entry {
+        private final byte[] body;
+        private final String error;
+
+        Entry(byte[] body, String error) {
+            this.body = body;
+            this.error = error;
+        }
+
+        public boolean isError() {
+            return error != null;
+        }
+
+        public byte[] body() {
+            return body;
+        }
+
+        public String error() {
+            return error;
+        }
+
+        long size() {
+            return ENTRY_OVERHEAD + (body != null ? body.length : 2L * error.length());
+        }
+    }
+
+    public static class CapturingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final long limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        CapturingOutputStream(OutputStream out, long limit) {
+            this.out = out;
+            this.limit = limit;
+        }
+
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null && reserve(1)) {
+                copy.write(b);
+            }
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null && reserve(len)) {
+                copy.write(b, off, len);
+            }
+        }
+
+        private boolean reserve(int len) {
+            if (copy.size() + (long) len > limit) {
+                copy = null;
+                return false;
+            }
+            return true;
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /** Returns the captured bytes, or null if the output was too large. */
+        public byte[] captured() {
+            return copy == null ? null : copy.toByteArray();
+        }
+    }
+}
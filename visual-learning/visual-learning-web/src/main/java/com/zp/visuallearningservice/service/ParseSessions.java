@@ -0,0 +1,37 @@
+package com.zp.visuallearningservice.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import parser.IncrementalParser;
+import utils.ErrorHandler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author ZP
+ * @date 2026/10/17 10:00
+ * @description The IncrementalParser of each document being edited, keyed
+ * by the documentId of the request.  Only the most recently used
+ * visual-learning.parse-sessions.max-documents documents are kept; a
+ * document which was dropped is simply parsed from scratch again.
+ * Callers must synchronize on the returned parser while using it.
+ */
+@Component
+public class ParseSessions {
+    private final Map<String, IncrementalParser> sessions;
+
+    public ParseSessions(@Value("${visual-learning.parse-sessions.max-documents:1000}") int maxDocuments) {
+        this.sessions = new LinkedHashMap<String, IncrementalParser>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IncrementalParser> eldest) {
+                return size() > maxDocuments;
+            }
+        };
+    }
+
+    public synchronized IncrementalParser get(String documentId) {
+        return sessions.computeIfAbsent(documentId,
+                id -> new IncrementalParser(null, new ErrorHandler("Visual-Learning")));
+    }
+}
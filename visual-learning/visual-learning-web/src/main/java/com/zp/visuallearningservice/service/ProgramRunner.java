@@ -0,0 +1,40 @@
+package com.zp.visuallearningservice.service;
+
+import compiler.JitSession;
+import exception.CompileException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author ZP
+ * @date 2026/10/17 10:00
+ * @description Runs submitted programs in process through one
+ * {@link JitSession}, which keeps the compiled programs, so running
+ * an unchanged program again costs no compilation.  Each run gets
+ * visual-learning.run.fuel units of fuel and
+ * visual-learning.run.memory-bytes of memory; runs are serialized,
+ * and a request waits at most visual-learning.run.timeout-millis.
+ */
+@Component
+public class ProgramRunner implements DisposableBean {
+    private final JitSession session;
+
+    public ProgramRunner(@Value("${visual-learning.run.fuel:100000000}") long fuel,
+                         @Value("${visual-learning.run.memory-bytes:16777216}") long memoryBytes,
+                         @Value("${visual-learning.run.opt-level:1}") int optLevel,
+                         @Value("${visual-learning.run.max-programs:256}") int maxPrograms,
+                         @Value("${visual-learning.run.max-source-length:65536}") int maxSourceLength,
+                         @Value("${visual-learning.run.timeout-millis:10000}") long timeoutMillis) {
+        this.session = new JitSession(fuel, memoryBytes, optLevel, maxPrograms, maxSourceLength, timeoutMillis);
+    }
+
+    public JitSession.Result run(String code) throws CompileException {
+        return session.run(code);
+    }
+
+    @Override
+    public void destroy() {
+        session.close();
+    }
+}
@@ -0,0 +1,54 @@
+package com.zp.visuallearningservice;
+
+import com.zp.visuallearningservice.models.CodeRequest;
+import corpus.ProgramGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author ZP
+ * @date 2026/10/17 10:00
+ * @description Posts generated programs to /parse for -Dsoak.minutes=N minutes.
+ * Every fifth request repeats an earlier program so that the parse cache
+ * is exercised as well.  Skipped unless soak.minutes is set.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfSystemProperty(named = "soak.minutes", matches = "\\d+")
+class ParseSoakTests {
+
+    @Autowired
+    private TestRestTemplate rest;
+
+    @Test
+    void parseGeneratedPrograms() {
+        long deadline = System.nanoTime()
+                + TimeUnit.MINUTES.toNanos(Long.getLong("soak.minutes"));
+        for (long i = 0; System.nanoTime() < deadline; i++) {
+            long seed = (i % 5 == 4) ? i / 2 : i;
+            CodeRequest request = new CodeRequest();
+            request.setCode(ProgramGenerator.generate(seed, shapeOf(seed)));
+
+            ResponseEntity<String> response = rest.postForEntity("/parse", request, String.class);
+            assertEquals(HttpStatus.OK, response.getStatusCode(), "seed " + seed);
+            assertTrue(response.getBody().startsWith("{\"message\":\"Analysis completed\""),
+                    "seed " + seed);
+        }
+    }
+
+    // from a few dozen lines up to about 10k
+    private static ProgramGenerator.Shape shapeOf(long seed) {
+        return new ProgramGenerator.Shape()
+                .functions(1 + (int) (seed % 200))
+                .depth(1 + (int) (seed % 4));
+    }
+}